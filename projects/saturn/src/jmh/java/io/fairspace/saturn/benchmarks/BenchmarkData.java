@@ -0,0 +1,102 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.config.ConfigLoader;
+import io.fairspace.saturn.vocabulary.FS;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import static io.fairspace.saturn.rdf.SparqlUtils.generateMetadataIri;
+import static org.apache.jena.rdf.model.ResourceFactory.createTypedLiteral;
+
+/**
+ * Generates a synthetic file system with users, workspaces, collections and files.
+ * Every tenth collection is owned by a separate workspace. Users are members of one workspace
+ * and are granted access to some of the collections directly.
+ * The same parameters and seed always produce the same data.
+ */
+public class BenchmarkData {
+    public static final String BASE_URI = ConfigLoader.CONFIG.publicUrl + "/api/webdav";
+
+    private final int users;
+    private final int collections;
+    private final int filesPerCollection;
+    private final Random random = new Random(42);
+
+    public BenchmarkData(int users, int collections, int filesPerCollection) {
+        this.users = users;
+        this.collections = collections;
+        this.filesPerCollection = filesPerCollection;
+    }
+
+    public static String userId(int index) {
+        return "user-" + index;
+    }
+
+    public static String collectionName(int index) {
+        return "coll-" + index;
+    }
+
+    public static String collectionUri(int index) {
+        return BASE_URI + "/" + collectionName(index);
+    }
+
+    public void generate(Model model) {
+        var now = createTypedLiteral(Calendar.getInstance());
+        var workspaces = new ArrayList<Resource>();
+        for (var i = 0; i < Math.max(1, collections / 10); i++) {
+            workspaces.add(model.createResource(generateMetadataIri("ws-" + i).getURI())
+                    .addProperty(RDF.type, FS.Workspace)
+                    .addProperty(RDFS.label, "Workspace " + i));
+        }
+
+        var userResources = new ArrayList<Resource>();
+        for (var i = 0; i < users; i++) {
+            var user = model.createResource(generateMetadataIri(userId(i)).getURI())
+                    .addProperty(RDF.type, FS.User)
+                    .addProperty(RDFS.label, "User " + i)
+                    .addProperty(FS.username, userId(i));
+            var workspace = workspaces.get(i % workspaces.size());
+            user.addProperty(i < workspaces.size() ? FS.isManagerOf : FS.isMemberOf, workspace);
+            userResources.add(user);
+        }
+
+        for (var c = 0; c < collections; c++) {
+            var owner = workspaces.get(c % workspaces.size());
+            var creator = userResources.isEmpty() ? null : userResources.get(random.nextInt(userResources.size()));
+            var collection = model.createResource(collectionUri(c))
+                    .addProperty(RDF.type, FS.Collection)
+                    .addProperty(RDFS.label, collectionName(c))
+                    .addProperty(FS.ownedBy, owner)
+                    .addLiteral(FS.dateCreated, now);
+            if (creator != null) {
+                collection.addProperty(FS.createdBy, creator);
+                creator.addProperty(random.nextBoolean() ? FS.canWrite : FS.canRead, collection);
+            }
+            for (var f = 0; f < filesPerCollection; f++) {
+                model.createResource(collection.getURI() + "/file-" + f + ".txt")
+                        .addProperty(RDF.type, FS.File)
+                        .addProperty(RDFS.label, "file-" + f + ".txt")
+                        .addProperty(FS.belongsTo, collection)
+                        .addProperty(FS.blobId, "blob-" + c + "-" + f)
+                        .addProperty(FS.contentType, "text/plain")
+                        .addLiteral(FS.fileSize, random.nextInt(1_000_000))
+                        .addLiteral(FS.dateCreated, now);
+            }
+        }
+    }
+
+    public List<String> collectionUris() {
+        var uris = new ArrayList<String>();
+        for (var i = 0; i < collections; i++) {
+            uris.add(collectionUri(i));
+        }
+        return uris;
+    }
+}
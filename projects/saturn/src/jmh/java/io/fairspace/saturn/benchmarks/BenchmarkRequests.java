@@ -0,0 +1,44 @@
+package io.fairspace.saturn.benchmarks;
+
+import org.eclipse.jetty.security.DefaultUserIdentity;
+import org.eclipse.jetty.security.UserAuthentication;
+import org.eclipse.jetty.server.Request;
+import org.keycloak.KeycloakPrincipal;
+import org.keycloak.KeycloakSecurityContext;
+import org.keycloak.representations.AccessToken;
+
+import javax.security.auth.Subject;
+
+import static io.fairspace.saturn.auth.RequestContext.setCurrentRequest;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Sets up the request context for code that depends on the current request and user.
+ * Requests are plain Jetty requests rather than mocks, as invocations of mocks would dominate the measurements.
+ */
+public class BenchmarkRequests {
+    /**
+     * Makes a request of the specified user the current request.
+     * Clearing the attributes of the returned request starts a new request.
+     */
+    public static Request startRequest(String userId) {
+        var token = new AccessToken();
+        token.subject(userId);
+        token.setName(userId);
+        var context = new KeycloakSecurityContext(null, token, null, null);
+        var principal = new KeycloakPrincipal<>(userId, context);
+        var identity = new DefaultUserIdentity(new Subject(), principal, new String[0]);
+        var request = new Request(null, null);
+        request.setAuthentication(new UserAuthentication("KEYCLOAK", identity));
+        setCurrentRequest(request);
+        return request;
+    }
+
+    /**
+     * Creates a stub that does not record invocations, so that it does not grow during a benchmark.
+     */
+    static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly().lenient());
+    }
+}
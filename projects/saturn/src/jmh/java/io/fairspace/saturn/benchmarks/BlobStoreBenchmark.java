@@ -0,0 +1,70 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.webdav.BlobStore;
+import io.fairspace.saturn.webdav.ContentAddressedBlobStore;
+import io.fairspace.saturn.webdav.LocalBlobStore;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.Files.createTempDirectory;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+
+/**
+ * Writing and reading blobs.
+ * Written contents differ per invocation, so that the content-addressed store does not deduplicate them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlobStoreBenchmark {
+    @Param({"4096", "4194304"})
+    public int size;
+
+    @Param({"local", "content-addressed"})
+    public String store;
+
+    private File dir;
+    private BlobStore blobStore;
+    private byte[] contents;
+    private String id;
+    private long counter;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = createTempDirectory("blobs").toFile();
+        blobStore = store.equals("local") ? new LocalBlobStore(dir) : new ContentAddressedBlobStore(dir);
+        contents = new byte[size];
+        new Random(42).nextBytes(contents);
+        id = blobStore.write(new ByteArrayInputStream(contents));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public String write() throws IOException {
+        var value = counter++;
+        for (var i = 0; i < 8; i++) {
+            contents[i] = (byte) (value >>> (8 * i));
+        }
+        return blobStore.write(new ByteArrayInputStream(contents));
+    }
+
+    @Benchmark
+    public void read() throws IOException {
+        blobStore.read(id, NullOutputStream.NULL_OUTPUT_STREAM, 0, null);
+    }
+
+    @Benchmark
+    public void readRange() throws IOException {
+        blobStore.read(id, NullOutputStream.NULL_OUTPUT_STREAM, size / 2, (long) size / 2 + 1023);
+    }
+}
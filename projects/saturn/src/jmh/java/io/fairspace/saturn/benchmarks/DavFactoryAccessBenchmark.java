@@ -0,0 +1,66 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.services.users.UserService;
+import io.fairspace.saturn.webdav.Access;
+import io.fairspace.saturn.webdav.BlobStore;
+import io.fairspace.saturn.webdav.DavFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.util.Context;
+import org.eclipse.jetty.server.Request;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.fairspace.saturn.TestUtils.createTestUser;
+import static java.util.stream.Collectors.toList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Access checks for all collections within a single request, as done when listing the collections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DavFactoryAccessBenchmark {
+    @Param({"10", "1000"})
+    public int users;
+
+    @Param({"100", "1000"})
+    public int collections;
+
+    private DavFactory davFactory;
+    private List<Resource> collectionResources;
+    private Request request;
+
+    @Setup
+    public void setup() {
+        Model model = ModelFactory.createDefaultModel();
+        new BenchmarkData(users, collections, 0).generate(model);
+
+        var userId = BenchmarkData.userId(users - 1);
+        var user = createTestUser(userId, false);
+        user.setCanViewPublicMetadata(true);
+        var userService = BenchmarkRequests.stub(UserService.class);
+        when(userService.currentUser()).thenReturn(user);
+
+        davFactory = new DavFactory(model.createResource(BenchmarkData.BASE_URI), mock(BlobStore.class), userService, new Context());
+        collectionResources = new BenchmarkData(users, collections, 0).collectionUris().stream()
+                .map(model::createResource)
+                .collect(toList());
+        request = BenchmarkRequests.startRequest(userId);
+    }
+
+    @Benchmark
+    public void getAccessOfAllCollections(Blackhole blackhole) {
+        request.getAttributes().clearAttributes();
+        for (var collection : collectionResources) {
+            Access access = davFactory.getAccess(collection);
+            blackhole.consume(access);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
+import io.fairspace.saturn.services.metadata.MetadataPermissions;
+import io.fairspace.saturn.services.metadata.MetadataService;
+import io.fairspace.saturn.services.metadata.validation.*;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.fairspace.saturn.vocabulary.Vocabularies.VOCABULARY;
+import static org.apache.jena.rdf.model.ResourceFactory.createProperty;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Patching metadata entities with the full chain of validators, including SHACL validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataPatchBenchmark {
+    private static final String CURIE = "https://institut-curie.org/ontology#";
+    private static final String SUBJECTS = "http://example.com/subjects#";
+
+    @Param({"1", "100"})
+    public int subjectsPerPatch;
+
+    @Param({"1000"})
+    public int subjects;
+
+    @Param({"100"})
+    public int collections;
+
+    private MetadataService metadataService;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        var ds = DatasetFactory.createTxnMem();
+        Txn.executeWrite(ds, () -> {
+            var model = ds.getDefaultModel();
+            new BenchmarkData(10, collections, 10).generate(model);
+            for (var i = 0; i < subjects; i++) {
+                model.createResource(SUBJECTS + i)
+                        .addProperty(RDF.type, createResource(CURIE + "Subject"))
+                        .addProperty(RDFS.label, "Subject " + i);
+            }
+        });
+
+        var permissions = BenchmarkRequests.stub(MetadataPermissions.class);
+        when(permissions.canReadMetadata(any())).thenReturn(true);
+        when(permissions.canWriteMetadata(any())).thenReturn(true);
+        var validator = new ComposedValidator(
+                new MachineOnlyClassesValidator(VOCABULARY),
+                new ProtectMachineOnlyPredicatesValidator(VOCABULARY),
+                new URIPrefixValidator(BenchmarkData.BASE_URI),
+                new DeletionValidator(),
+                new UniqueLabelValidator(),
+                new ShaclValidator(VOCABULARY));
+        metadataService = new MetadataService(new SimpleTransactions(ds), VOCABULARY, validator, permissions);
+        BenchmarkRequests.startRequest(BenchmarkData.userId(0));
+    }
+
+    @Benchmark
+    public void patch() {
+        var model = ModelFactory.createDefaultModel();
+        var ageAtLastNews = createProperty(CURIE + "ageAtLastNews");
+        for (var i = 0; i < subjectsPerPatch; i++) {
+            var value = counter++;
+            model.createResource(SUBJECTS + (value % subjects))
+                    .addProperty(ageAtLastNews, model.createTypedLiteral(String.valueOf(value % 100), XSDDatatype.XSDinteger));
+        }
+        metadataService.patch(model);
+    }
+}
@@ -0,0 +1,78 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.rdf.transactions.BinaryTransactionCodec;
+import io.fairspace.saturn.rdf.transactions.SparqlTransactionCodec;
+import io.fairspace.saturn.rdf.transactions.TransactionCodec;
+import io.fairspace.saturn.rdf.transactions.TransactionListener;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.jena.sparql.core.Quad.defaultGraphIRI;
+
+/**
+ * Encoding and decoding of a transaction in the transaction log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionCodecBenchmark {
+    @Param({"100", "10000"})
+    public int changes;
+
+    @Param({"sparql", "binary"})
+    public String codec;
+
+    private TransactionCodec transactionCodec;
+    private List<Triple> triples;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        transactionCodec = codec.equals("binary") ? new BinaryTransactionCodec() : new SparqlTransactionCodec();
+        var model = ModelFactory.createDefaultModel();
+        new BenchmarkData(10, 1 + changes / 70, 10).generate(model);
+        triples = model.getGraph().find().toList().subList(0, changes);
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var listener = transactionCodec.write(out);
+        listener.onMetadata("user-0", "User 0", 0L);
+        for (var i = 0; i < triples.size(); i++) {
+            var t = triples.get(i);
+            if (i % 2 == 0) {
+                listener.onAdd(defaultGraphIRI, t.getSubject(), t.getPredicate(), t.getObject());
+            } else {
+                listener.onDelete(defaultGraphIRI, t.getSubject(), t.getPredicate(), t.getObject());
+            }
+        }
+        listener.onCommit();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws IOException {
+        transactionCodec.read(new ByteArrayInputStream(encoded), new TransactionListener() {
+            @Override
+            public void onAdd(Node graph, Node subject, Node predicate, Node object) {
+                blackhole.consume(object);
+            }
+
+            @Override
+            public void onDelete(Node graph, Node subject, Node predicate, Node object) {
+                blackhole.consume(object);
+            }
+        });
+    }
+}
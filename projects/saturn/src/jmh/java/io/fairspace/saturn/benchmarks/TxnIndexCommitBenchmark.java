@@ -0,0 +1,68 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.config.ConfigLoader;
+import io.fairspace.saturn.config.Config;
+import io.fairspace.saturn.rdf.transactions.TxnIndexDatasetGraph;
+import io.fairspace.saturn.services.views.ViewStoreClientFactory;
+import io.fairspace.saturn.vocabulary.FS;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.UUID.randomUUID;
+
+/**
+ * Commits of write transactions adding files to a collection, including the update of the view database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TxnIndexCommitBenchmark {
+    @Param({"1", "100"})
+    public int filesPerTransaction;
+
+    @Param({"100"})
+    public int collections;
+
+    private Dataset ds;
+    private long counter;
+
+    @Setup
+    public void setup() throws SQLException {
+        var viewStoreClientFactory = createViewStoreClientFactory();
+        ds = DatasetFactory.wrap(new TxnIndexDatasetGraph(DatasetGraphFactory.createTxnMem(), viewStoreClientFactory));
+        Txn.executeWrite(ds, () -> new BenchmarkData(10, collections, 10).generate(ds.getDefaultModel()));
+    }
+
+    static ViewStoreClientFactory createViewStoreClientFactory() throws SQLException {
+        var viewDatabase = new Config.ViewDatabase();
+        viewDatabase.url = "jdbc:h2:mem:" + randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        viewDatabase.username = "sa";
+        viewDatabase.password = "";
+        ViewStoreClientFactory.H2_DATABASE = true;
+        return new ViewStoreClientFactory(ConfigLoader.VIEWS_CONFIG, viewDatabase);
+    }
+
+    @Benchmark
+    public void commit() {
+        Txn.executeWrite(ds, () -> {
+            var model = ds.getDefaultModel();
+            var collection = model.createResource(BenchmarkData.collectionUri((int) (counter % collections)));
+            for (var i = 0; i < filesPerTransaction; i++) {
+                var name = "new-" + counter++ + ".txt";
+                model.createResource(collection.getURI() + "/" + name)
+                        .addProperty(RDF.type, FS.File)
+                        .addProperty(RDFS.label, name)
+                        .addProperty(FS.belongsTo, collection)
+                        .addProperty(FS.contentType, "text/plain");
+            }
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package io.fairspace.saturn.benchmarks;
+
+import io.fairspace.saturn.config.ConfigLoader;
+import io.fairspace.saturn.rdf.transactions.TxnIndexDatasetGraph;
+import io.fairspace.saturn.services.views.ViewFilter;
+import io.fairspace.saturn.services.views.ViewStoreReader;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.system.Txn;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading pages of the Resource view from an embedded H2 database standing in for PostgreSQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewStoreReaderBenchmark {
+    @Param({"100", "1000"})
+    public int collections;
+
+    @Param({"10", "100"})
+    public int filesPerCollection;
+
+    private ViewStoreReader reader;
+    private List<ViewFilter> collectionFilter;
+    private int lastPageOffset;
+    private String lastPageAfter;
+
+    @Setup
+    public void setup() throws SQLException {
+        var viewStoreClientFactory = TxnIndexCommitBenchmark.createViewStoreClientFactory();
+        var ds = DatasetFactory.wrap(new TxnIndexDatasetGraph(DatasetGraphFactory.createTxnMem(), viewStoreClientFactory));
+        Txn.executeWrite(ds, () -> new BenchmarkData(10, collections, filesPerCollection).generate(ds.getDefaultModel()));
+        reader = new ViewStoreReader(ConfigLoader.CONFIG.search, viewStoreClientFactory);
+        collectionFilter = List.of(ViewFilter.builder()
+                .field("Resource_collection")
+                .values(List.of(BenchmarkData.collectionName(0)))
+                .build());
+        lastPageOffset = (int) Math.max(0, reader.countRows("Resource", List.of()) - 100);
+        if (lastPageOffset > 0) {
+            var previousRow = reader.retrieveRows("Resource", List.of(), lastPageOffset - 1, 1, false).get(0);
+            lastPageAfter = (String) previousRow.get("Resource").iterator().next().getValue();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        reader.close();
+    }
+
+    @Benchmark
+    public Object firstPage() throws SQLException {
+        return reader.retrieveRows("Resource", List.of(), 0, 100, false);
+    }
+
+    @Benchmark
+    public Object lastPageByOffset() throws SQLException {
+        return reader.retrieveRows("Resource", List.of(), lastPageOffset, 100, false);
+    }
+
+    @Benchmark
+    public Object lastPageAfterId() throws SQLException {
+        return reader.retrieveRowsAfter("Resource", List.of(), lastPageAfter, 100, false);
+    }
+
+    @Benchmark
+    public Object filteredByCollection() throws SQLException {
+        return reader.retrieveRows("Resource", collectionFilter, 0, 100, false);
+    }
+}
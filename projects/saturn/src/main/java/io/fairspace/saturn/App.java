@@ -33,6 +33,7 @@ public class App {
         }
         var ds = SaturnDatasetFactory.connect(
                 CONFIG.jena,
+                CONFIG.viewDatabase,
                 viewStoreClientFactory
         );
 
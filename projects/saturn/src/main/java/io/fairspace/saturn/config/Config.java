@@ -42,6 +42,8 @@ public class Config {
 
     public ViewDatabase viewDatabase = new ViewDatabase();
 
+    public Metadata metadata = new Metadata();
+
     @JsonSetter(nulls = Nulls.AS_EMPTY)
     public final Set<Feature> features = new HashSet<>();
 
@@ -59,7 +61,60 @@ public class Config {
 
         public File transactionLogPath = new File("data/log");
 
+        /**
+         * Whether transactions are synced to durable storage before they are committed to the dataset.
+         */
+        public boolean syncTransactionLog = true;
+
+        /**
+         * The interval between snapshots of the dataset, used to speed up a restore. 0 disables snapshots.
+         * Snapshots are stored in the transaction log directory.
+         */
+        public long snapshotIntervalHours = 24;
+
+        /**
+         * The database is compacted when it has grown by this number of megabytes
+         * since the last compaction or since startup. 0 disables automatic compaction.
+         */
+        public long compactionThresholdMB = 0;
+
+        public long compactionCheckIntervalMinutes = 60;
+
         public boolean bulkTransactions = true;
+
+        /**
+         * Limits of a batch of write transactions, if bulk transactions are enabled.
+         * No more transactions are added to a batch once it exceeds either limit.
+         */
+        public long maxBatchMillis = 1000;
+
+        public int maxBatchChanges = 100_000;
+
+        /**
+         * The maximum number of write transactions waiting for a batch, per priority.
+         * Callers wait for room in the queue, which slows down clients flooding the server with writes.
+         */
+        public int maxQueuedTransactions = 1000;
+
+        /**
+         * A full-text index, used for search if the view database is not enabled.
+         */
+        public TextIndex textIndex = new TextIndex();
+    }
+
+    public static class TextIndex {
+        public boolean enabled = false;
+
+        /**
+         * The directory of the Lucene index. The index is built from the dataset if the directory is empty.
+         */
+        public File path = new File("data/text");
+
+        /**
+         * The properties to index in addition to rdfs:label and rdfs:comment.
+         */
+        @JsonSetter(nulls = Nulls.AS_EMPTY)
+        public List<String> properties = new ArrayList<>();
     }
 
     public static class Auth {
@@ -72,11 +127,32 @@ public class Config {
 
     public static class WebDAV {
         public String blobStorePath = "data/blobs";
+        public boolean contentAddressedBlobStore = true;
+    }
+
+    public static class Metadata {
+        /**
+         * The maximum size (in bytes) of a request body of the metadata API.
+         */
+        public long maxRequestSize = 100 * 1024 * 1024;
+        /**
+         * The maximum number of statements in a request body of the metadata API.
+         */
+        public long maxStatements = 1_000_000;
     }
 
     public static class Search {
         public long pageRequestTimeout = 10_000;
-        public long countRequestTimeout = 100_1000;
+        public long countRequestTimeout = 60_000;
+        /**
+         * The time (in milliseconds) to wait for an exact count, before an estimate is returned if available.
+         * The exact count is still computed in the background and cached.
+         */
+        public long countEstimateTimeout = 1_000;
+        /**
+         * The maximum number of exact counts computed concurrently.
+         */
+        public int countParallelism = 4;
     }
 
     public static class Storage {
@@ -99,6 +175,20 @@ public class Config {
         public String url = String.format("jdbc:postgresql://%s:%d/%s", "localhost", 5432, "fairspace");
         public String username = "fairspace";
         public String password = "fairspace";
+        /**
+         * If enabled, changes are applied to the view database in the background
+         * after the transaction has been committed.
+         */
+        public boolean asyncIndexing = true;
+        /**
+         * The maximum time (in milliseconds) a view request that asks for read-your-writes
+         * consistency waits for pending changes to be indexed.
+         */
+        public long readYourWritesTimeout = 10_000;
+        /**
+         * The maximum number of copy tasks running concurrently when recreating the view index.
+         */
+        public int reindexParallelism = 4;
     }
 
     @Override
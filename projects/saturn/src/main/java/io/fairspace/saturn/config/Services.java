@@ -14,8 +14,10 @@ import io.fairspace.saturn.services.users.UserService;
 import io.fairspace.saturn.services.views.*;
 import io.fairspace.saturn.services.workspaces.WorkspaceService;
 import io.fairspace.saturn.webdav.BlobStore;
+import io.fairspace.saturn.webdav.ContentAddressedBlobStore;
 import io.fairspace.saturn.webdav.DavFactory;
 import io.fairspace.saturn.webdav.LocalBlobStore;
+import io.fairspace.saturn.webdav.VersionListMigration;
 import io.fairspace.saturn.webdav.WebDAVServlet;
 import io.milton.resource.Resource;
 import lombok.Getter;
@@ -38,6 +40,9 @@ public class Services {
     public static final Symbol FS_ROOT = Symbol.create("file_system_root");
     public static final Symbol USER_SERVICE = Symbol.create("user_service");
     public static final Symbol METADATA_SERVICE = Symbol.create("metadata_service");
+    public static final Symbol VIEW_INDEXER = Symbol.create("view_indexer");
+    public static final Symbol COMMIT_LISTENERS = Symbol.create("commit_listeners");
+    public static final Symbol DATASET_COMPACTOR = Symbol.create("dataset_compactor");
 
     private final Config config;
     private final Transactions transactions;
@@ -58,17 +63,22 @@ public class Services {
 
     public Services(@NonNull Config config, @NonNull ViewsConfig viewsConfig, @NonNull Dataset dataset, ViewStoreClientFactory viewStoreClientFactory) {
         this.config = config;
-        this.transactions = config.jena.bulkTransactions ? new BulkTransactions(dataset) : new SimpleTransactions(dataset);
+        this.transactions = config.jena.bulkTransactions
+                ? new BulkTransactions(dataset, config.jena.maxBatchMillis, config.jena.maxBatchChanges, config.jena.maxQueuedTransactions)
+                : new SimpleTransactions(dataset);
 
         userService = new UserService(config.auth, transactions);
         dataset.getContext().set(USER_SERVICE, userService);
 
-        blobStore = new LocalBlobStore(new File(config.webDAV.blobStorePath));
+        blobStore = config.webDAV.contentAddressedBlobStore
+                ? new ContentAddressedBlobStore(new File(config.webDAV.blobStorePath))
+                : new LocalBlobStore(new File(config.webDAV.blobStorePath));
         davFactory = new DavFactory(dataset.getDefaultModel().createResource(CONFIG.publicUrl + "/api/webdav"), blobStore, userService, dataset.getContext());
         dataset.getContext().set(FS_ROOT, davFactory.root);
+        VersionListMigration.migrate(transactions);
         davServlet = new WebDAVServlet(davFactory, transactions, blobStore);
 
-        workspaceService = new WorkspaceService(transactions, userService);
+        workspaceService = new WorkspaceService(transactions, userService, dataset.getContext().get(COMMIT_LISTENERS));
 
         metadataPermissions = new MetadataPermissions(workspaceService, davFactory, userService);
 
@@ -83,17 +93,21 @@ public class Services {
         metadataService = new MetadataService(transactions, VOCABULARY, metadataValidator, metadataPermissions);
         dataset.getContext().set(METADATA_SERVICE, metadataService);
 
-        maintenanceService = new MaintenanceService(userService, dataset, viewStoreClientFactory);
+        maintenanceService = new MaintenanceService(userService, dataset, viewStoreClientFactory, config.viewDatabase.reindexParallelism);
 
         filteredDatasetGraph = new FilteredDatasetGraph(dataset.asDatasetGraph(), metadataPermissions);
         var filteredDataset = DatasetImpl.wrap(filteredDatasetGraph);
 
+        var countCache = new CountCache(config.search, viewsConfig, dataset.getContext().get(VIEW_INDEXER),
+                dataset.getContext().get(COMMIT_LISTENERS), viewStoreClientFactory == null);
         queryService = viewStoreClientFactory == null
-                ? new SparqlQueryService(config.search, viewsConfig, filteredDataset)
-                : new JdbcQueryService(config.search, viewStoreClientFactory, transactions, davFactory.root);
-        viewService = new ViewService(config.search, viewsConfig, filteredDataset, viewStoreClientFactory);
+                ? new SparqlQueryService(config.search, viewsConfig, filteredDataset, countCache)
+                : new JdbcQueryService(config.search, viewStoreClientFactory, transactions, davFactory.root,
+                        dataset.getContext().get(VIEW_INDEXER), config.viewDatabase.readYourWritesTimeout, countCache);
+        viewService = new ViewService(config.search, viewsConfig, filteredDataset, viewStoreClientFactory,
+                dataset.getContext().get(VIEW_INDEXER), dataset.getContext().get(COMMIT_LISTENERS));
 
-        searchService = new SearchService(filteredDataset);
+        searchService = new SearchService(filteredDataset, config.search, viewStoreClientFactory);
 
         healthService = new HealthService(viewStoreClientFactory == null ? null : viewStoreClientFactory.dataSource);
     }
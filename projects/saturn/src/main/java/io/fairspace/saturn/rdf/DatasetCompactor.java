@@ -0,0 +1,127 @@
+package io.fairspace.saturn.rdf;
+
+import lombok.Value;
+import lombok.extern.log4j.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.DatabaseMgr;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.commons.io.FileUtils.sizeOfDirectory;
+
+/**
+ * Compacts a TDB2 database online: the live data is copied to a new generation of the database,
+ * which replaces the current one when the copy is complete, and the old generation is deleted.
+ * Readers continue during compaction, writers wait until the new generation is in place.
+ */
+@Log4j2
+public class DatasetCompactor {
+    private static final long MB = 1024 * 1024;
+
+    private final DatasetGraph tdb;
+    private final File datasetPath;
+    private final AtomicBoolean active = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long sizeAfterLastCompaction;
+    private volatile Result lastResult;
+
+    @Value
+    public static class Result {
+        long sizeBefore;
+        long sizeAfter;
+        long durationMillis;
+        boolean failed;
+    }
+
+    /**
+     * @param tdb         the TDB2 dataset graph, as returned by DatabaseConnection.getDatasetGraph()
+     * @param datasetPath the location of the database
+     */
+    public DatasetCompactor(DatasetGraph tdb, File datasetPath) {
+        this.tdb = tdb;
+        this.datasetPath = datasetPath;
+        this.sizeAfterLastCompaction = size();
+    }
+
+    /**
+     * @return the size of the database on disk in bytes
+     */
+    public long size() {
+        return datasetPath.exists() ? sizeOfDirectory(datasetPath) : 0;
+    }
+
+    public boolean isActive() {
+        return active.get();
+    }
+
+    /**
+     * @return the result of the last compaction, or null if the database has not been compacted yet
+     */
+    public Result getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Starts compaction in a background thread.
+     *
+     * @return false if compaction is in progress already
+     */
+    public boolean start() {
+        if (!active.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.submit(() -> {
+            try {
+                compact();
+            } finally {
+                active.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void compact() {
+        var sizeBefore = size();
+        var start = System.currentTimeMillis();
+        log.info("Compacting the database of {}MB", sizeBefore / MB);
+        try {
+            DatabaseMgr.compact(tdb, true);
+        } catch (Exception e) {
+            log.error("Error compacting the database", e);
+            lastResult = new Result(sizeBefore, size(), System.currentTimeMillis() - start, true);
+            return;
+        }
+        var sizeAfter = size();
+        sizeAfterLastCompaction = sizeAfter;
+        lastResult = new Result(sizeBefore, sizeAfter, System.currentTimeMillis() - start, false);
+        log.info("Database compacted in {}ms, reclaimed {}MB", lastResult.durationMillis, (sizeBefore - sizeAfter) / MB);
+    }
+
+    /**
+     * Periodically checks the size of the database, and compacts it
+     * when it has grown by more than the threshold since the last compaction or since startup.
+     */
+    public void schedule(long thresholdMB, long intervalMinutes) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                if (size() - sizeAfterLastCompaction > thresholdMB * MB && active.compareAndSet(false, true)) {
+                    try {
+                        compact();
+                    } finally {
+                        active.set(false);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Error checking the size of the database", e);
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+}
@@ -1,8 +1,10 @@
 package io.fairspace.saturn.rdf;
 
 import io.fairspace.saturn.config.*;
+import io.fairspace.saturn.rdf.search.LuceneTextIndex;
 import io.fairspace.saturn.rdf.transactions.*;
 import io.fairspace.saturn.services.views.*;
+import lombok.*;
 import lombok.extern.log4j.*;
 import org.apache.jena.datatypes.TypeMapper;
 import org.apache.jena.dboe.base.file.Location;
@@ -11,44 +13,106 @@ import org.apache.jena.query.DatasetFactory;
 
 import java.io.File;
 
+import static io.fairspace.saturn.config.Services.COMMIT_LISTENERS;
+import static io.fairspace.saturn.config.Services.DATASET_COMPACTOR;
+import static io.fairspace.saturn.config.Services.VIEW_INDEXER;
 import static io.fairspace.saturn.rdf.MarkdownDataType.MARKDOWN_DATA_TYPE;
 import static io.fairspace.saturn.rdf.transactions.Restore.restore;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
 import static org.apache.jena.tdb2.sys.DatabaseConnection.connectCreate;
 
 @Log4j2
 public class SaturnDatasetFactory {
+    private static final String SNAPSHOTS_DIRECTORY = "snapshots";
+    private static final String RESTORE_MARKER = "restore-in-progress";
+
     /**
      * Returns a dataset to work with.
      * We're playing Russian dolls here.
      * The original TDB2 dataset graph, which in fact consists of a number of wrappers itself (Jena uses wrappers everywhere),
      * is wrapped with a number of wrapper classes, each adding a new feature.
-     * Currently it adds transaction logging and applies default vocabulary if needed.
+     * Currently it adds transaction logging, notifies commit listeners and applies default vocabulary if needed.
+     * If enabled, changes are also applied to a full-text index.
      */
     public static Dataset connect(Config.Jena config, ViewStoreClientFactory viewStoreClientFactory) {
+        return connect(config, null, viewStoreClientFactory);
+    }
+
+    /**
+     * @param viewDatabase if asynchronous indexing is enabled, changes are applied to the view database
+     *                     by a {@link ViewIndexer}, which is registered in the dataset context.
+     */
+    @SneakyThrows
+    public static Dataset connect(Config.Jena config, Config.ViewDatabase viewDatabase, ViewStoreClientFactory viewStoreClientFactory) {
         var restoreNeeded = isRestoreNeeded(config.datasetPath);
 
         // Create a TDB2 dataset graph
         var dsg = connectCreate(Location.create(config.datasetPath.getAbsolutePath()), config.storeParams).getDatasetGraph();
+        var tdb = dsg;
+
+        var txnLog = new LocalTransactionLog(config.transactionLogPath, new BinaryTransactionCodec(), config.syncTransactionLog);
+
+        if (config.textIndex.enabled) {
+            if (restoreNeeded) {
+                // The index is rebuilt while restoring
+                deleteDirectory(config.textIndex.path);
+            }
+            dsg = LuceneTextIndex.wrap(dsg, config.textIndex, txnLog::size);
+        }
 
-        var txnLog = new LocalTransactionLog(config.transactionLogPath, new SparqlTransactionCodec());
+        var snapshots = new SnapshotStore(new File(config.transactionLogPath, SNAPSHOTS_DIRECTORY));
 
+        ViewIndexer viewIndexer = null;
         if (viewStoreClientFactory != null) {
-            dsg = new TxnIndexDatasetGraph(dsg, viewStoreClientFactory);
+            if (viewDatabase != null && viewDatabase.asyncIndexing) {
+                viewIndexer = new ViewIndexer(viewStoreClientFactory, dsg, txnLog);
+            }
+            dsg = new TxnIndexDatasetGraph(dsg, viewStoreClientFactory, viewIndexer);
         }
 
         if (restoreNeeded) {
-            restore(dsg, txnLog);
+            // Marks the restore as unfinished, until it has completed
+            var restoreMarker = new File(config.datasetPath, RESTORE_MARKER);
+            restoreMarker.createNewFile();
+            restore(dsg, txnLog, snapshots);
+            restoreMarker.delete();
+        }
+
+        if (viewIndexer != null) {
+            // Started once the dataset has been restored, as the indexer reads the indexed subjects from it
+            viewIndexer.start();
+        }
+
+        if (config.snapshotIntervalHours > 0) {
+            snapshots.schedule(tdb, txnLog, config.snapshotIntervalHours);
+        }
+
+        var compactor = new DatasetCompactor(tdb, config.datasetPath);
+        if (config.compactionThresholdMB > 0) {
+            compactor.schedule(config.compactionThresholdMB, config.compactionCheckIntervalMinutes);
         }
 
         // Add transaction log
         dsg = new TxnLogDatasetGraph(dsg, txnLog);
 
+        // Notify listeners of committed changes
+        var txnListeners = new TxnListenerDatasetGraph(dsg);
+        dsg = txnListeners;
+
         TypeMapper.getInstance().registerDatatype(MARKDOWN_DATA_TYPE);
 
-        return DatasetFactory.wrap(dsg);
+        var ds = DatasetFactory.wrap(dsg);
+        ds.getContext().set(COMMIT_LISTENERS, txnListeners);
+        ds.getContext().set(DATASET_COMPACTOR, compactor);
+        if (viewIndexer != null) {
+            ds.getContext().set(VIEW_INDEXER, viewIndexer);
+        }
+        return ds;
     }
 
     protected static boolean isRestoreNeeded(File datasetPath) {
-        return !datasetPath.exists() || datasetPath.list((dir, name) -> name.startsWith("Data-")).length == 0;
+        return !datasetPath.exists()
+                || datasetPath.list((dir, name) -> name.startsWith("Data-")).length == 0
+                || new File(datasetPath, RESTORE_MARKER).exists();
     }
 }
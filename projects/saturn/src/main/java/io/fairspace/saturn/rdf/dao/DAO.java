@@ -1,41 +1,35 @@
 package io.fairspace.saturn.rdf.dao;
 
-import com.pivovarit.function.ThrowingBiConsumer;
 import io.fairspace.saturn.vocabulary.FS;
 import lombok.Getter;
-import lombok.SneakyThrows;
-import org.apache.jena.datatypes.xsd.XSDDateTime;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.concurrent.Callable;
 
-import static com.fasterxml.jackson.databind.type.TypeFactory.rawClass;
 import static io.fairspace.saturn.auth.RequestContext.getUserURI;
 import static io.fairspace.saturn.rdf.SparqlUtils.generateMetadataIri;
 import static java.lang.String.format;
 import static java.time.Instant.now;
-import static java.time.Instant.ofEpochMilli;
-import static java.util.Optional.ofNullable;
-import static org.apache.jena.graph.NodeFactory.createURI;
+import static java.util.stream.Collectors.toList;
 import static org.apache.jena.rdf.model.ResourceFactory.*;
 
 /**
  * A simple Data Access Object for objects extending io.fairspace.saturn.rdf.dao.PersistentEntity.
  * <p>
- * No lazy loading, no caching, no bytecode manipulation - as simple as it can be.
+ * No lazy loading, no caching of entities, no bytecode manipulation - as simple as it can be.
+ * The mapping of each entity class is computed once (see EntityMapping), and an entity is read in a single pass
+ * over the triples of its subject, so that listing many entities does not involve reflection per instance.
  * Entity classes must be annotated with @io.fairspace.saturn.rdf.dao.RDFType and have a zero-arguments constructor.
  * Each persistent property must be annotated with @io.fairspace.saturn.rdf.dao.RDFProperty.
  * References to other entities should be stored as org.apache.jena.graph.Node values and can be created using
@@ -62,8 +56,6 @@ import static org.apache.jena.rdf.model.ResourceFactory.*;
 public class DAO {
     private static final String NO_VALUE_ERROR = "No value for required field %s in entity %s";
     private static final String UNINITIALIZED_COLLECTION_ERROR = "An uninitialized collection field %s in class %s";
-    private static final String NO_RDF_TYPE_ERROR = "No RDF type specified for %s";
-    private static final String CASTING_ERROR = "Cannot cast %s to %s";
     private static final String TOO_MANY_VALUES_ERROR = "More than one value for scalar field %s in resource %s";
     private static final String WRONG_ENTITY_TYPE_ERROR = "Entity %s is not of type %s";
 
@@ -85,7 +77,8 @@ public class DAO {
      */
     public <T extends PersistentEntity> T write(T entity) {
         return safely(() -> {
-            var type = getRdfType(entity.getClass());
+            var mapping = EntityMapping.of(entity.getClass());
+            var type = mapping.rdfType();
 
             var graph = model.getGraph();
 
@@ -107,12 +100,12 @@ public class DAO {
 
             graph.add(new Triple(entity.getIri(), RDF.type.asNode(), type));
 
-            processFields(entity.getClass(), (field, annotation) -> {
-                var propertyNode = createURI(annotation.value());
+            for (var field : mapping.fields) {
+                var propertyNode = field.predicate;
                 var value = field.get(entity);
 
-                if (value == null && annotation.required()) {
-                    throw new DAOException(format(NO_VALUE_ERROR, field.getName(), entity.getIri()));
+                if (value == null && field.required) {
+                    throw new DAOException(format(NO_VALUE_ERROR, field.name, entity.getIri()));
                 }
 
                 graph.remove(entity.getIri(), propertyNode, null);
@@ -122,7 +115,7 @@ public class DAO {
                 } else if (value != null) {
                     graph.add(new Triple(entity.getIri(), propertyNode, valueToNode(value)));
                 }
-            });
+            }
 
             return entity;
         });
@@ -156,6 +149,26 @@ public class DAO {
                 : null;
     }
 
+    /**
+     * Reads many entities of the same type
+     *
+     * @param type
+     * @param iris
+     * @param <T>
+     * @return The found entities, in the order of their IRIs, except to entities marked as deleted
+     */
+    public <T extends PersistentEntity> List<T> readAll(Class<T> type, Collection<Node> iris) {
+        var mapping = EntityMapping.of(type);
+        var graph = model.getGraph();
+        var result = new ArrayList<T>(iris.size());
+        for (var iri : iris) {
+            if (graph.contains(iri, Node.ANY, Node.ANY) && !graph.contains(iri, FS.dateDeleted.asNode(), Node.ANY)) {
+                result.add(read(type, mapping, model, iri));
+            }
+        }
+        return result;
+    }
+
     /**
      * Deletes an entity
      *
@@ -228,66 +241,77 @@ public class DAO {
      * @return
      */
     public <T extends PersistentEntity> List<T> list(Class<T> type, boolean includeDeleted) {
-        return model.listSubjectsWithProperty(RDF.type, createResource(getRdfType(type).getURI()))
-                .filterKeep(r -> includeDeleted || !r.hasProperty(FS.dateDeleted))
-                .mapWith(r -> entityFromResource(type, r))
-                .toList();
+        var mapping = EntityMapping.of(type);
+        var graph = model.getGraph();
+        return graph.find(Node.ANY, RDF.type.asNode(), mapping.rdfType())
+                .mapWith(Triple::getSubject)
+                .filterKeep(s -> includeDeleted || !graph.contains(s, FS.dateDeleted.asNode(), Node.ANY))
+                .toList()  // convert to list, to release the index iterator before reading the entities
+                .stream()
+                .map(s -> read(type, mapping, model, s))
+                .collect(toList());
     }
 
     public static <T extends PersistentEntity> T entityFromResource(Class<T> type, Resource resource) {
+        return read(type, EntityMapping.of(type), resource.getModel(), resource.asNode());
+    }
+
+    /**
+     * Reads an entity in a single pass over the triples of its subject
+     */
+    private static <T extends PersistentEntity> T read(Class<T> type, EntityMapping mapping, Model model, Node subject) {
         try {
-            var typeResource = createResource(getRdfType(type).getURI());
-            if (!resource.hasProperty(RDF.type, typeResource)) {
-                throw new DAOException(format(WRONG_ENTITY_TYPE_ERROR, resource.getURI(), typeResource.getURI()));
+            var graph = model.getGraph();
+            var typeNode = mapping.rdfType();
+            if (!graph.contains(subject, RDF.type.asNode(), typeNode)) {
+                throw new DAOException(format(WRONG_ENTITY_TYPE_ERROR, subject.getURI(), typeNode.getURI()));
             }
-            var ctor = type.getDeclaredConstructor();
-            ctor.setAccessible(true);
-            var entity = ctor.newInstance();
-            entity.setIri(resource.asNode());
-            processFields(type, (field, annotation) -> {
-                var property = createProperty(annotation.value());
-
-                var stmts = resource.listProperties(property).toList();
-
-                if (Collection.class.isAssignableFrom(field.getType())) {
-                    var collection = (Collection) field.get(entity);
-                    if (collection == null) {
-                        throw new DAOException(format(UNINITIALIZED_COLLECTION_ERROR, field.getName(), type.getName()));
+            var entity = type.cast(mapping.newInstance());
+            entity.setIri(subject);
+
+            var collections = new Collection[mapping.fields.size()];
+            var assigned = new boolean[mapping.fields.size()];
+            for (var field : mapping.fields) {
+                if (field.collection) {
+                    collections[field.index] = (Collection) field.get(entity);
+                    if (collections[field.index] == null) {
+                        throw new DAOException(format(UNINITIALIZED_COLLECTION_ERROR, field.name, type.getName()));
                     }
+                }
+            }
 
-                    var parameterizedType = (ParameterizedType) field.getGenericType();
-                    var valueType = rawClass(parameterizedType.getActualTypeArguments()[0]);
-
-                    stmts.forEach(stmt -> collection.add(nodeToType(stmt.getObject(), valueType)));
-                } else {
-                    if (stmts.size() > 1) {
-                        throw new DAOException(format(TOO_MANY_VALUES_ERROR, field.getName(), resource.getURI()));
+            var it = graph.find(subject, Node.ANY, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    var triple = it.next();
+                    var fields = mapping.fieldsByPredicate.get(triple.getPredicate());
+                    if (fields == null) {
+                        continue;
                     }
-
-                    if (!stmts.isEmpty()) {
-                        var value = nodeToType(stmts.get(0).getObject(), field.getType());
-                        field.set(entity, value);
-                    } else if (annotation.required()) {
-                        throw new DAOException(format(NO_VALUE_ERROR, field.getName(), resource.getURI()));
+                    var object = model.asRDFNode(triple.getObject());
+                    for (var field : fields) {
+                        if (field.collection) {
+                            collections[field.index].add(field.converter.apply(object));
+                        } else if (assigned[field.index]) {
+                            throw new DAOException(format(TOO_MANY_VALUES_ERROR, field.name, subject.getURI()));
+                        } else {
+                            field.set(entity, field.converter.apply(object));
+                            assigned[field.index] = true;
+                        }
                     }
                 }
-            });
-            return entity;
-        } catch (Exception e) {
-            throw new DAOException(e);
-        }
-    }
+            } finally {
+                it.close();
+            }
 
-    @SneakyThrows
-    private static void processFields(Class<?> type, ThrowingBiConsumer<Field, RDFProperty, Exception> action) {
-        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
-            for (var field : c.getDeclaredFields()) {
-                var annotation = field.getAnnotation(RDFProperty.class);
-                if (annotation != null) {
-                    field.setAccessible(true);
-                    action.accept(field, annotation);
+            for (var field : mapping.fields) {
+                if (!field.collection && !assigned[field.index] && field.required) {
+                    throw new DAOException(format(NO_VALUE_ERROR, field.name, subject.getURI()));
                 }
             }
+            return entity;
+        } catch (Exception e) {
+            throw new DAOException(e);
         }
     }
 
@@ -306,12 +330,6 @@ public class DAO {
         return createTypedLiteral(value).asNode();
     }
 
-    private static Node getRdfType(Class<? extends PersistentEntity> type) {
-        return ofNullable(type.getAnnotation(RDFType.class))
-                .map(annotation -> createURI(annotation.value()))
-                .orElseThrow(() -> new DAOException(format(NO_RDF_TYPE_ERROR, type.getName())));
-    }
-
     private static <T> T safely(Callable<T> action) {
         try {
             return action.call();
@@ -321,49 +339,4 @@ public class DAO {
             throw new DAOException(e);
         }
     }
-
-    private static Object nodeToType(RDFNode object, Class<?> type) {
-        if (type == Node.class) {
-            return object.asNode();
-        }
-
-        if (object.isLiteral()) {
-            var literal = object.asLiteral();
-            if (type == String.class) {
-                return literal.getString();
-            }
-            if (type == Double.class || type == double.class) {
-                return literal.getDouble();
-            }
-            if (type == Float.class || type == float.class) {
-                return literal.getFloat();
-            }
-            if (type == Long.class || type == long.class) {
-                return literal.getLong();
-            }
-            if (type == Integer.class || type == int.class) {
-                return literal.getInt();
-            }
-            if (type == Short.class || type == short.class) {
-                return literal.getShort();
-            }
-            if (type == Character.class || type == char.class) {
-                return literal.getChar();
-            }
-            if (type == Byte.class || type == byte.class) {
-                return literal.getByte();
-            }
-            if (type == Boolean.class || type == boolean.class) {
-                return literal.getBoolean();
-            }
-            if (type == Instant.class) {
-                return ofEpochMilli(((XSDDateTime) literal.getValue()).asCalendar().getTimeInMillis());
-            }
-            if (Enum.class.isAssignableFrom(type)) {
-                return Enum.valueOf((Class<Enum>) type, literal.getString());
-            }
-        }
-
-        throw new DAOException(format(CASTING_ERROR, object, type.getName()));
-    }
 }
@@ -0,0 +1,199 @@
+package io.fairspace.saturn.rdf.dao;
+
+import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+import static com.fasterxml.jackson.databind.type.TypeFactory.rawClass;
+import static java.lang.String.format;
+import static java.time.Instant.ofEpochMilli;
+import static org.apache.jena.graph.NodeFactory.createURI;
+
+/**
+ * The mapping of an entity class to RDF: its RDF type, its constructor and its persistent fields.
+ * Mappings are computed once per class, field accessors are method handles resolved when the mapping is computed.
+ * Errors in the definition of an entity class are reported when the corresponding part of the mapping is used.
+ */
+final class EntityMapping {
+    private static final String NO_RDF_TYPE_ERROR = "No RDF type specified for %s";
+    private static final String NO_CONSTRUCTOR_ERROR = "No zero-arguments constructor in %s";
+    private static final String CASTING_ERROR = "Cannot cast %s to %s";
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final ClassValue<EntityMapping> mappings = new ClassValue<>() {
+        @Override
+        protected EntityMapping computeValue(Class<?> type) {
+            return new EntityMapping(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Node rdfType;
+    private final MethodHandle constructor;
+    final List<FieldMapping> fields;
+    final Map<Node, List<FieldMapping>> fieldsByPredicate;
+
+    static EntityMapping of(Class<?> type) {
+        return mappings.get(type);
+    }
+
+    private EntityMapping(Class<?> type) {
+        this.type = type;
+        var typeAnnotation = type.getAnnotation(RDFType.class);
+        this.rdfType = typeAnnotation != null ? createURI(typeAnnotation.value()) : null;
+        this.constructor = constructor(type);
+
+        var lookup = MethodHandles.lookup();
+        var fields = new ArrayList<FieldMapping>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (var field : c.getDeclaredFields()) {
+                var annotation = field.getAnnotation(RDFProperty.class);
+                if (annotation != null) {
+                    fields.add(new FieldMapping(fields.size(), field, annotation, lookup));
+                }
+            }
+        }
+        this.fields = List.copyOf(fields);
+
+        var byPredicate = new HashMap<Node, List<FieldMapping>>();
+        fields.forEach(field -> byPredicate.computeIfAbsent(field.predicate, p -> new ArrayList<>()).add(field));
+        this.fieldsByPredicate = Map.copyOf(byPredicate);
+    }
+
+    private static MethodHandle constructor(Class<?> type) {
+        try {
+            var ctor = type.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(ctor).asType(CONSTRUCTOR_TYPE);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    Node rdfType() {
+        if (rdfType == null) {
+            throw new DAOException(format(NO_RDF_TYPE_ERROR, type.getName()));
+        }
+        return rdfType;
+    }
+
+    Object newInstance() {
+        if (constructor == null) {
+            throw new DAOException(format(NO_CONSTRUCTOR_ERROR, type.getName()));
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new DAOException(e);
+        }
+    }
+
+    static final class FieldMapping {
+        final int index;
+        final String name;
+        final Node predicate;
+        final boolean required;
+        final boolean collection;
+        final Function<RDFNode, Object> converter;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private FieldMapping(int index, Field field, RDFProperty annotation, MethodHandles.Lookup lookup) {
+            this.index = index;
+            this.name = field.getName();
+            this.predicate = createURI(annotation.value());
+            this.required = annotation.required();
+            this.collection = Collection.class.isAssignableFrom(field.getType());
+            this.converter = converter(collection
+                    ? rawClass(((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0])
+                    : field.getType());
+            field.setAccessible(true);
+            try {
+                this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new DAOException(e);
+            }
+        }
+
+        Object get(Object entity) {
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw new DAOException(e);
+            }
+        }
+
+        void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw new DAOException(e);
+            }
+        }
+    }
+
+    private static Function<RDFNode, Object> converter(Class<?> type) {
+        if (type == Node.class) {
+            return RDFNode::asNode;
+        }
+        var fromLiteral = literalConverter(type);
+        return node -> {
+            if (fromLiteral != null && node.isLiteral()) {
+                return fromLiteral.apply(node.asLiteral());
+            }
+            throw new DAOException(format(CASTING_ERROR, node, type.getName()));
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<Literal, Object> literalConverter(Class<?> type) {
+        if (type == String.class) {
+            return Literal::getString;
+        }
+        if (type == Double.class || type == double.class) {
+            return Literal::getDouble;
+        }
+        if (type == Float.class || type == float.class) {
+            return Literal::getFloat;
+        }
+        if (type == Long.class || type == long.class) {
+            return Literal::getLong;
+        }
+        if (type == Integer.class || type == int.class) {
+            return Literal::getInt;
+        }
+        if (type == Short.class || type == short.class) {
+            return Literal::getShort;
+        }
+        if (type == Character.class || type == char.class) {
+            return Literal::getChar;
+        }
+        if (type == Byte.class || type == byte.class) {
+            return Literal::getByte;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return Literal::getBoolean;
+        }
+        if (type == Instant.class) {
+            return literal -> ofEpochMilli(((XSDDateTime) literal.getValue()).asCalendar().getTimeInMillis());
+        }
+        if (Enum.class.isAssignableFrom(type)) {
+            return literal -> Enum.valueOf((Class<Enum>) type, literal.getString());
+        }
+        return null;
+    }
+}
@@ -2,23 +2,65 @@ package io.fairspace.saturn.rdf.search;
 
 import io.fairspace.saturn.services.metadata.MetadataPermissions;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphFilteredView;
 import org.apache.jena.sparql.core.DatasetImpl;
 
 import java.util.Set;
+import java.util.function.Predicate;
 
 import static org.apache.jena.sparql.core.Quad.defaultGraphIRI;
 
+/**
+ * A read-only view of the default graph, containing only the statements about subjects the current user can read.
+ * Within a transaction on this view, access is checked with {@link MetadataPermissions#readAccess()},
+ * so that the user's permissions are resolved once and decisions are memoized per subject.
+ */
 public class FilteredDatasetGraph extends DatasetGraphFilteredView {
+    private final MetadataPermissions permissions;
+    private final ThreadLocal<Predicate<Resource>> readAccess;
+
     public FilteredDatasetGraph(DatasetGraph dsg, MetadataPermissions permissions) {
         this(DatasetImpl.wrap(dsg), permissions);
     }
 
     public FilteredDatasetGraph(Dataset ds, MetadataPermissions permissions) {
+        this(ds, permissions, new ThreadLocal<>());
+    }
+
+    private FilteredDatasetGraph(Dataset ds, MetadataPermissions permissions, ThreadLocal<Predicate<Resource>> readAccess) {
         super(ds.asDatasetGraph(),
-                q -> q.isDefaultGraph()
-                        && permissions.canReadMetadata(ds.getDefaultModel().wrapAsResource(q.getSubject())),
+                q -> q.isDefaultGraph() && canRead(ds.getDefaultModel().wrapAsResource(q.getSubject()), permissions, readAccess),
                 Set.of(defaultGraphIRI));
+        this.permissions = permissions;
+        this.readAccess = readAccess;
+    }
+
+    private static boolean canRead(Resource subject, MetadataPermissions permissions, ThreadLocal<Predicate<Resource>> readAccess) {
+        var access = readAccess.get();
+        return access != null ? access.test(subject) : permissions.canReadMetadata(subject);
+    }
+
+    @Override
+    public void begin(TxnType type) {
+        var access = permissions.readAccess();
+        super.begin(type);
+        readAccess.set(access);
+    }
+
+    @Override
+    public void begin(ReadWrite readWrite) {
+        var access = permissions.readAccess();
+        super.begin(readWrite);
+        readAccess.set(access);
+    }
+
+    @Override
+    public void end() {
+        readAccess.remove();
+        super.end();
     }
 }
@@ -0,0 +1,179 @@
+package io.fairspace.saturn.rdf.search;
+
+import io.fairspace.saturn.config.Config;
+import lombok.extern.log4j.*;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.text.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.lucene.queryparser.classic.QueryParserBase;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import static java.util.stream.Collectors.joining;
+import static org.apache.jena.graph.NodeFactory.createURI;
+
+/**
+ * A Lucene index of rdfs:label, rdfs:comment and the configured properties of resources in the default graph,
+ * queried with the text:query property function of jena-text.
+ * All properties are indexed in a single field, so that text:query matches any of them.
+ * <p>
+ * Every commit of the index records the position in the transaction log that it reflects,
+ * so that an index which is behind the dataset, e.g., because the process stopped after a commit of the dataset
+ * but before the commit of the index, is detected and rebuilt on startup.
+ */
+@Log4j2
+public class LuceneTextIndex {
+    public static final String TEXT_FIELD = "text";
+    private static final String ENTITY_FIELD = "uri";
+    private static final String UID_FIELD = "uid";
+    // Key of the position in the transaction log in the user data of index commits
+    private static final String LOG_POSITION = "logPosition";
+    // The number of hits of a text query, before the other patterns of a query are applied
+    public static final int INITIAL_HITS = 10_000;
+    private static final int MAX_HITS = 1_000_000;
+
+    /**
+     * Wraps a dataset graph, so that changes to the indexed properties are applied to the index on commit.
+     * If the index is empty, or it does not reflect the current position in the transaction log,
+     * it is built from the contents of the dataset graph first.
+     *
+     * @param logPosition returns the number of transactions in the transaction log.
+     *                    When called while committing, the transaction being committed must be included.
+     */
+    public static DatasetGraph wrap(DatasetGraph dsg, Config.TextIndex config, LongSupplier logPosition) throws IOException {
+        var entityDefinition = new EntityDefinition(ENTITY_FIELD, TEXT_FIELD);
+        entityDefinition.setUidField(UID_FIELD);
+        for (var predicate : predicates(config)) {
+            entityDefinition.set(TEXT_FIELD, predicate);
+        }
+
+        config.path.mkdirs();
+        var directory = FSDirectory.open(config.path.toPath());
+        var index = new PositionedTextIndex(directory, new TextIndexConfig(entityDefinition), logPosition);
+        var indexedPosition = index.indexedPosition();
+        var position = logPosition.getAsLong();
+        if (indexedPosition != position) {
+            if (indexedPosition >= 0) {
+                log.warn("The text index reflects {} transactions, the transaction log contains {} transactions", indexedPosition, position);
+            }
+            build(dsg, index, entityDefinition);
+        }
+        return TextDatasetFactory.create(dsg, index, true);
+    }
+
+    /**
+     * @return true if the dataset graph has a text index
+     */
+    public static boolean isEnabled(DatasetGraph dsg) {
+        return dsg.getContext().isDefined(TextQuery.textIndex);
+    }
+
+    /**
+     * Converts a search string to a Lucene query matching resources having all of its words, or words starting with them.
+     */
+    public static String toLuceneQuery(String query) {
+        return Arrays.stream(query.trim().toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .map(term -> QueryParserBase.escape(term) + "*")
+                .collect(joining(" AND "));
+    }
+
+    /**
+     * Runs a query matching resources with text:query, which limits the number of hits of the text index.
+     * As the other patterns of the query may filter out most of the hits, the query is repeated with ten times
+     * as many hits, as long as it returns fewer results than requested and the text index has more hits,
+     * up to a maximum of one million hits.
+     *
+     * @param textQuery   the Lucene query, see {@link #toLuceneQuery(String)}
+     * @param limit       the number of results requested
+     * @param initialHits the number of hits of the first attempt
+     * @param query       runs the query with the given number of hits
+     */
+    public static <T> List<T> queryWithGrowingHits(DatasetGraph dsg, String textQuery, int limit, int initialHits, IntFunction<List<T>> query) {
+        var index = (TextIndex) dsg.getContext().get(TextQuery.textIndex);
+        for (var hits = initialHits; ; hits *= 10) {
+            var results = query.apply(hits);
+            if (results.size() >= limit || hits >= MAX_HITS || index.query((Node) null, textQuery, null, null, hits).size() < hits) {
+                return results;
+            }
+            log.debug("Only {} results for {} hits of text query {}, retrying with more hits", results.size(), hits, textQuery);
+        }
+    }
+
+    private static List<Node> predicates(Config.TextIndex config) {
+        var predicates = new ArrayList<Node>();
+        predicates.add(RDFS.label.asNode());
+        predicates.add(RDFS.comment.asNode());
+        config.properties.forEach(property -> predicates.add(createURI(property)));
+        return predicates;
+    }
+
+    private static void build(DatasetGraph dsg, TextIndexLucene index, EntityDefinition entityDefinition) throws IOException {
+        log.info("Building the text index");
+        var start = System.currentTimeMillis();
+        var count = new long[1];
+        index.getIndexWriter().deleteAll();
+        Txn.executeRead(dsg, () -> {
+            for (var field : entityDefinition.fields()) {
+                for (var predicate : entityDefinition.getPredicates(field)) {
+                    dsg.find(Quad.defaultGraphIRI, Node.ANY, predicate, Node.ANY).forEachRemaining(quad -> {
+                        var entity = TextQueryFuncs.entityFromQuad(entityDefinition, quad);
+                        if (entity != null) {
+                            index.addEntity(entity);
+                            count[0]++;
+                        }
+                    });
+                }
+            }
+        });
+        index.prepareCommit();
+        index.commit();
+        log.info("Indexed {} values in {}ms", count[0], System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Records the position in the transaction log in the user data of every commit of the index,
+     * which is written atomically with the changes of the commit.
+     */
+    private static class PositionedTextIndex extends TextIndexLucene {
+        private final LongSupplier logPosition;
+
+        PositionedTextIndex(Directory directory, TextIndexConfig config, LongSupplier logPosition) {
+            super(directory, config);
+            this.logPosition = logPosition;
+        }
+
+        /**
+         * @return the position in the transaction log recorded by the last commit, or -1 if unknown
+         */
+        long indexedPosition() {
+            var userData = getIndexWriter().getLiveCommitData();
+            if (userData != null) {
+                for (var entry : userData) {
+                    if (entry.getKey().equals(LOG_POSITION)) {
+                        return Long.parseLong(entry.getValue());
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void prepareCommit() {
+            getIndexWriter().setLiveCommitData(Map.of(LOG_POSITION, Long.toString(logPosition.getAsLong())).entrySet());
+            super.prepareCommit();
+        }
+    }
+}
@@ -25,6 +25,11 @@ public abstract class BaseTransactions implements Transactions {
         return Txn.calculateRead(ds, ThrowingSupplier.sneaky(() -> job.apply(ds.getDefaultModel())));
     }
 
+    @Override
+    public ReadSnapshot readSnapshot() {
+        return ReadSnapshot.begin(ds);
+    }
+
     @Override
     public void close() throws Exception {
         ds.close();
@@ -0,0 +1,311 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stores transactions in a compact binary format.
+ * <p>
+ * A transaction starts with a header (the magic bytes FSTX and a format version),
+ * followed by a sequence of records. Each record consists of a record type (1 byte),
+ * the length of the payload (varint), the payload and a CRC32 checksum of the type and payload (4 bytes).
+ * <p>
+ * Nodes are written only once per transaction: the first occurrence of a node is written in full
+ * and assigned the next number, subsequent occurrences are written as a reference to that number.
+ * <p>
+ * Transactions without the header are read with {@link SparqlTransactionCodec},
+ * so that existing transaction logs remain readable.
+ */
+public class BinaryTransactionCodec implements TransactionCodec {
+    private static final byte[] MAGIC = {'F', 'S', 'T', 'X'};
+    private static final int VERSION = 1;
+
+    private static final int METADATA = 1;
+    private static final int ADD = 2;
+    private static final int DELETE = 3;
+    private static final int COMMIT = 4;
+    private static final int ABORT = 5;
+
+    private static final int NEW_NODE = 0;
+    private static final int URI = 1;
+    private static final int BLANK = 2;
+    private static final int STRING_LITERAL = 3;
+    private static final int LANG_LITERAL = 4;
+    private static final int TYPED_LITERAL = 5;
+
+    private static final int NO_STRING = 0;
+
+    private final TransactionCodec legacyCodec = new SparqlTransactionCodec();
+
+    @Override
+    public TransactionListener write(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+
+        return new TransactionListener() {
+            private final Map<Node, Integer> nodes = new HashMap<>();
+            private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            private final CRC32 crc = new CRC32();
+
+            @Override
+            public void onMetadata(String userId, String userName, long timestamp) throws IOException {
+                writeLong(payload, timestamp);
+                writeNullableString(payload, userName);
+                writeNullableString(payload, userId);
+                writeRecord(METADATA);
+            }
+
+            @Override
+            public void onAdd(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                writeQuad(graph, subject, predicate, object);
+                writeRecord(ADD);
+            }
+
+            @Override
+            public void onDelete(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                writeQuad(graph, subject, predicate, object);
+                writeRecord(DELETE);
+            }
+
+            @Override
+            public void onCommit() throws IOException {
+                writeRecord(COMMIT);
+                out.flush();
+            }
+
+            @Override
+            public void onAbort() throws IOException {
+                writeRecord(ABORT);
+                out.flush();
+            }
+
+            private void writeQuad(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                writeNode(graph);
+                writeNode(subject);
+                writeNode(predicate);
+                writeNode(object);
+            }
+
+            private void writeNode(Node node) throws IOException {
+                var ref = nodes.get(node);
+                if (ref != null) {
+                    writeVarInt(payload, ref);
+                    return;
+                }
+                nodes.put(node, nodes.size() + 1);
+                writeVarInt(payload, NEW_NODE);
+                if (node.isURI()) {
+                    payload.write(URI);
+                    writeString(payload, node.getURI());
+                } else if (node.isBlank()) {
+                    payload.write(BLANK);
+                    writeString(payload, node.getBlankNodeLabel());
+                } else if (node.isLiteral()) {
+                    var lang = node.getLiteralLanguage();
+                    var datatype = node.getLiteralDatatypeURI();
+                    if (lang != null && !lang.isEmpty()) {
+                        payload.write(LANG_LITERAL);
+                        writeString(payload, node.getLiteralLexicalForm());
+                        writeString(payload, lang);
+                    } else if (datatype == null || datatype.equals(XSDDatatype.XSDstring.getURI())) {
+                        payload.write(STRING_LITERAL);
+                        writeString(payload, node.getLiteralLexicalForm());
+                    } else {
+                        payload.write(TYPED_LITERAL);
+                        writeString(payload, node.getLiteralLexicalForm());
+                        writeString(payload, datatype);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unsupported node: " + node);
+                }
+            }
+
+            private void writeRecord(int type) throws IOException {
+                crc.reset();
+                crc.update(type);
+                crc.update(payload.toByteArray());
+                out.write(type);
+                writeVarInt(out, payload.size());
+                payload.writeTo(out);
+                writeInt(out, (int) crc.getValue());
+                payload.reset();
+            }
+        };
+    }
+
+    @Override
+    public void read(InputStream in, TransactionListener listener) throws IOException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        in.mark(MAGIC.length + 1);
+        var header = in.readNBytes(MAGIC.length + 1);
+        if (header.length < MAGIC.length + 1 || !Arrays.equals(MAGIC, Arrays.copyOf(header, MAGIC.length))) {
+            in.reset();
+            legacyCodec.read(in, listener);
+            return;
+        }
+        if (header[MAGIC.length] != VERSION) {
+            throw new IOException("Unsupported transaction format version: " + header[MAGIC.length]);
+        }
+
+        listener.onBegin();
+
+        var nodes = new ArrayList<Node>();
+        var crc = new CRC32();
+        int type;
+        while ((type = in.read()) >= 0) {
+            var length = readVarInt(in);
+            var bytes = in.readNBytes(length);
+            var checksum = readInt(in);
+            crc.reset();
+            crc.update(type);
+            crc.update(bytes);
+            if (bytes.length != length || (int) crc.getValue() != checksum) {
+                throw new IOException("Corrupted transaction record");
+            }
+            var payload = new ByteArrayInputStream(bytes);
+            switch (type) {
+                case METADATA -> {
+                    var timestamp = readLong(payload);
+                    var userName = readNullableString(payload);
+                    var userId = readNullableString(payload);
+                    listener.onMetadata(userId, userName, timestamp);
+                }
+                case ADD -> listener.onAdd(readNode(payload, nodes), readNode(payload, nodes), readNode(payload, nodes), readNode(payload, nodes));
+                case DELETE -> listener.onDelete(readNode(payload, nodes), readNode(payload, nodes), readNode(payload, nodes), readNode(payload, nodes));
+                case COMMIT -> listener.onCommit();
+                case ABORT -> listener.onAbort();
+                default -> throw new IOException("Unknown transaction record type: " + type);
+            }
+        }
+    }
+
+    private static Node readNode(InputStream in, List<Node> nodes) throws IOException {
+        var ref = readVarInt(in);
+        if (ref != NEW_NODE) {
+            if (ref > nodes.size()) {
+                throw new IOException("Invalid node reference: " + ref);
+            }
+            return nodes.get(ref - 1);
+        }
+        var kind = in.read();
+        var node = switch (kind) {
+            case URI -> NodeFactory.createURI(readString(in));
+            case BLANK -> NodeFactory.createBlankNode(readString(in));
+            case STRING_LITERAL -> NodeFactory.createLiteral(readString(in));
+            case LANG_LITERAL -> NodeFactory.createLiteral(readString(in), readString(in));
+            case TYPED_LITERAL -> {
+                var lexicalForm = readString(in);
+                yield NodeFactory.createLiteral(lexicalForm, TypeMapper.getInstance().getSafeTypeByName(readString(in)));
+            }
+            default -> throw new IOException("Unknown node kind: " + kind);
+        };
+        nodes.add(node);
+        return node;
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        var value = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            var b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        var bytes = in.readNBytes(4);
+        if (bytes.length < 4) {
+            throw new EOFException();
+        }
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (var shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        var bytes = in.readNBytes(8);
+        if (bytes.length < 8) {
+            throw new EOFException();
+        }
+        var value = 0L;
+        for (var b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        var length = readVarInt(in);
+        var bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Nullable strings are written with their length incremented by one, zero denoting null.
+     */
+    private static void writeNullableString(ByteArrayOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, NO_STRING);
+            return;
+        }
+        var bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.writeBytes(bytes);
+    }
+
+    private static String readNullableString(InputStream in) throws IOException {
+        var length = readVarInt(in);
+        if (length == NO_STRING) {
+            return null;
+        }
+        var bytes = in.readNBytes(length - 1);
+        if (bytes.length < length - 1) {
+            throw new EOFException();
+        }
+        return new String(bytes, UTF_8);
+    }
+}
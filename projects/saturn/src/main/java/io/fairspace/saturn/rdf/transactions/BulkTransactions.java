@@ -1,50 +1,105 @@
 package io.fairspace.saturn.rdf.transactions;
 
 import com.pivovarit.function.ThrowingFunction;
+import lombok.extern.log4j.*;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.listeners.StatementListener;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.sparql.JenaTransactionException;
 import org.apache.jena.system.Txn;
 import org.eclipse.jetty.server.Request;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 import static io.fairspace.saturn.auth.RequestContext.setCurrentRequest;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Executes write jobs submitted by concurrent callers in batches, one write transaction per batch.
+ * <p>
+ * Jobs are queued in two lanes: interactive jobs and bulk jobs (see {@link Transactions#calculateBulkWrite}).
+ * A batch contains jobs from a single lane. Interactive batches go first, but bulk jobs are not starved:
+ * a bulk batch runs after at most {@link #MAX_INTERACTIVE_BATCHES_IN_A_ROW} interactive ones.
+ * A batch is committed when it runs out of jobs, or when it exceeds its time budget or the number of changes.
+ * <p>
+ * A failed job aborts the transaction. The jobs before it in the batch are executed again and committed,
+ * the jobs after it start a new batch. If a commit fails, the batch is split in halves,
+ * which are executed separately until the failing job is isolated.
+ * <p>
+ * Each lane holds a limited number of jobs. Callers submitting a job to a full lane wait until there is room.
+ */
+@Log4j2
 public class BulkTransactions extends BaseTransactions {
-    private final LinkedBlockingQueue<Task<?, ?>> queue = new LinkedBlockingQueue<>();
+    public static final long DEFAULT_MAX_BATCH_MILLIS = 1000;
+    public static final int DEFAULT_MAX_BATCH_CHANGES = 100_000;
+    public static final int DEFAULT_MAX_QUEUED_JOBS = 1000;
+    private static final int MAX_INTERACTIVE_BATCHES_IN_A_ROW = 4;
     private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private enum Lane {INTERACTIVE, BULK}
+
+    private final long maxBatchNanos;
+    private final int maxBatchChanges;
+    private final int maxQueuedJobs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Lane, ArrayDeque<Task<?, ?>>> queues = new EnumMap<>(Map.of(
+            Lane.INTERACTIVE, new ArrayDeque<>(),
+            Lane.BULK, new ArrayDeque<>()));
+    private int interactiveBatchesInARow;
     private final Thread worker = new Thread(() -> {
         while (true) {
-            var tasks = new ArrayList<Task<?, ?>>();
             try {
-                tasks.add(queue.take());
+                executeBatch(nextLane());
             } catch (InterruptedException e) {
                 return;
             }
-            queue.drainTo(tasks);
-
-            while (!tryExecute(tasks)) ;
-
-            tasks.forEach(Task::completed);  // mark all tasks as committed
         }
     }, "Batch transaction processor " + threadCounter.incrementAndGet());
 
     public BulkTransactions(Dataset ds) {
+        this(ds, DEFAULT_MAX_BATCH_MILLIS, DEFAULT_MAX_BATCH_CHANGES, DEFAULT_MAX_QUEUED_JOBS);
+    }
+
+    /**
+     * @param maxBatchMillis  no more jobs are added to a batch after it has been running for this time
+     * @param maxBatchChanges no more jobs are added to a batch after its jobs made this number of changes
+     * @param maxQueuedJobs   the maximum number of jobs waiting in each lane
+     */
+    public BulkTransactions(Dataset ds, long maxBatchMillis, int maxBatchChanges, int maxQueuedJobs) {
         super(ds);
+        this.maxBatchNanos = MILLISECONDS.toNanos(maxBatchMillis);
+        this.maxBatchChanges = maxBatchChanges;
+        this.maxQueuedJobs = maxQueuedJobs;
 
         worker.start();
     }
 
     @Override
     public <R, E extends Exception> R calculateWrite(ThrowingFunction<? super Model, R, E> job) throws E {
+        return submit(Lane.INTERACTIVE, job);
+    }
+
+    @Override
+    public <R, E extends Exception> R calculateBulkWrite(ThrowingFunction<? super Model, R, E> job) throws E {
+        return submit(Lane.BULK, job);
+    }
+
+    private <R, E extends Exception> R submit(Lane lane, ThrowingFunction<? super Model, R, E> job) throws E {
         try {
             if (ds.isInTransaction()) {
                 if (ds.transactionMode() == ReadWrite.WRITE) {
@@ -55,32 +110,153 @@ public class BulkTransactions extends BaseTransactions {
 
             var task = new Task<>(getCurrentRequest(), job);
 
-            queue.offer(task);
+            lock.lockInterruptibly();
+            try {
+                var queue = queues.get(lane);
+                while (queue.size() >= maxQueuedJobs) {
+                    notFull.await();
+                }
+                queue.add(task);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
             return task.get();
         } catch (Throwable t) {
             return sneakyThrow(t);
         }
     }
 
-    private boolean tryExecute(List<Task<?, ?>> tasks) {
-        if (tasks.isEmpty()) {
-            return true;
+    private Lane nextLane() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            var interactive = queues.get(Lane.INTERACTIVE);
+            var bulk = queues.get(Lane.BULK);
+            while (interactive.isEmpty() && bulk.isEmpty()) {
+                notEmpty.await();
+            }
+            if (!interactive.isEmpty() && (bulk.isEmpty() || interactiveBatchesInARow < MAX_INTERACTIVE_BATCHES_IN_A_ROW)) {
+                interactiveBatchesInARow++;
+                return Lane.INTERACTIVE;
+            }
+            interactiveBatchesInARow = 0;
+            return Lane.BULK;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        return Txn.calculateWrite(ds, () -> {
-            for (var it = tasks.iterator(); it.hasNext(); ) {
-                var task = it.next();
-                if (!task.perform(ds.getDefaultModel())) {
-                    ds.abort();
+    private Task<?, ?> poll(Lane lane) {
+        lock.lock();
+        try {
+            var task = queues.get(lane).poll();
+            if (task != null) {
+                notFull.signalAll();
+            }
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Executes queued jobs of a lane in a single transaction, while the batch is within its budget.
+     */
+    private void executeBatch(Lane lane) {
+        var start = nanoTime();
+        var changes = new AtomicInteger();
+        var executed = new ArrayList<Task<?, ?>>();
+        Task<?, ?> failed;
+        try {
+            failed = Txn.calculateWrite(ds, () -> {
+                var model = ds.getDefaultModel();
+                model.register(new StatementListener() {
+                    @Override
+                    public void addedStatement(Statement s) {
+                        changes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void removedStatement(Statement s) {
+                        changes.incrementAndGet();
+                    }
+                });
+                while (executed.isEmpty() || (nanoTime() - start < maxBatchNanos && changes.get() < maxBatchChanges)) {
+                    var task = poll(lane);
+                    if (task == null) {
+                        break;
+                    }
+                    if (!task.perform(model) && ds.isInTransaction()) {
+                        ds.abort();
+                    }
+                    if (!ds.isInTransaction()) {
+                        return task;
+                    }
+                    executed.add(task);
                 }
-                if (!ds.isInTransaction()) {
-                    it.remove();
-                    task.completed(); // task failed, no need to wait for other tasks
-                    return false;
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Error committing a batch of {} transactions, retrying them separately", executed.size(), e);
+            isolate(executed, e);
+            return;
+        }
+
+        if (failed == null) {
+            executed.forEach(Task::completed);  // mark all tasks as committed
+        } else {
+            failed.completed(); // task failed, no need to wait for other tasks
+            execute(executed);
+        }
+    }
+
+    /**
+     * Executes the jobs again in a single transaction, isolating the jobs which fail.
+     */
+    private void execute(List<Task<?, ?>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        int failedIndex;
+        try {
+            failedIndex = Txn.calculateWrite(ds, () -> {
+                var model = ds.getDefaultModel();
+                for (var i = 0; i < tasks.size(); i++) {
+                    if (!tasks.get(i).perform(model) && ds.isInTransaction()) {
+                        ds.abort();
+                    }
+                    if (!ds.isInTransaction()) {
+                        return i;
+                    }
                 }
-            }
-            return true;
-        });
+                return -1;
+            });
+        } catch (RuntimeException e) {
+            isolate(tasks, e);
+            return;
+        }
+
+        if (failedIndex < 0) {
+            tasks.forEach(Task::completed);
+        } else {
+            tasks.get(failedIndex).completed();
+            execute(tasks.subList(0, failedIndex));
+            execute(tasks.subList(failedIndex + 1, tasks.size()));
+        }
+    }
+
+    /**
+     * Executes the halves of a batch which could not be committed separately.
+     */
+    private void isolate(List<Task<?, ?>> tasks, RuntimeException e) {
+        if (tasks.size() == 1) {
+            tasks.get(0).failed(e);
+            return;
+        }
+        var middle = tasks.size() / 2;
+        execute(tasks.subList(0, middle));
+        execute(tasks.subList(middle, tasks.size()));
     }
 
     private static <T extends Throwable, R> R sneakyThrow(Throwable t) throws T {
@@ -130,6 +306,13 @@ public class BulkTransactions extends BaseTransactions {
             canBeRead.countDown();
         }
 
+        // The transaction could not be committed
+        void failed(Throwable e) {
+            result = null;
+            error = e;
+            completed();
+        }
+
         R get() throws Throwable {
             try {
                 canBeRead.await();
@@ -0,0 +1,18 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import org.apache.jena.graph.Node;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Receives the changes of a write transaction after it has been committed.
+ */
+@FunctionalInterface
+public interface CommitListener {
+    /**
+     * @param subjectTypes the subjects changed by the transaction, mapped to their types
+     *                     (both the current types and the types removed by the transaction).
+     */
+    void onCommit(Map<Node, Set<Node>> subjectTypes);
+}
@@ -3,8 +3,11 @@ package io.fairspace.saturn.rdf.transactions;
 import org.apache.jena.graph.Node;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 
 import static java.nio.file.Files.move;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 
 /**
@@ -27,6 +30,10 @@ import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
  *   chapter-1001
  *     tx-1000001
  *     ...
+ * <p>
+ * If syncing is enabled, a committed transaction and the directories containing it are synced to durable storage
+ * in {@link #onCommit()}, before the transaction is committed to the dataset.
+ * The cost of syncing is shared by the changes batched into one transaction by {@link BulkTransactions}.
  */
 public class LocalTransactionLog implements TransactionLog {
     private static final int CHAPTERS_PER_VOLUME = 1000;
@@ -39,14 +46,24 @@ public class LocalTransactionLog implements TransactionLog {
     private final File directory;
     private final TransactionCodec codec;
     private final File currentTransactionFile;
+    private final boolean syncEnabled;
     private long count;
+    private FileOutputStream fileOutputStream;
     private OutputStream outputStream;
     private TransactionListener writingListener;
 
 
     public LocalTransactionLog(File directory, TransactionCodec codec) {
+        this(directory, codec, false);
+    }
+
+    /**
+     * @param syncEnabled whether committed transactions should be synced to durable storage.
+     */
+    public LocalTransactionLog(File directory, TransactionCodec codec, boolean syncEnabled) {
         this.directory = directory;
         this.codec = codec;
+        this.syncEnabled = syncEnabled;
         this.currentTransactionFile = new File(directory, CURRENT_TRANSACTION_FILE_NAME);
 
         directory.mkdirs();
@@ -58,7 +75,8 @@ public class LocalTransactionLog implements TransactionLog {
     public void onBegin() throws IOException {
         currentTransactionFile.delete();
 
-        outputStream = new BufferedOutputStream(new FileOutputStream(currentTransactionFile));
+        fileOutputStream = new FileOutputStream(currentTransactionFile);
+        outputStream = new BufferedOutputStream(fileOutputStream);
         writingListener = codec.write(outputStream);
     }
 
@@ -77,14 +95,40 @@ public class LocalTransactionLog implements TransactionLog {
         writingListener.onDelete(graph, subject, predicate, object);
     }
 
+    /**
+     * Moves the transaction into place. If syncing is enabled, the transaction is durable when this method returns.
+     */
     @Override
     public void onCommit() throws IOException {
         writingListener.onCommit();
+        outputStream.flush();
+        if (syncEnabled) {
+            fileOutputStream.getChannel().force(true);
+        }
         outputStream.close();
-        move(currentTransactionFile.toPath(), file(count).toPath(), ATOMIC_MOVE);
+        var file = file(count);
+        move(currentTransactionFile.toPath(), file.toPath(), ATOMIC_MOVE);
+        if (syncEnabled) {
+            force(file.getParentFile().toPath());
+            if (count % RECORDS_PER_CHAPTER == 0) {
+                // A new chapter directory has been created
+                force(file.getParentFile().getParentFile().toPath());
+            }
+            if (count % (RECORDS_PER_CHAPTER * CHAPTERS_PER_VOLUME) == 0) {
+                // A new volume directory has been created
+                force(directory.toPath());
+            }
+        }
         count++;
         writingListener = null;
         outputStream = null;
+        fileOutputStream = null;
+    }
+
+    private static void force(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, READ)) {
+            channel.force(true);
+        }
     }
 
     @Override
@@ -94,6 +138,7 @@ public class LocalTransactionLog implements TransactionLog {
         currentTransactionFile.delete();
         writingListener = null;
         outputStream = null;
+        fileOutputStream = null;
     }
 
     @Override
@@ -0,0 +1,68 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.Transactional;
+
+/**
+ * A read transaction pinned to the current thread, which can be shared by the steps of a multi-step read handler
+ * and released before the handler completes, e.g. before streaming the contents of a file.
+ * A released snapshot no longer blocks compaction of the dataset.
+ * <p>
+ * If the thread is in a transaction already, the snapshot reuses it and neither closing nor releasing it has any effect.
+ */
+public class ReadSnapshot implements AutoCloseable {
+    private static final ThreadLocal<ReadSnapshot> current = new ThreadLocal<>();
+
+    private final Transactional txn;
+    private final boolean owner;
+    private boolean active;
+
+    private ReadSnapshot(Transactional txn, boolean owner) {
+        this.txn = txn;
+        this.owner = owner;
+        this.active = owner;
+    }
+
+    static ReadSnapshot begin(Transactional txn) {
+        if (txn.isInTransaction()) {
+            return new ReadSnapshot(txn, false);
+        }
+        txn.begin(TxnType.READ);
+        var snapshot = new ReadSnapshot(txn, true);
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Ends the snapshot of the current thread, if any, before it is closed.
+     * The metadata must not be accessed afterwards, unless in a new transaction.
+     */
+    public static void release() {
+        var snapshot = current.get();
+        if (snapshot != null) {
+            snapshot.end();
+        }
+    }
+
+    /**
+     * @return true if the snapshot holds a read transaction, which it has begun itself
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    private void end() {
+        if (active) {
+            active = false;
+            txn.end();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (owner) {
+            end();
+            current.remove();
+        }
+    }
+}
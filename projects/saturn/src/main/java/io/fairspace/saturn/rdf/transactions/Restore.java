@@ -2,49 +2,191 @@ package io.fairspace.saturn.rdf.transactions;
 
 import lombok.extern.log4j.*;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.riot.system.StreamRDFBase;
 import org.apache.jena.sparql.core.DatasetGraph;
-import org.apache.jena.system.Txn;
+import org.apache.jena.sparql.core.Quad;
 
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Restores a dataset from the latest snapshot, if any, and the transactions from the log after that.
+ * Changes are committed in chunks, so that the whole delta does not need to be kept in memory.
+ * Transactions are decoded in parallel and applied in order.
+ * As both loading a snapshot and replaying transactions are idempotent,
+ * an interrupted restore can be started again from scratch.
+ */
 @Log4j2
 public class Restore {
+    private static final int CHUNK_SIZE = 100_000;
+    private static final int DECODER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int DECODE_AHEAD = 4 * DECODER_THREADS;
+
     public static void restore(DatasetGraph dsg, TransactionLog txnLog) {
+        restore(dsg, txnLog, null);
+    }
+
+    public static void restore(DatasetGraph dsg, TransactionLog txnLog, SnapshotStore snapshots) {
         var logSize = txnLog.size();
 
         if (logSize == 0) {
             return;
         }
 
-        log.warn("Your metadata database is gone. Restoring from the transaction log containing {} transactions", logSize);
+        var snapshotIndex = snapshots == null ? -1 : snapshots.latestIndex();
+        if (snapshotIndex > logSize) {
+            log.warn("The latest snapshot is ahead of the transaction log and will be ignored");
+            snapshotIndex = -1;
+        }
+
+        var writer = new ChunkedWriter(dsg);
+        try {
+            var firstTransaction = 0L;
+            if (snapshotIndex >= 0) {
+                log.warn("Your metadata database is gone. Restoring from the snapshot of {} transactions", snapshotIndex);
+                snapshots.read(snapshotIndex, new StreamRDFBase() {
+                    @Override
+                    public void triple(Triple triple) {
+                        writer.add(Quad.defaultGraphIRI, triple.getSubject(), triple.getPredicate(), triple.getObject());
+                    }
+
+                    @Override
+                    public void quad(Quad quad) {
+                        writer.add(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+                    }
+                });
+                firstTransaction = snapshotIndex;
+            }
+
+            log.warn("Restoring {} transactions from the transaction log containing {} transactions",
+                    logSize - firstTransaction, logSize);
+            replay(txnLog, firstTransaction, logSize, writer);
+
+            log.info("Committing changes");
+            writer.commit();
+        } catch (Exception e) {
+            writer.abort();
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
 
-        Txn.executeWrite(dsg, () -> {
+        log.warn("Restore is finished.");
+    }
+
+    private static void replay(TransactionLog txnLog, long from, long to, ChunkedWriter writer) throws InterruptedException {
+        var executor = Executors.newFixedThreadPool(DECODER_THREADS);
+        try {
+            var pending = new ArrayDeque<Future<List<Change>>>();
+            var next = from;
             var prevProgress = -1L;
-            for (var i = 0; i < logSize; i++) {
-                var progress = (100 * i) / logSize;
+            for (var i = from; i < to; i++) {
+                while (next < to && pending.size() < DECODE_AHEAD) {
+                    var index = next++;
+                    pending.add(executor.submit(() -> decode(txnLog, index)));
+                }
+                var progress = (100 * (i - from)) / (to - from);
                 if (progress > prevProgress) {
                     log.info("Progress: {}%", progress);
                     prevProgress = progress;
                 }
+                List<Change> changes;
                 try {
-                    txnLog.read(i, new TransactionListener() {
-                        @Override
-                        public void onAdd(Node graph, Node subject, Node predicate, Node object) {
-                            dsg.add(graph, subject, predicate, object);
-                        }
-
-                        @Override
-                        public void onDelete(Node graph, Node subject, Node predicate, Node object) {
-                            dsg.delete(graph, subject, predicate, object);
-                        }
-                    });
-                } catch (Exception e) {
-                    log.error("Error applying transaction #" + (i + 1), e);
-                    throw new RuntimeException(e);
+                    changes = pending.remove().get();
+                } catch (ExecutionException e) {
+                    log.error("Error applying transaction #" + (i + 1), e.getCause());
+                    throw new RuntimeException(e.getCause());
+                }
+                for (var change : changes) {
+                    if (change.add) {
+                        writer.add(change.graph, change.subject, change.predicate, change.object);
+                    } else {
+                        writer.delete(change.graph, change.subject, change.predicate, change.object);
+                    }
                 }
             }
             log.info("Progress: 100%");
-            log.info("Committing changes");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Change> decode(TransactionLog txnLog, long index) throws Exception {
+        var changes = new ArrayList<Change>();
+        txnLog.read(index, new TransactionListener() {
+            @Override
+            public void onAdd(Node graph, Node subject, Node predicate, Node object) {
+                changes.add(new Change(true, graph, subject, predicate, object));
+            }
+
+            @Override
+            public void onDelete(Node graph, Node subject, Node predicate, Node object) {
+                changes.add(new Change(false, graph, subject, predicate, object));
+            }
         });
+        return changes;
+    }
 
-        log.warn("Restore is finished.");
+    private static class Change {
+        final boolean add;
+        final Node graph;
+        final Node subject;
+        final Node predicate;
+        final Node object;
+
+        Change(boolean add, Node graph, Node subject, Node predicate, Node object) {
+            this.add = add;
+            this.graph = graph;
+            this.subject = subject;
+            this.predicate = predicate;
+            this.object = object;
+        }
+    }
+
+    /**
+     * Applies changes to a dataset graph, committing a write transaction after every CHUNK_SIZE changes.
+     */
+    private static class ChunkedWriter {
+        private final DatasetGraph dsg;
+        private int changes;
+
+        ChunkedWriter(DatasetGraph dsg) {
+            this.dsg = dsg;
+        }
+
+        void add(Node graph, Node subject, Node predicate, Node object) {
+            beforeChange();
+            dsg.add(graph, subject, predicate, object);
+        }
+
+        void delete(Node graph, Node subject, Node predicate, Node object) {
+            beforeChange();
+            dsg.delete(graph, subject, predicate, object);
+        }
+
+        private void beforeChange() {
+            if (changes == CHUNK_SIZE) {
+                commit();
+            }
+            if (!dsg.isInTransaction()) {
+                dsg.begin(ReadWrite.WRITE);
+            }
+            changes++;
+        }
+
+        void commit() {
+            if (dsg.isInTransaction()) {
+                dsg.commit();
+                dsg.end();
+            }
+            changes = 0;
+        }
+
+        void abort() {
+            if (dsg.isInTransaction()) {
+                dsg.abort();
+                dsg.end();
+            }
+        }
     }
 }
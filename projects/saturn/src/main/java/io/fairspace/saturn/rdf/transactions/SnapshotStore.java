@@ -0,0 +1,143 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import lombok.extern.log4j.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * Stores snapshots of a dataset as compressed N-Quads files.
+ * The name of a snapshot file contains the number of transactions from the transaction log
+ * that had been applied to the dataset when the snapshot was taken,
+ * so that a restore only needs to replay the transactions after that.
+ * Blank node labels are preserved, as transactions in the log refer to blank nodes by their labels.
+ */
+@Log4j2
+public class SnapshotStore {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".nq.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int SNAPSHOTS_TO_KEEP = 2;
+
+    private final File directory;
+
+    public SnapshotStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Takes a snapshot of the dataset, unless no transactions have been committed since the last snapshot.
+     *
+     * @param dsg    The dataset graph the transactions from the log are applied to.
+     *               Should not be wrapped by a {@link TxnLogDatasetGraph}.
+     * @param txnLog The transaction log
+     * @return The number of transactions included in the snapshot
+     * @throws IOException
+     */
+    public synchronized long create(DatasetGraph dsg, TransactionLog txnLog) throws IOException {
+        // No transactions are being committed while holding the write lock,
+        // so all transactions from the log have been applied to the dataset.
+        // Transactions committed after that and included in the snapshot are replayed again on restore,
+        // which is harmless, as replaying a transaction is idempotent.
+        long index = Txn.calculateWrite(dsg, txnLog::size);
+        if (index == latestIndex()) {
+            log.debug("No transactions since the last snapshot");
+            return index;
+        }
+
+        directory.mkdirs();
+        var start = System.currentTimeMillis();
+        var snapshot = file(index);
+        var temp = new File(directory, snapshot.getName() + TEMP_SUFFIX);
+        try (var fileOut = new FileOutputStream(temp)) {
+            var out = new GZIPOutputStream(new BufferedOutputStream(fileOut));
+            Txn.executeRead(dsg, () -> {
+                var writer = StreamRDFWriter.getWriterStream(out, RDFFormat.NQUADS);
+                writer.start();
+                dsg.find().forEachRemaining(writer::quad);
+                writer.finish();
+            });
+            out.finish();
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        move(temp.toPath(), snapshot.toPath(), ATOMIC_MOVE);
+        log.info("Snapshot of {} transactions created in {}ms", index, System.currentTimeMillis() - start);
+
+        var indexes = indexes();
+        for (var i = 0; i < indexes.size() - SNAPSHOTS_TO_KEEP; i++) {
+            file(indexes.get(i)).delete();
+        }
+        return index;
+    }
+
+    /**
+     * @return The number of transactions included in the latest snapshot, or -1 if there are no snapshots.
+     */
+    public long latestIndex() {
+        var indexes = indexes();
+        return indexes.isEmpty() ? -1 : indexes.get(indexes.size() - 1);
+    }
+
+    /**
+     * Streams the contents of the snapshot including the specified number of transactions to destination.
+     */
+    public void read(long index, StreamRDF destination) throws IOException {
+        try (var in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file(index))))) {
+            RDFParser.create()
+                    .source(in)
+                    .lang(Lang.NQUADS)
+                    .labelToNode(LabelToNode.createUseLabelEncoded())
+                    .parse(destination);
+        }
+    }
+
+    /**
+     * Takes snapshots of the dataset periodically in a background thread.
+     */
+    public void schedule(DatasetGraph dsg, TransactionLog txnLog, long intervalHours) {
+        var executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                create(dsg, txnLog);
+            } catch (Exception e) {
+                log.error("Error creating a snapshot", e);
+            }
+        }, intervalHours, intervalHours, TimeUnit.HOURS);
+    }
+
+    private List<Long> indexes() {
+        var names = directory.list((dir, name) -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX));
+        if (names == null) {
+            return List.of();
+        }
+        var indexes = new ArrayList<Long>();
+        for (var name : names) {
+            indexes.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())));
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private File file(long index) {
+        return new File(directory, SNAPSHOT_PREFIX + index + SNAPSHOT_SUFFIX);
+    }
+}
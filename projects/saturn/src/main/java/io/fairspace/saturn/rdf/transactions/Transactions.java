@@ -15,8 +15,29 @@ public interface Transactions extends AutoCloseable {
         });
     }
 
+    /**
+     * Performs a large or not time-critical write job, e.g. an import or a background update.
+     * Implementations may execute such jobs after interactive ones.
+     */
+    default <R, E extends Exception> R calculateBulkWrite(ThrowingFunction<? super Model, R, E> job) throws E {
+        return calculateWrite(job);
+    }
+
+    default <E extends Exception> void executeBulkWrite(ThrowingConsumer<? super Model, E> job) throws E {
+        calculateBulkWrite(model -> {
+            job.accept(model);
+            return null;
+        });
+    }
+
     <R, E extends Exception> R calculateRead(ThrowingFunction<? super Model, R, E> job) throws E;
 
+    /**
+     * Begins a read transaction for the current thread, unless it is in a transaction already.
+     * The transaction ends when the snapshot is closed, or earlier, when it is released with {@link ReadSnapshot#release()}.
+     */
+    ReadSnapshot readSnapshot();
+
     default <E extends Exception> void executeRead(ThrowingConsumer<? super Model, E> job) throws E {
         calculateRead(model -> {
             job.accept(model);
@@ -15,15 +15,22 @@ import java.util.*;
 public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
     private final DatasetGraph dsg;
     private final ViewStoreClientFactory viewStoreClientFactory;
+    // If set, subjects are indexed asynchronously after the commit
+    private final ViewIndexer viewIndexer;
     // One set of updated subjects if write transactions are handled sequentially.
     // If many write transactions can be active simultaneously, this set needs to be
     // tied to the active thread.
     private final Set<Node> updatedSubjects = new HashSet<>();
 
     public TxnIndexDatasetGraph(DatasetGraph dsg, ViewStoreClientFactory viewStoreClientFactory) {
+        this(dsg, viewStoreClientFactory, null);
+    }
+
+    public TxnIndexDatasetGraph(DatasetGraph dsg, ViewStoreClientFactory viewStoreClientFactory, ViewIndexer viewIndexer) {
         super(dsg);
         this.dsg = dsg;
         this.viewStoreClientFactory = viewStoreClientFactory;
+        this.viewIndexer = viewIndexer;
     }
 
     private void markSubject(Node subject) {
@@ -51,6 +58,17 @@ public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
     @SneakyThrows
     @Override
     public void commit() {
+        if (isInWriteTransaction() && viewIndexer != null) {
+            var subjects = Set.copyOf(updatedSubjects);
+            updatedSubjects.clear();
+            // The transaction has been logged already by the enclosing TxnLogDatasetGraph,
+            // and no other transaction can be logged before the commit
+            var logIndex = viewIndexer.lastLogIndex();
+            super.commit();
+            log.debug("Submitting {} updated subjects for indexing", subjects.size());
+            viewIndexer.submit(logIndex, subjects);
+            return;
+        }
         if (isInWriteTransaction()) {
             log.debug("Commit updated subjects: {}", updatedSubjects);
             var start = new Date().getTime();
@@ -0,0 +1,108 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import io.fairspace.saturn.rdf.*;
+import lombok.extern.slf4j.*;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.*;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notifies commit listeners of the subjects changed by a write transaction and their types.
+ * The types of the changed subjects are collected before the commit, while the transaction is still active.
+ * Listeners are called after the commit.
+ * <p>
+ * Also maintains a {@link #version()} of the dataset, for caches of data derived from uncommitted changes.
+ */
+@Slf4j
+public class TxnListenerDatasetGraph extends AbstractChangesAwareDatasetGraph {
+    private final List<CommitListener> listeners = new CopyOnWriteArrayList<>();
+    // Changed subjects and the types added or removed by the transaction.
+    // Write transactions are handled sequentially.
+    private final Map<Node, Set<Node>> changes = new HashMap<>();
+    // Incremented on every change, committed or not, and on every abort
+    private final AtomicLong version = new AtomicLong();
+
+    public TxnListenerDatasetGraph(DatasetGraph dsg) {
+        super(dsg);
+    }
+
+    public void addListener(CommitListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return a number which changes whenever the dataset changes, including changes made by a transaction
+     * which has not been committed yet and the rollback of such changes.
+     * Data derived from the dataset stays valid for as long as the version is unchanged.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    protected void onChange(QuadAction action, Node graph, Node subject, Node predicate, Node object) {
+        switch (action) {
+            case ADD, DELETE -> {
+                version.incrementAndGet();
+                var types = changes.computeIfAbsent(subject, s -> new HashSet<>());
+                if (predicate.equals(RDF.type.asNode())) {
+                    types.add(object);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void begin(TxnType type) {
+        begin(TxnType.convert(type));
+        if (isInWriteTransaction()) {
+            changes.clear();
+        }
+    }
+
+    @Override
+    public void commit() {
+        if (!isInWriteTransaction() || listeners.isEmpty()) {
+            changes.clear();
+            super.commit();
+            return;
+        }
+        var subjectTypes = new HashMap<Node, Set<Node>>();
+        changes.forEach((subject, types) -> {
+            var allTypes = new HashSet<>(types);
+            getDefaultGraph().find(subject, RDF.type.asNode(), Node.ANY)
+                    .mapWith(Triple::getObject)
+                    .forEachRemaining(allTypes::add);
+            subjectTypes.put(subject, allTypes);
+        });
+        changes.clear();
+        super.commit();
+        if (subjectTypes.isEmpty()) {
+            return;
+        }
+        for (var listener : listeners) {
+            try {
+                listener.onCommit(subjectTypes);
+            } catch (Exception e) {
+                log.error("Error notifying a commit listener", e);
+            }
+        }
+    }
+
+    @Override
+    public void abort() {
+        changes.clear();
+        super.abort();
+        version.incrementAndGet();
+    }
+
+    private boolean isInWriteTransaction() {
+        return transactionMode() == ReadWrite.WRITE;
+    }
+}
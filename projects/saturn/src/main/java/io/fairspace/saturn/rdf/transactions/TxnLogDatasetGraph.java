@@ -64,6 +64,10 @@ public class TxnLogDatasetGraph extends AbstractChangesAwareDatasetGraph {
         }
     }
 
+    /**
+     * A write transaction is logged before it is committed to the dataset,
+     * so that the dataset never contains changes missing from the log.
+     */
     @Override
     public void commit() {
         if (isInWriteTransaction()) {
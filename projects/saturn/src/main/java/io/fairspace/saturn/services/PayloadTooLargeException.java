@@ -0,0 +1,10 @@
+package io.fairspace.saturn.services;
+
+/**
+ * Indicates that an HTTP request body exceeds a configured limit
+ */
+public class PayloadTooLargeException extends RuntimeException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package io.fairspace.saturn.services.maintenance;
+
+import lombok.Value;
+
+@Value
+public class CompactionStatusDTO {
+    boolean active;
+    long size;
+    // The results of the last compaction, null if the database has not been compacted since startup
+    Long sizeBefore;
+    Long sizeAfter;
+    Long reclaimed;
+    Long durationMillis;
+    Boolean failed;
+}
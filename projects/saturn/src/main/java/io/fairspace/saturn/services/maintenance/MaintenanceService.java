@@ -1,6 +1,8 @@
 package io.fairspace.saturn.services.maintenance;
 
 import io.fairspace.saturn.config.ConfigLoader;
+import io.fairspace.saturn.config.ViewsConfig;
+import io.fairspace.saturn.rdf.DatasetCompactor;
 import io.fairspace.saturn.services.*;
 import io.fairspace.saturn.services.users.*;
 import io.fairspace.saturn.services.views.*;
@@ -11,19 +13,38 @@ import org.apache.jena.query.Dataset;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+import static io.fairspace.saturn.config.Services.DATASET_COMPACTOR;
 
 @Log4j2
 public class MaintenanceService {
+    public static final int DEFAULT_REINDEX_PARALLELISM = 4;
+
     private final ThreadPoolExecutor threadpool = new ThreadPoolExecutor(1, 1,
             0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
     private final UserService userService;
     private final Dataset dataset;
     private final ViewStoreClientFactory viewStoreClientFactory;
+    private final int reindexParallelism;
+    private final Map<String, ViewProgress> progress = new ConcurrentHashMap<>();
+    private final DatasetCompactor compactor;
 
     public MaintenanceService(@NonNull UserService userService, @NonNull Dataset dataset, ViewStoreClientFactory viewStoreClientFactory) {
+        this(userService, dataset, viewStoreClientFactory, DEFAULT_REINDEX_PARALLELISM);
+    }
+
+    /**
+     * @param reindexParallelism the maximum number of copy tasks running concurrently
+     *                           when recreating the view index.
+     */
+    public MaintenanceService(@NonNull UserService userService, @NonNull Dataset dataset, ViewStoreClientFactory viewStoreClientFactory, int reindexParallelism) {
         this.userService = userService;
         this.dataset = dataset;
         this.viewStoreClientFactory = viewStoreClientFactory;
+        this.reindexParallelism = reindexParallelism;
+        this.compactor = dataset.getContext().get(DATASET_COMPACTOR);
     }
 
     public boolean disabled() {
@@ -51,18 +72,162 @@ public class MaintenanceService {
         });
     }
 
+    /**
+     * @return the progress of the current or last reindexing task per view.
+     */
+    public ReindexStatusDTO getReindexStatus() {
+        if (!userService.currentUser().isAdmin()) {
+            throw new AccessDeniedException();
+        }
+        if (disabled()) {
+            throw new NotAvailableException("Service not available");
+        }
+        var views = ConfigLoader.VIEWS_CONFIG.views.stream()
+                .map(view -> view.name)
+                .filter(progress::containsKey)
+                .map(view -> progress.get(view).toDTO(view))
+                .collect(Collectors.toList());
+        return new ReindexStatusDTO(active(), views);
+    }
+
+    /**
+     * Starts compacting the database in the background.
+     */
+    public void startCompactionTask() {
+        if (!userService.currentUser().isAdmin()) {
+            throw new AccessDeniedException();
+        }
+        if (compactor == null) {
+            throw new NotAvailableException("Service not available");
+        }
+        if (!compactor.start()) {
+            log.info("Compaction is already in progress.");
+            throw new ConflictException("Compaction is already in progress.");
+        }
+    }
+
+    /**
+     * @return the size of the database and the results of the last compaction
+     */
+    public CompactionStatusDTO getCompactionStatus() {
+        if (!userService.currentUser().isAdmin()) {
+            throw new AccessDeniedException();
+        }
+        if (compactor == null) {
+            throw new NotAvailableException("Service not available");
+        }
+        var last = compactor.getLastResult();
+        return last == null
+                ? new CompactionStatusDTO(compactor.isActive(), compactor.size(), null, null, null, null, null)
+                : new CompactionStatusDTO(compactor.isActive(), compactor.size(), last.getSizeBefore(), last.getSizeAfter(),
+                last.getSizeBefore() - last.getSizeAfter(), last.getDurationMillis(), last.isFailed());
+    }
+
+    /**
+     * Recreates the view index.
+     * The tables of all views are truncated first and their secondary indexes are dropped.
+     * Then the values, value sets and links of all views are copied concurrently,
+     * each copy task in its own read transaction and view database transaction.
+     * Finally, the secondary indexes are recreated.
+     */
     public void recreateIndex() {
-        try (var viewStoreClient = viewStoreClientFactory.build();
-             var viewUpdater = new ViewUpdater(viewStoreClient, dataset.asDatasetGraph())){
-            var start = new Date().getTime();
-            // Index entities
-            for (var view : ConfigLoader.VIEWS_CONFIG.views) {
-                viewUpdater.recreateIndexForView(viewStoreClient, view);
+        var start = new Date().getTime();
+        var views = ConfigLoader.VIEWS_CONFIG.views;
+        var labelledTerms = ConcurrentHashMap.<String>newKeySet();
+        var tasks = new ArrayList<Callable<Void>>();
+        progress.clear();
+        for (var view : views) {
+            var viewTasks = getCopyTasks(view);
+            var viewProgress = new ViewProgress(viewTasks.size());
+            progress.put(view.name, viewProgress);
+            viewTasks.forEach(task -> tasks.add(() -> {
+                try (var viewStoreClient = viewStoreClientFactory.build();
+                     var viewUpdater = new ViewUpdater(viewStoreClient, dataset.asDatasetGraph(), labelledTerms)) {
+                    var rows = task.copy(viewUpdater);
+                    viewUpdater.commit();
+                    viewProgress.rows.addAndGet(rows);
+                    viewProgress.completedTasks.incrementAndGet();
+                } catch (Exception e) {
+                    viewProgress.failed = true;
+                    throw e;
+                }
+                return null;
+            }));
+        }
+
+        var executor = Executors.newFixedThreadPool(reindexParallelism);
+        try {
+            try (var viewStoreClient = viewStoreClientFactory.build()) {
+                for (var view : views) {
+                    viewStoreClient.truncateViewTables(view.name);
+                    viewStoreClient.dropSecondaryIndexes(view.name);
+                }
+                viewStoreClient.commit();
+            }
+            var futures = tasks.stream().map(executor::submit).collect(Collectors.toList());
+            try {
+                for (var future : futures) {
+                    future.get();
+                }
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+                try (var viewStoreClient = viewStoreClientFactory.build()) {
+                    for (var view : views) {
+                        viewStoreClient.createSecondaryIndexes(view.name);
+                    }
+                    viewStoreClient.commit();
+                }
             }
-            viewUpdater.commit();
             log.info("View index recreated in {}ms.", new Date().getTime() - start);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to recreate index", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to recreate index", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while recreating index", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<CopyTask> getCopyTasks(ViewsConfig.View view) {
+        var tasks = new ArrayList<CopyTask>();
+        for (var type : view.types) {
+            tasks.add(viewUpdater -> viewUpdater.copyValuesForType(view, type));
+            for (var column : view.columns) {
+                if (column.type.isSet()) {
+                    tasks.add(viewUpdater -> viewUpdater.copyValueSetsForColumn(view, type, column));
+                }
+            }
+            if (view.join != null) {
+                for (var join : view.join) {
+                    if (!join.reverse) {
+                        tasks.add(viewUpdater -> viewUpdater.copyLinks(view, type, join));
+                    }
+                }
+            }
+        }
+        return tasks;
+    }
+
+    @FunctionalInterface
+    private interface CopyTask {
+        int copy(ViewUpdater viewUpdater) throws SQLException;
+    }
+
+    private static class ViewProgress {
+        final int totalTasks;
+        final AtomicInteger completedTasks = new AtomicInteger();
+        final AtomicLong rows = new AtomicLong();
+        volatile boolean failed;
+
+        ViewProgress(int totalTasks) {
+            this.totalTasks = totalTasks;
+        }
+
+        ViewReindexStatusDTO toDTO(String view) {
+            return new ViewReindexStatusDTO(view, totalTasks, completedTasks.get(), rows.get(), failed);
         }
     }
 }
@@ -0,0 +1,11 @@
+package io.fairspace.saturn.services.maintenance;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class ReindexStatusDTO {
+    boolean active;
+    List<ViewReindexStatusDTO> views;
+}
@@ -0,0 +1,12 @@
+package io.fairspace.saturn.services.maintenance;
+
+import lombok.Value;
+
+@Value
+public class ViewReindexStatusDTO {
+    String view;
+    int totalTasks;
+    int completedTasks;
+    long rows;
+    boolean failed;
+}
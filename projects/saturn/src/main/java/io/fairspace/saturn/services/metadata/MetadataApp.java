@@ -1,13 +1,19 @@
 package io.fairspace.saturn.services.metadata;
 
+import io.fairspace.saturn.config.Config;
 import io.fairspace.saturn.services.AccessDeniedException;
 import io.fairspace.saturn.services.BaseApp;
 import io.fairspace.saturn.services.PayloadParsingException;
+import io.fairspace.saturn.services.PayloadTooLargeException;
 import io.fairspace.saturn.services.metadata.validation.ValidationException;
 import lombok.extern.log4j.*;
 import org.apache.jena.rdf.model.Model;
 import spark.Request;
 
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+
 import static io.fairspace.saturn.services.errors.ErrorHelper.errorBody;
 import static io.fairspace.saturn.services.errors.ErrorHelper.exceptionHandler;
 import static io.fairspace.saturn.services.metadata.Serialization.*;
@@ -21,10 +27,12 @@ import static spark.Spark.*;
 @Log4j2
 public class MetadataApp extends BaseApp {
     protected final MetadataService api;
+    private final Config.Metadata config;
 
-    public MetadataApp(String basePath, MetadataService api) {
+    public MetadataApp(String basePath, MetadataService api, Config.Metadata config) {
         super(basePath);
         this.api = api;
+        this.config = config;
     }
 
     @Override
@@ -33,11 +41,14 @@ public class MetadataApp extends BaseApp {
             var model = getMetadata(req);
             var format = getFormat(req.headers("Accept"));
             res.type(format.getLang().getHeaderString());
-            return serialize(model, format);
+            var out = res.raw().getOutputStream();
+            serialize(model, format, out);
+            out.flush();
+            return "";
         });
 
         put("/", (req, res) -> {
-            var model = deserialize(req.body(), req.contentType());
+            var model = deserialize(body(req), req.contentType(), config.maxRequestSize, config.maxStatements);
 
             api.put(model);
 
@@ -45,7 +56,7 @@ public class MetadataApp extends BaseApp {
             return "";
         });
         patch("/", (req, res) -> {
-            var model = deserialize(req.body(), req.contentType());
+            var model = deserialize(body(req), req.contentType(), config.maxRequestSize, config.maxStatements);
 
             api.patch(model);
 
@@ -62,13 +73,14 @@ public class MetadataApp extends BaseApp {
                     return null;
                 }
             } else {
-                var model = deserialize(req.body(), req.contentType());
+                var model = deserialize(body(req), req.contentType(), config.maxRequestSize, config.maxStatements);
                 api.delete(model);
             }
 
             res.status(SC_NO_CONTENT);
             return "";
         });
+        exception(PayloadTooLargeException.class, exceptionHandler(SC_REQUEST_ENTITY_TOO_LARGE, null));
         exception(PayloadParsingException.class, exceptionHandler(SC_BAD_REQUEST, "Malformed request body"));
         exception(ValidationException.class, (e, req, res) -> {
             log.error("400 Error handling request {} {}", req.requestMethod(), req.uri());
@@ -87,6 +99,18 @@ public class MetadataApp extends BaseApp {
         });
     }
 
+    /**
+     * Spark's request wrapper reads the whole request body into memory,
+     * so the body is read from the wrapped request instead.
+     */
+    private static InputStream body(Request req) throws IOException {
+        var raw = req.raw();
+        if (raw instanceof HttpServletRequestWrapper) {
+            return ((HttpServletRequestWrapper) raw).getRequest().getInputStream();
+        }
+        return raw.getInputStream();
+    }
+
     private Model getMetadata(Request req) {
         return api.get(
                 req.queryParams("subject"),
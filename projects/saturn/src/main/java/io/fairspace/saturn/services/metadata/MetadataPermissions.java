@@ -4,9 +4,17 @@ import io.fairspace.saturn.services.users.UserService;
 import io.fairspace.saturn.services.workspaces.WorkspaceService;
 import io.fairspace.saturn.vocabulary.FS;
 import io.fairspace.saturn.webdav.DavFactory;
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+
 public class MetadataPermissions {
     private final WorkspaceService workspaceService;
     private final DavFactory davFactory;
@@ -32,6 +40,46 @@ public class MetadataPermissions {
         return userService.currentUser().isCanViewPublicMetadata();
     }
 
+    /**
+     * Returns a check of read access to metadata for the current user, equivalent to {@link #canReadMetadata},
+     * meant to be used for the duration of a single query.
+     * The user and the workspaces the user can read are resolved once, and decisions are memoized per subject.
+     * The returned check is not thread-safe.
+     */
+    public Predicate<Resource> readAccess() {
+        var user = userService.currentUser();
+        if (user == null) {
+            return this::canReadMetadata;
+        }
+        if (user.isAdmin()) {
+            return resource -> true;
+        }
+        var decisions = new HashMap<Node, Boolean>();
+        var workspaces = new Object() {
+            Set<Node> readable;
+
+            boolean contains(Resource workspace) {
+                if (readable == null) {
+                    readable = new HashSet<>();
+                    var userResource = workspace.getModel().wrapAsResource(getUserURI());
+                    userResource.listProperties(FS.isMemberOf)
+                            .andThen(userResource.listProperties(FS.isManagerOf))
+                            .forEachRemaining(stmt -> readable.add(stmt.getObject().asNode()));
+                }
+                return readable.contains(workspace.asNode());
+            }
+        };
+        return resource -> decisions.computeIfAbsent(resource.asNode(), subject -> {
+            if (davFactory.isFileSystemResource(resource)) {
+                return davFactory.getAccess(resource).canList();
+            }
+            if (resource.hasProperty(RDF.type, FS.Workspace)) {
+                return workspaces.contains(resource);
+            }
+            return user.isCanViewPublicMetadata();
+        });
+    }
+
     public boolean canWriteMetadata(Resource resource) {
         if (userService.currentUser().isAdmin()) {
             return true;
@@ -1,5 +1,6 @@
 package io.fairspace.saturn.services.metadata;
 
+import com.pivovarit.function.ThrowingFunction;
 import io.fairspace.saturn.rdf.transactions.Transactions;
 import io.fairspace.saturn.services.AccessDeniedException;
 import io.fairspace.saturn.services.metadata.validation.MetadataRequestValidator;
@@ -25,6 +26,8 @@ import static io.fairspace.saturn.vocabulary.Vocabularies.SYSTEM_VOCABULARY;
 import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
 
 public class MetadataService {
+    private static final long BULK_UPDATE_SIZE = 10_000;
+
     private final Transactions transactions;
     private final Model vocabulary;
     private final MetadataRequestValidator validator;
@@ -166,7 +169,7 @@ public class MetadataService {
      * @param model
      */
     public void patch(Model model) {
-        logUpdates(transactions.calculateWrite(before -> {
+        logUpdates(write(model.size(), before -> {
             var existing = createDefaultModel();
             model.listStatements()
                     .filterKeep(stmt -> stmt.getSubject().isURIResource())
@@ -179,7 +182,7 @@ public class MetadataService {
     }
 
     private Set<Resource> update(Model modelToRemove, Model modelToAdd) {
-        return transactions.calculateWrite(before -> {
+        return write(modelToRemove.size() + modelToAdd.size(), before -> {
             trimLabels(modelToAdd);
             var after = updatedView(before, modelToRemove, modelToAdd);
 
@@ -191,6 +194,13 @@ public class MetadataService {
         });
     }
 
+    /**
+     * Large updates are executed as bulk writes, so that they do not delay interactive ones.
+     */
+    private <R> R write(long size, ThrowingFunction<? super Model, R, RuntimeException> job) {
+        return size > BULK_UPDATE_SIZE ? transactions.calculateBulkWrite(job) : transactions.calculateWrite(job);
+    }
+
     private void logDeleted(Set<Resource> updatedResources) {
         updatedResources.forEach(resource -> audit("METADATA_DELETED", "iri", resource.getURI()));
     }
@@ -1,12 +1,21 @@
 package io.fairspace.saturn.services.metadata;
 
+import io.fairspace.saturn.services.PayloadParsingException;
+import io.fairspace.saturn.services.PayloadTooLargeException;
 import io.fairspace.saturn.util.UnsupportedMediaTypeException;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.riot.system.StreamRDFWriter;
 
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,16 +29,68 @@ public class Serialization {
             .map(f -> f.getLang().getHeaderString())
             .collect(Collectors.toList());
 
-    public static Model deserialize(String body, String contentType) {
+    /**
+     * Parses statements from a stream directly into a model, without buffering the serialized form.
+     *
+     * @param maxSize       the maximum number of bytes to read.
+     * @param maxStatements the maximum number of statements to accept.
+     * @throws PayloadTooLargeException if one of the limits is exceeded.
+     * @throws PayloadParsingException  if the input is malformed.
+     */
+    public static Model deserialize(InputStream in, String contentType, long maxSize, long maxStatements) {
+        var format = getFormat(contentType);
         var model = createDefaultModel();
-        RDFDataMgr.read(model, new StringReader(body), null, getFormat(contentType).getLang());
+        var graph = model.getGraph();
+        var limitedInputStream = new CountingInputStream(in) {
+            @Override
+            protected synchronized void afterRead(int n) {
+                super.afterRead(n);
+                if (getByteCount() > maxSize) {
+                    throw new PayloadTooLargeException("The request body exceeds the maximum size of " + maxSize + " bytes");
+                }
+            }
+        };
+        var sink = new StreamRDFBase() {
+            private long count;
+
+            @Override
+            public void triple(Triple triple) {
+                if (++count > maxStatements) {
+                    throw new PayloadTooLargeException("The request body exceeds the maximum of " + maxStatements + " statements");
+                }
+                graph.add(triple);
+            }
+
+            @Override
+            public void prefix(String prefix, String iri) {
+                model.setNsPrefix(prefix, iri);
+            }
+        };
+        try {
+            RDFParser.create()
+                    .source(limitedInputStream)
+                    .lang(format.getLang())
+                    .parse(sink);
+        } catch (RiotException e) {
+            throw new PayloadParsingException(e.getMessage(), e);
+        }
         return model;
     }
 
-    public static String serialize(Model model, RDFFormat format) {
-        var writer = new StringWriter();
-        RDFDataMgr.write(writer, model, format);
-        return writer.toString();
+    /**
+     * Writes a model to a stream.
+     * Line-based formats are written statement by statement, other formats are written by Jena's writers,
+     * which may need to analyze the whole model first.
+     */
+    public static void serialize(Model model, RDFFormat format, OutputStream out) {
+        if (StreamRDFWriter.registered(format)) {
+            var writer = StreamRDFWriter.getWriterStream(out, format);
+            writer.start();
+            StreamRDFOps.sendGraphToStream(model.getGraph(), writer);
+            writer.finish();
+        } else {
+            RDFDataMgr.write(out, model, format);
+        }
     }
 
     public static RDFFormat getFormat(String contentType) {
@@ -17,7 +17,10 @@ public class VocabularyApp extends BaseApp {
         get("/", (req, res) -> {
             var format = getFormat(req.headers("Accept"));
             res.type(format.getLang().getHeaderString());
-            return serialize(VOCABULARY, format);
+            var out = res.raw().getOutputStream();
+            serialize(VOCABULARY, format, out);
+            out.flush();
+            return "";
         });
     }
 }
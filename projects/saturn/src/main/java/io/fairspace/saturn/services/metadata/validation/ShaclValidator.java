@@ -1,49 +1,155 @@
 package io.fairspace.saturn.services.metadata.validation;
 
-import org.apache.jena.graph.FrontsNode;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.shacl.Shapes;
+import org.apache.jena.shacl.engine.ValidationContext;
+import org.apache.jena.shacl.parser.PropertyShape;
+import org.apache.jena.shacl.parser.Shape;
 import org.apache.jena.shacl.vocabulary.SHACL;
 import org.apache.jena.sparql.path.P_Link;
 import org.apache.jena.sparql.path.Path;
+import org.apache.jena.vocabulary.RDF;
 
-import static org.apache.jena.shacl.validation.ValidationProc.plainValidationNode;
+import java.util.*;
 
+import static org.apache.jena.graph.Node.ANY;
+import static org.apache.jena.riot.other.G.allTypesOfNodeRDFS;
+import static org.apache.jena.shacl.validation.VLib.evalConstraint;
+import static org.apache.jena.shacl.validation.VLib.validateShape;
+
+/**
+ * Validates changed resources against the SHACL shapes of the vocabulary.
+ * <p>
+ * The shapes are compiled once, indexed by their targets, and their property shapes are indexed by predicate.
+ * Only resources with triples which were actually added or removed are validated, and only against the shapes targeting them.
+ * If the type of a resource has changed, all constraints of these shapes are checked,
+ * otherwise only the node constraints and the property shapes for the changed predicates.
+ * That keeps the costs of validation proportional to the size of a change rather than to the size of the vocabulary.
+ */
 public class ShaclValidator extends VocabularyAwareValidator {
     private final Shapes shapes;
+    private final Map<Node, List<CompiledShape>> shapesByClass = new HashMap<>();
+    private final Map<Node, List<CompiledShape>> shapesByNode = new HashMap<>();
+    private final Map<Node, List<CompiledShape>> shapesBySubjectsOf = new HashMap<>();
+    private final Map<Node, List<CompiledShape>> shapesByObjectsOf = new HashMap<>();
 
     public ShaclValidator(Model vocabulary) {
         super(vocabulary);
 
-        shapes = Shapes.parse(vocabulary);;
+        shapes = Shapes.parse(vocabulary);
+
+        for (var shape : shapes.getTargetShapes()) {
+            if (shape.deactivated()) {
+                continue;
+            }
+            var compiled = new CompiledShape(shape);
+            shape.getTargets().forEach(target -> {
+                switch (target.getTargetType()) {
+                    case targetClass, implicitClass -> register(shapesByClass, target.getObject(), compiled);
+                    case targetNode -> register(shapesByNode, target.getObject(), compiled);
+                    case targetSubjectsOf -> register(shapesBySubjectsOf, target.getObject(), compiled);
+                    case targetObjectsOf -> register(shapesByObjectsOf, target.getObject(), compiled);
+                }
+            });
+        }
+    }
+
+    private static void register(Map<Node, List<CompiledShape>> index, Node key, CompiledShape shape) {
+        var list = index.computeIfAbsent(key, k -> new ArrayList<>());
+        if (!list.contains(shape)) {
+            list.add(shape);
+        }
     }
 
     @Override
     public void validate(Model before, Model after, Model removed, Model added, ViolationHandler violationHandler) {
-        var affected = removed.listSubjects()
-                .filterKeep(s -> after.contains(s, null))
-                .andThen(added.listSubjects())
-                .mapWith(FrontsNode::asNode)
-                .toSet();
+        var changes = new HashMap<Node, Set<Node>>();
+        added.listStatements()
+                .filterDrop(before::contains)
+                .forEachRemaining(stmt -> addChange(changes, stmt));
+        removed.listStatements()
+                .filterKeep(stmt -> after.contains(stmt.getSubject(), null))
+                .filterKeep(before::contains)
+                .filterDrop(after::contains)
+                .forEachRemaining(stmt -> addChange(changes, stmt));
 
-        if (affected.isEmpty()) {
+        if (changes.isEmpty()) {
             return;
         }
 
         var data = after.getGraph();
+        var vCxt = ValidationContext.create(shapes, data);
+
+        changes.forEach((node, predicates) -> {
+            var typeChanged = predicates.contains(RDF.type.asNode());
+            targetingShapes(data, node).forEach(shape -> shape.validate(vCxt, data, node, predicates, typeChanged));
+        });
+
+        vCxt.generateReport()
+                .getEntries()
+                .forEach(entry -> {
+                    if (entry.severity().level() == SHACL.Violation) {
+                        violationHandler.onViolation(entry.message(), entry.focusNode(), pathToNode(entry.resultPath()), entry.value());
+                    }
+                });
+    }
 
-        affected.forEach(node ->
-                plainValidationNode(shapes, data, node)
-                        .getEntries()
-                        .forEach(entry -> {
-                            if (entry.severity().level() == SHACL.Violation) {
-                                violationHandler.onViolation(entry.message(), entry.focusNode(), pathToNode(entry.resultPath()), entry.value());
-                            }
-                        }));
+    private static void addChange(Map<Node, Set<Node>> changes, Statement stmt) {
+        changes.computeIfAbsent(stmt.getSubject().asNode(), s -> new HashSet<>()).add(stmt.getPredicate().asNode());
+    }
+
+    private Set<CompiledShape> targetingShapes(Graph data, Node node) {
+        var result = new LinkedHashSet<CompiledShape>();
+        if (!shapesByClass.isEmpty()) {
+            allTypesOfNodeRDFS(data, node).forEach(type -> result.addAll(shapesByClass.getOrDefault(type, List.of())));
+        }
+        result.addAll(shapesByNode.getOrDefault(node, List.of()));
+        shapesBySubjectsOf.forEach((predicate, list) -> {
+            if (data.contains(node, predicate, ANY)) {
+                result.addAll(list);
+            }
+        });
+        shapesByObjectsOf.forEach((predicate, list) -> {
+            if (data.contains(ANY, predicate, node)) {
+                result.addAll(list);
+            }
+        });
+        return result;
     }
 
     private static Node pathToNode(Path path) {
         return (path instanceof P_Link) ? ((P_Link) path).getNode() : null;
     }
+
+    private static class CompiledShape {
+        private final Shape shape;
+        private final Map<Node, List<PropertyShape>> propertyShapesByPredicate = new HashMap<>();
+        // Property shapes with complex paths, they are checked on every change
+        private final List<PropertyShape> otherPropertyShapes = new ArrayList<>();
+
+        CompiledShape(Shape shape) {
+            this.shape = shape;
+            shape.getPropertyShapes().forEach(ps -> {
+                if (ps.getPath() instanceof P_Link) {
+                    propertyShapesByPredicate.computeIfAbsent(((P_Link) ps.getPath()).getNode(), p -> new ArrayList<>()).add(ps);
+                } else {
+                    otherPropertyShapes.add(ps);
+                }
+            });
+        }
+
+        void validate(ValidationContext vCxt, Graph data, Node focusNode, Set<Node> predicates, boolean full) {
+            if (full) {
+                validateShape(vCxt, data, shape, focusNode);
+                return;
+            }
+            shape.getConstraints().forEach(c -> evalConstraint(vCxt, data, shape, focusNode, null, null, c));
+            predicates.forEach(predicate -> propertyShapesByPredicate.getOrDefault(predicate, List.of())
+                    .forEach(ps -> validateShape(vCxt, data, ps, focusNode)));
+            otherPropertyShapes.forEach(ps -> validateShape(vCxt, data, ps, focusNode));
+        }
+    }
 }
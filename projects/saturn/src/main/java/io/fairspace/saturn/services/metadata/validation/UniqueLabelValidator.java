@@ -2,26 +2,49 @@ package io.fairspace.saturn.services.metadata.validation;
 
 import io.fairspace.saturn.vocabulary.FS;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 
+import java.util.*;
+
+/**
+ * Checks that no two non-deleted resources of the same type have the same label.
+ * <p>
+ * Only resources whose label or type was actually changed are checked.
+ * They are grouped by label, so that the resources with a given label are looked up in the label index
+ * (the predicate-object index of the store) only once per request, however many resources share it.
+ */
 public class UniqueLabelValidator implements MetadataRequestValidator {
     @Override
     public void validate(Model before, Model after, Model removed, Model added, ViolationHandler violationHandler) {
-        added.listSubjectsWithProperty(RDFS.label)
-                .forEachRemaining(subject -> {
-                    var resource = subject.inModel(after);
-                    var type = resource.getPropertyResourceValue(RDF.type);
-                    var label = resource.getProperty(RDFS.label).getString();
-                    var conflictingResourceExists = after
-                            .listSubjectsWithProperty(RDFS.label, label)
-                            .filterDrop(subject::equals)
-                            .filterKeep(res -> res.hasProperty(RDF.type, type))
-                            .filterDrop(res -> res.hasProperty(FS.dateDeleted))
-                            .hasNext();
-                    if (conflictingResourceExists) {
-                        violationHandler.onViolation("Duplicate label", resource, RDFS.label, null);
+        var byLabel = new HashMap<String, List<Resource>>();
+        added.listStatements(null, RDFS.label, (RDFNode) null)
+                .andThen(added.listStatements(null, RDF.type, (RDFNode) null))
+                .filterDrop(before::contains)
+                .mapWith(stmt -> stmt.getSubject().inModel(after))
+                .toSet()
+                .forEach(resource -> {
+                    var label = resource.getProperty(RDFS.label);
+                    if (label != null) {
+                        byLabel.computeIfAbsent(label.getString(), l -> new ArrayList<>()).add(resource);
                     }
                 });
+
+        byLabel.forEach((label, resources) -> {
+            var withLabel = after.listSubjectsWithProperty(RDFS.label, label)
+                    .filterDrop(res -> res.hasProperty(FS.dateDeleted))
+                    .toList();
+            resources.forEach(resource -> {
+                var type = resource.getPropertyResourceValue(RDF.type);
+                var conflictingResourceExists = withLabel.stream()
+                        .filter(res -> !res.equals(resource))
+                        .anyMatch(res -> res.hasProperty(RDF.type, type));
+                if (conflictingResourceExists) {
+                    violationHandler.onViolation("Duplicate label", resource, RDFS.label, null);
+                }
+            });
+        });
     }
 }
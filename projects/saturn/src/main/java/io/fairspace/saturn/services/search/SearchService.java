@@ -1,24 +1,38 @@
 package io.fairspace.saturn.services.search;
 
+import io.fairspace.saturn.config.Config;
 import io.fairspace.saturn.rdf.SparqlUtils;
-import io.fairspace.saturn.services.views.QueryService;
-import io.fairspace.saturn.services.views.SparqlQueryService;
+import io.fairspace.saturn.services.views.ViewStoreClientFactory;
+import io.fairspace.saturn.services.views.ViewStoreReader;
 import io.fairspace.saturn.vocabulary.FS;
+import lombok.SneakyThrows;
 import lombok.extern.log4j.*;
+import org.apache.jena.graph.Node;
 import org.apache.jena.query.*;
-import org.apache.jena.rdf.model.Literal;
-import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.query.text.TextQuery;
+import org.apache.jena.vocabulary.RDFS;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import static java.util.Optional.ofNullable;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.INITIAL_HITS;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.isEnabled;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.queryWithGrowingHits;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.toLuceneQuery;
+import static java.util.stream.Collectors.toList;
+import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 import static org.apache.jena.rdf.model.ResourceFactory.createStringLiteral;
 import static org.apache.jena.system.Txn.calculateRead;
 
 @Log4j2
 public class SearchService {
+    private static final int MAX_LOOKUP_RESULTS = 20;
+    // Rows read from a view per query, some of which may not be readable by the current user
+    private static final int LOOKUP_PAGE_SIZE = 5 * MAX_LOOKUP_RESULTS;
+    // Pages read from a view, before falling back to a lookup in the dataset
+    private static final int MAX_LOOKUP_PAGES = 10;
+
     private static final Query RESOURCE_BY_TEXT_QUERY = QueryFactory.create(String.format("""
             PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
             PREFIX fs: <%1$s>
@@ -30,8 +44,24 @@ public class SearchService {
                 FILTER NOT EXISTS { ?id fs:dateDeleted ?anydate }
                 FILTER (regex(?label, ?regexQuery, "i") || regex(?comment, ?regexQuery, "i"))
             } ORDER BY ?label
-            LIMIT 20
-            """, FS.NS));
+            LIMIT %2$d
+            """, FS.NS, MAX_LOOKUP_RESULTS));
+
+    // Formatted with the number of hits of the text index
+    private static final String RESOURCE_BY_TEXT_INDEX_QUERY = String.format("""
+            PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+            PREFIX fs: <%1$s>
+            PREFIX text: <%2$s>
+
+            SELECT DISTINCT ?id ?label ?comment
+            WHERE {
+                ?id text:query (?textQuery %%d) .
+                ?id a ?type ; rdfs:label ?label .
+                OPTIONAL { ?id rdfs:comment ?comment }
+                FILTER NOT EXISTS { ?id fs:dateDeleted ?anydate }
+            } ORDER BY ?label
+            LIMIT %3$d
+            """, FS.NS, TextQuery.NS, MAX_LOOKUP_RESULTS);
 
     private static final Query RESOURCE_BY_TEXT_EXACT_MATCH_QUERY = QueryFactory.create(String.format("""
             PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
@@ -47,9 +77,21 @@ public class SearchService {
             """, FS.NS));
 
     private final Dataset ds;
+    private final Config.Search searchConfig;
+    private final ViewStoreClientFactory viewStoreClientFactory;
 
     public SearchService(Dataset ds) {
+        this(ds, null, null);
+    }
+
+    /**
+     * @param ds                     the dataset, filtered by the metadata permissions of the current user
+     * @param viewStoreClientFactory if not null, resources indexed by a view are looked up in the view database
+     */
+    public SearchService(Dataset ds, Config.Search searchConfig, ViewStoreClientFactory viewStoreClientFactory) {
         this.ds = ds;
+        this.searchConfig = searchConfig;
+        this.viewStoreClientFactory = viewStoreClientFactory;
     }
 
     public SearchResultsDTO getLookupSearchResults(LookupSearchRequest request) {
@@ -59,7 +101,20 @@ public class SearchService {
                 .build();
     }
 
+    @SneakyThrows
     private List<SearchResultDTO> getResourceByText(LookupSearchRequest request) {
+        if (viewStoreClientFactory != null && request.getResourceType() != null) {
+            try (var reader = new ViewStoreReader(searchConfig, viewStoreClientFactory)) {
+                var view = reader.viewForType(request.getResourceType());
+                if (view != null) {
+                    var results = lookupInView(reader, view, request.getQuery());
+                    if (results != null) {
+                        return results;
+                    }
+                }
+            }
+        }
+
         var binding = new QuerySolutionMap();
         binding.add("query", createStringLiteral(request.getQuery()));
         binding.add("type", createResource(request.getResourceType()));
@@ -69,7 +124,45 @@ public class SearchService {
             return results;
         }
 
+        var textQuery = isEnabled(ds.asDatasetGraph()) ? toLuceneQuery(request.getQuery()) : "";
+        if (!textQuery.isEmpty()) {
+            binding.add("textQuery", createStringLiteral(textQuery));
+            return queryWithGrowingHits(ds.asDatasetGraph(), textQuery, MAX_LOOKUP_RESULTS, INITIAL_HITS, hits ->
+                    SparqlUtils.getByQuery(QueryFactory.create(String.format(RESOURCE_BY_TEXT_INDEX_QUERY, hits)), binding, ds));
+        }
+
         binding.add("regexQuery", createStringLiteral(SparqlUtils.getQueryRegex(request.getQuery())));
         return SparqlUtils.getByQuery(RESOURCE_BY_TEXT_QUERY, binding, ds);
     }
+
+    /**
+     * Looks up resources by label or description in a view table, returning only exact matches if there are any.
+     * Rows of the view are checked against the filtered dataset, so that only readable resources are returned.
+     * Rows are read page by page, until enough readable rows have been found or there are no more rows.
+     *
+     * @return the results, or null if most matching rows are not readable, and too many pages would have to be read
+     */
+    private List<SearchResultDTO> lookupInView(ViewStoreReader reader, String view, String query) {
+        var results = new ArrayList<SearchResultDTO>();
+        for (var page = 0; results.size() < MAX_LOOKUP_RESULTS; page++) {
+            if (page == MAX_LOOKUP_PAGES) {
+                log.debug("Not enough readable rows in {} pages of view {}, looking up in the dataset", page, view);
+                return null;
+            }
+            var rows = reader.searchLabels(view, query, page * LOOKUP_PAGE_SIZE, LOOKUP_PAGE_SIZE);
+            calculateRead(ds, () -> rows.stream()
+                    .filter(row -> ds.asDatasetGraph().getDefaultGraph()
+                            .contains(createURI(row.getId()), RDFS.Nodes.label, Node.ANY))
+                    .limit(MAX_LOOKUP_RESULTS - results.size())
+                    .collect(toList()))
+                    .forEach(results::add);
+            if (rows.size() < LOOKUP_PAGE_SIZE) {
+                break;
+            }
+        }
+        var exactMatches = results.stream()
+                .filter(row -> query.equals(row.getLabel()))
+                .collect(toList());
+        return exactMatches.isEmpty() ? results : exactMatches;
+    }
 }
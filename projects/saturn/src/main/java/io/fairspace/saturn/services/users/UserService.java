@@ -1,8 +1,5 @@
 package io.fairspace.saturn.services.users;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import io.fairspace.saturn.config.Config;
 import io.fairspace.saturn.rdf.dao.DAO;
 import io.fairspace.saturn.rdf.dao.PersistentEntity;
@@ -14,11 +11,13 @@ import org.apache.jena.graph.Node;
 import org.keycloak.OAuth2Constants;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.UserRepresentation;
 
 import javax.servlet.ServletException;
 import javax.ws.rs.NotFoundException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.*;
 
 import static io.fairspace.saturn.audit.Audit.audit;
@@ -26,28 +25,59 @@ import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 import static io.fairspace.saturn.auth.RequestContext.getUserURI;
 import static io.fairspace.saturn.rdf.SparqlUtils.generateMetadataIri;
 import static java.lang.System.getenv;
-import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toUnmodifiableMap;
 
+/**
+ * Provides the users known to Keycloak, together with their organisation-level roles stored in the database.
+ * <p>
+ * Users are served from an immutable snapshot, which is replaced atomically by a synchronisation with Keycloak.
+ * The first synchronisation is performed by the first caller, later ones run in the background
+ * when the snapshot is older than {@link #SYNC_INTERVAL_MILLIS}, so that lookups never wait for Keycloak.
+ * A synchronisation pages through the Keycloak users and compares them to the users of the snapshot by id.
+ * Only new users are read from the database, and only new or changed users are written.
+ */
 @Log4j2
 public class UserService {
-    private final LoadingCache<Boolean, Map<Node, User>> usersCache;
+    static final long SYNC_INTERVAL_MILLIS = 30_000;
+    static final int DEFAULT_PAGE_SIZE = 500;
+
     private final Transactions transactions;
     private final Config.Auth config;
     private final UsersResource usersResource;
-    private final ExecutorService threadpool = Executors.newSingleThreadExecutor();
+    private final int pageSize;
+    private final ExecutorService threadpool = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "User synchronisation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+
+    /**
+     * An immutable view of the users.
+     */
+    private static class Snapshot {
+        final Map<Node, User> users;
+        final Map<String, User> usersById;
+        // The time of the synchronisation with Keycloak, 0 if the snapshot needs to be synchronised
+        final long syncedAt;
+
+        Snapshot(Collection<User> users, long syncedAt) {
+            this.users = users.stream().collect(toUnmodifiableMap(PersistentEntity::getIri, u -> u));
+            this.usersById = users.stream().collect(toUnmodifiableMap(User::getId, u -> u));
+            this.syncedAt = syncedAt;
+        }
+    }
 
     public UserService(Config.Auth config, Transactions transactions, UsersResource usersResource) {
+        this(config, transactions, usersResource, DEFAULT_PAGE_SIZE);
+    }
+
+    UserService(Config.Auth config, Transactions transactions, UsersResource usersResource, int pageSize) {
         this.config = config;
         this.transactions = transactions;
         this.usersResource = usersResource;
-        usersCache = CacheBuilder.newBuilder()
-                .refreshAfterWrite(30, TimeUnit.SECONDS)
-                .build(new CacheLoader<>() {
-                    @Override
-                    public Map<Node, User> load(Boolean key) {
-                        return fetchUsers();
-                    }
-                });
+        this.pageSize = pageSize;
     }
 
     public UserService(Config.Auth config, Transactions transactions) {
@@ -73,68 +103,148 @@ public class UserService {
     }
 
     public Map<Node, User> getUsersMap() {
-        try {
-            return usersCache.get(Boolean.FALSE);
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
+        var current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    sync(false);
+                }
+                current = snapshot;
+            }
+        } else if (System.currentTimeMillis() - current.syncedAt > SYNC_INTERVAL_MILLIS
+                && syncScheduled.compareAndSet(false, true)) {
+            threadpool.submit(() -> {
+                try {
+                    sync(true);
+                } catch (Exception e) {
+                    log.error("Error synchronising users with Keycloak", e);
+                } finally {
+                    syncScheduled.set(false);
+                }
+            });
         }
+        return current.users;
     }
 
-    private Map<Node, User> fetchUsers() {
-        var keycloakUsers = usersResource.list();
-        var updated = new HashSet<User>();
-        var users = transactions.calculateRead(model -> {
-            var dao = new DAO(model);
-            return keycloakUsers.stream()
-                    .map(ku -> {
-                        var iri = generateMetadataIri(ku.getId());
-                        var user = dao.read(User.class, iri);
-                        if (user == null) {
-                            user = new User();
-                            user.setIri(iri);
-                            user.setId(ku.getId());
-
-                            if (config.superAdminUser.equalsIgnoreCase(ku.getUsername())) {
-                                user.setSuperadmin(true);
-                                user.setAdmin(true);
-                                user.setCanViewPublicMetadata(true);
-                                user.setCanViewPublicData(true);
-                            }
+    /**
+     * Synchronises the snapshot with Keycloak.
+     *
+     * @param inBackground if false, the caller may be in a transaction, and changed users are written asynchronously
+     */
+    void sync(boolean inBackground) {
+        var start = System.currentTimeMillis();
+        var keycloakUsers = new LinkedHashMap<String, UserRepresentation>();
+        var complete = fetchKeycloakUsers(keycloakUsers);
 
-                            updated.add(user);
-                        }
-
-                        var name = Stream.of(ku.getFirstName(), ku.getLastName())
-                                .filter(StringUtils::isNotEmpty)
-                                .map(String::trim)
-                                .collect(Collectors.joining(" "));
-                        if (name.isEmpty()) {
-                            name = ku.getUsername();
-                        }
+        var updated = new ArrayList<User>();
+        synchronized (this) {
+            var previous = snapshot;
+            var known = previous != null ? previous.usersById : Map.<String, User>of();
+            var users = new ArrayList<User>(keycloakUsers.size());
+            var toRead = new ArrayList<UserRepresentation>();
+            if (!complete) {
+                known.forEach((id, user) -> {
+                    if (!keycloakUsers.containsKey(id)) {
+                        users.add(user);
+                    }
+                });
+            }
+            for (var ku : keycloakUsers.values()) {
+                var user = known.get(ku.getId());
+                if (user == null || isChanged(user, ku)) {
+                    toRead.add(ku);
+                } else {
+                    users.add(user);
+                }
+            }
 
-                        if (!Objects.equals(user.getName(), name)
-                                || !Objects.equals(user.getEmail(), ku.getEmail())
-                                || !Objects.equals(user.getUsername(), ku.getUsername())) {
-                            user.setEmail(ku.getEmail());
-                            user.setName(name);
-                            user.setUsername(ku.getUsername());
+            if (!toRead.isEmpty()) {
+                transactions.executeRead(model -> {
+                    var dao = new DAO(model);
+                    for (var ku : toRead) {
+                        var user = read(dao, ku);
+                        if (user.getIri() == null || isChanged(user, ku)) {
+                            user.setIri(generateMetadataIri(ku.getId()));
+                            update(user, ku);
                             updated.add(user);
                         }
+                        users.add(user);
+                    }
+                });
+            }
 
-                        return user;
-                    }).collect(toMap(PersistentEntity::getIri, u -> u));
-        });
+            snapshot = new Snapshot(users, start);
+        }
+        log.debug("Synchronised {} users with Keycloak in {}ms, {} changed", keycloakUsers.size(), System.currentTimeMillis() - start, updated.size());
 
         if (!updated.isEmpty()) {
-            threadpool.submit(() -> {
-                log.info("Updating users asynchronously");
-                transactions.executeWrite(model -> {
+            Runnable write = () -> {
+                log.info("Updating {} users", updated.size());
+                transactions.executeBulkWrite(model -> {
                     var dao = new DAO(model);
                     updated.forEach(dao::write);
                 });
-            });
+            };
+            if (inBackground) {
+                write.run();
+            } else {
+                threadpool.submit(write);
+            }
+        }
+    }
+
+    /**
+     * Pages through the Keycloak users, ordered by username, with an offset cursor.
+     * If the number of users changes while paging, users might shift between pages and be skipped.
+     *
+     * @return false if the result might be incomplete, so that users missing from it should be kept
+     */
+    private boolean fetchKeycloakUsers(Map<String, UserRepresentation> result) {
+        var countBefore = usersResource.count();
+        for (var first = 0; ; first += pageSize) {
+            var page = usersResource.list(first, pageSize);
+            page.forEach(ku -> result.put(ku.getId(), ku));
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        return Objects.equals(countBefore, usersResource.count());
+    }
+
+    private User read(DAO dao, UserRepresentation ku) {
+        var user = dao.read(User.class, generateMetadataIri(ku.getId()));
+        if (user == null) {
+            user = new User();
+            user.setId(ku.getId());
+
+            if (config.superAdminUser.equalsIgnoreCase(ku.getUsername())) {
+                user.setSuperadmin(true);
+                user.setAdmin(true);
+                user.setCanViewPublicMetadata(true);
+                user.setCanViewPublicData(true);
+            }
         }
-        return users;
+        return user;
+    }
+
+    private static String name(UserRepresentation ku) {
+        var name = Stream.of(ku.getFirstName(), ku.getLastName())
+                .filter(StringUtils::isNotEmpty)
+                .map(String::trim)
+                .collect(Collectors.joining(" "));
+        return name.isEmpty() ? ku.getUsername() : name;
+    }
+
+    private static boolean isChanged(User user, UserRepresentation ku) {
+        return !Objects.equals(user.getName(), name(ku))
+                || !Objects.equals(user.getEmail(), ku.getEmail())
+                || !Objects.equals(user.getUsername(), ku.getUsername());
+    }
+
+    private static void update(User user, UserRepresentation ku) {
+        user.setEmail(ku.getEmail());
+        user.setName(name(ku));
+        user.setUsername(ku.getUsername());
     }
 
     public void logoutCurrent() {
@@ -150,6 +260,7 @@ public class UserService {
             throw new AccessDeniedException();
         }
         final String[] username = new String[1];
+        final User[] updatedUser = new User[1];
         transactions.executeWrite(model -> {
             var dao = new DAO(model);
             var user = dao.read(User.class, generateMetadataIri(roles.getId()));
@@ -195,9 +306,21 @@ public class UserService {
                 throw new IllegalArgumentException("Inconsistent organisation-level roles");
             }
 
-            dao.write(user);
+            updatedUser[0] = dao.write(user);
         });
         audit("USER_UPDATE", "affected_user", username[0]);
-        usersCache.invalidateAll();
+        replaceInSnapshot(updatedUser[0]);
+    }
+
+    /**
+     * Replaces a user in the snapshot, and marks the snapshot for synchronisation with Keycloak on the next lookup.
+     */
+    private synchronized void replaceInSnapshot(User user) {
+        var current = snapshot;
+        if (current != null) {
+            var users = new HashMap<>(current.usersById);
+            users.replace(user.getId(), user);
+            snapshot = new Snapshot(users.values(), 0);
+        }
     }
 }
@@ -0,0 +1,231 @@
+package io.fairspace.saturn.services.views;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.fairspace.saturn.config.*;
+import io.fairspace.saturn.rdf.transactions.*;
+import lombok.extern.log4j.*;
+import org.apache.jena.graph.Node;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+import static io.fairspace.saturn.config.ViewsConfig.View;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Computes row counts of views with a capped budget and caches the exact counts per view and filter set.
+ * <p>
+ * Exact counts are computed by a bounded pool of threads. If an exact count is not available
+ * within {@link Config.Search#countEstimateTimeout}, an estimate is returned instead, if available,
+ * while the exact count is completed in the background, so that it can be used by subsequent requests.
+ * <p>
+ * Cached counts of a view are invalidated when a transaction changes an entity of one of the types of the view
+ * or of the views joined with it, or a term of the type of one of their term columns.
+ * When counts depend on the access rights of the user, they are cached per user,
+ * and changes to users, workspaces and collections invalidate all counts.
+ */
+@Log4j2
+public class CountCache implements CommitListener {
+    private static final int MAX_CACHED_COUNTS = 10_000;
+
+    private final Config.Search searchConfig;
+    private final ViewsConfig viewsConfig;
+    private final ViewIndexer viewIndexer;
+    private final boolean accessDependent;
+    private final boolean cacheEnabled;
+    // Incremented on every invalidation of the counts of a view
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Cache<List<Object>, CachedCount> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_COUNTS)
+            .build();
+    private final Map<List<Object>, Future<CountDTO>> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    /**
+     * @param viewIndexer     if set, counts are not cached while the view database is behind.
+     * @param txnListeners    if set, counts are cached and invalidated after commits.
+     * @param accessDependent whether counts depend on the access rights of the current user.
+     */
+    public CountCache(Config.Search searchConfig, ViewsConfig viewsConfig, ViewIndexer viewIndexer,
+                      TxnListenerDatasetGraph txnListeners, boolean accessDependent) {
+        this(searchConfig, viewsConfig, viewIndexer, txnListeners, accessDependent,
+                Executors.newFixedThreadPool(searchConfig.countParallelism, runnable -> {
+                    var thread = new Thread(runnable, "Counts");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    /**
+     * @param executor computes the exact counts.
+     */
+    CountCache(Config.Search searchConfig, ViewsConfig viewsConfig, ViewIndexer viewIndexer,
+               TxnListenerDatasetGraph txnListeners, boolean accessDependent, ExecutorService executor) {
+        this.searchConfig = searchConfig;
+        this.viewsConfig = viewsConfig;
+        this.viewIndexer = viewIndexer;
+        this.accessDependent = accessDependent;
+        this.cacheEnabled = txnListeners != null;
+        viewsConfig.views.forEach(view -> versions.put(view.name, new AtomicLong()));
+        this.executor = executor;
+        if (txnListeners != null) {
+            txnListeners.addListener(this);
+        }
+    }
+
+    /**
+     * Counts rows in a background thread, waiting for the exact count at most
+     * {@link Config.Search#countEstimateTimeout} milliseconds if an estimate is available.
+     * The functions are called with a copy of the filters, as filters are modified when preparing a query.
+     *
+     * @param exact    computes the exact count.
+     * @param estimate estimates the count, or returns null if no estimate is available.
+     */
+    public CountDTO count(String view, List<ViewFilter> filters,
+                          Function<List<ViewFilter>, CountDTO> exact,
+                          Function<List<ViewFilter>, Long> estimate) throws InterruptedException {
+        var key = key(view, filters);
+        var version = versions.get(view).get();
+        var cached = cached(key, version);
+        if (cached != null) {
+            return cached;
+        }
+        var pendingKey = List.<Object>of(key, version);
+        var future = pending.get(pendingKey);
+        if (future == null) {
+            var task = new FutureTask<>(() -> {
+                try {
+                    var result = exact.apply(copy(filters));
+                    store(key, view, version, result);
+                    return result;
+                } finally {
+                    // Removed before the task completes, so that a completed task is never joined
+                    pending.remove(pendingKey);
+                }
+            });
+            future = pending.putIfAbsent(pendingKey, task);
+            if (future == null) {
+                future = task;
+                executor.execute(task);
+            }
+        }
+        try {
+            try {
+                return future.get(searchConfig.countEstimateTimeout, MILLISECONDS);
+            } catch (TimeoutException e) {
+                var estimated = estimate.apply(copy(filters));
+                if (estimated != null) {
+                    log.debug("Returning an estimate of {} rows for view {}", estimated, view);
+                    return new CountDTO(estimated, false, true);
+                }
+            }
+            return future.get(Math.max(0, searchConfig.countRequestTimeout - searchConfig.countEstimateTimeout), MILLISECONDS);
+        } catch (TimeoutException e) {
+            return new CountDTO(0, true);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Counts rows in the current thread, for counts that depend on the state of the current request.
+     */
+    public CountDTO countInCurrentThread(String view, List<ViewFilter> filters, Supplier<CountDTO> exact) {
+        var key = key(view, filters);
+        var version = versions.get(view).get();
+        var cached = cached(key, version);
+        if (cached != null) {
+            return cached;
+        }
+        var result = exact.get();
+        store(key, view, version, result);
+        return result;
+    }
+
+    private CountDTO cached(List<Object> key, long version) {
+        var cached = cache.getIfPresent(key);
+        return cached != null && cached.version == version ? cached.count : null;
+    }
+
+    private void store(List<Object> key, String view, long version, CountDTO count) {
+        // Counts from a view database that is behind would be stale
+        if (!cacheEnabled || count.isTimeout() || (viewIndexer != null && viewIndexer.getLag() > 0)) {
+            return;
+        }
+        // Discard counts computed concurrently with an invalidation
+        if (versions.get(view).get() == version) {
+            cache.put(key, new CachedCount(version, count));
+        }
+    }
+
+    private List<Object> key(String view, List<ViewFilter> filters) {
+        var user = accessDependent ? Objects.toString(getUserURI(), "") : "";
+        var normalisedFilters = filters == null ? List.of() : filters.stream()
+                .map(CountCache::normalise)
+                .sorted()
+                .collect(toList());
+        return List.of(view, user, normalisedFilters);
+    }
+
+    /**
+     * Represents a filter as a string that does not depend on the order of its values.
+     */
+    private static String normalise(ViewFilter filter) {
+        return String.join("|",
+                filter.getField(),
+                filter.getValues() == null ? "" : filter.getValues().stream().map(Object::toString).sorted().collect(toList()).toString(),
+                Objects.toString(filter.getMin(), ""),
+                Objects.toString(filter.getMax(), ""),
+                Objects.toString(filter.getPrefix(), ""),
+                filter.getPrefixes() == null ? "" : filter.getPrefixes().stream().sorted().collect(toList()).toString());
+    }
+
+    private static List<ViewFilter> copy(List<ViewFilter> filters) {
+        return filters == null ? new ArrayList<>() : filters.stream()
+                .map(filter -> filter.toBuilder().build())
+                .collect(toList());
+    }
+
+    /**
+     * Invalidates the counts of the views affected by a committed transaction.
+     */
+    @Override
+    public void onCommit(Map<Node, Set<Node>> subjectTypes) {
+        var types = subjectTypes.values().stream()
+                .flatMap(Set::stream)
+                .collect(toSet());
+        var invalidateAll = accessDependent && types.stream().anyMatch(ViewService.ACCESS_TYPES::contains);
+        for (var view : viewsConfig.views) {
+            if (invalidateAll || isAffected(view, types)) {
+                log.debug("Invalidating counts of view {}", view.name);
+                versions.get(view.name).incrementAndGet();
+                cache.asMap().keySet().removeIf(key -> key.get(0).equals(view.name));
+            }
+        }
+    }
+
+    private boolean isAffected(View view, Set<Node> types) {
+        return ViewService.isAffected(view, types) || view.join != null && view.join.stream()
+                .map(join -> viewsConfig.views.stream().filter(v -> v.name.equalsIgnoreCase(join.view)).findFirst().orElse(null))
+                .anyMatch(joinView -> joinView != null && ViewService.isAffected(joinView, types));
+    }
+
+    private static class CachedCount {
+        final long version;
+        final CountDTO count;
+
+        CachedCount(long version, CountDTO count) {
+            this.version = version;
+            this.count = count;
+        }
+    }
+}
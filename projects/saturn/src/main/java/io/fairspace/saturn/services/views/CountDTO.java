@@ -1,9 +1,18 @@
 package io.fairspace.saturn.services.views;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 
-@Data
+@Data @AllArgsConstructor
 public class CountDTO {
     private final long count;
     private final boolean timeout;
+    /**
+     * True if the count is an estimate, returned while the exact count is being computed.
+     */
+    private final boolean approximate;
+
+    public CountDTO(long count, boolean timeout) {
+        this(count, timeout, false);
+    }
 }
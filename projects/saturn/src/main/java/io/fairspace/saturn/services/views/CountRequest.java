@@ -12,4 +12,11 @@ public class CountRequest {
     @NotBlank
     private String view;
     private List<ViewFilter> filters;
+    /**
+     * If true, wait until all changes committed before the request are visible in the results.
+     */
+    private Boolean readYourWrites;
+    public boolean readYourWrites() {
+        return readYourWrites != null && readYourWrites;
+    }
 }
@@ -29,15 +29,50 @@ public class JdbcQueryService implements QueryService {
     private final CollectionResource rootSubject;
     private final Config.Search searchConfig;
     private final ViewStoreClientFactory viewStoreClientFactory;
+    private final ViewIndexer viewIndexer;
+    private final long readYourWritesTimeout;
+    private final CountCache countCache;
 
     public JdbcQueryService(Config.Search searchConfig, ViewStoreClientFactory viewStoreClientFactory, Transactions transactions, CollectionResource rootSubject) {
+        this(searchConfig, viewStoreClientFactory, transactions, rootSubject, null, 0);
+    }
+
+    /**
+     * @param viewIndexer           the indexer applying changes to the view database asynchronously, if any.
+     * @param readYourWritesTimeout the maximum time (in milliseconds) to wait for pending changes
+     *                              to be indexed, if requested.
+     */
+    public JdbcQueryService(Config.Search searchConfig, ViewStoreClientFactory viewStoreClientFactory, Transactions transactions, CollectionResource rootSubject,
+                            ViewIndexer viewIndexer, long readYourWritesTimeout) {
+        this(searchConfig, viewStoreClientFactory, transactions, rootSubject, viewIndexer, readYourWritesTimeout, null);
+    }
+
+    /**
+     * @param countCache if set, counts are cached and estimated while the exact count takes long.
+     */
+    public JdbcQueryService(Config.Search searchConfig, ViewStoreClientFactory viewStoreClientFactory, Transactions transactions, CollectionResource rootSubject,
+                            ViewIndexer viewIndexer, long readYourWritesTimeout, CountCache countCache) {
         this.searchConfig = searchConfig;
         this.viewStoreClientFactory = viewStoreClientFactory;
         this.transactions = transactions;
         this.rootSubject = rootSubject;
+        this.viewIndexer = viewIndexer;
+        this.readYourWritesTimeout = readYourWritesTimeout;
+        this.countCache = countCache;
+    }
+
+    void awaitIndexingIfRequired(CountRequest request) {
+        if (viewIndexer != null && request.readYourWrites()
+                && !viewIndexer.awaitIndexed(readYourWritesTimeout)) {
+            log.warn("Pending changes have not been indexed within {}ms", readYourWritesTimeout);
+        }
     }
 
     public String getCollectionName(String uri) {
+        return getCollectionName(rootSubject, uri);
+    }
+
+    static String getCollectionName(CollectionResource rootSubject, String uri) {
         var rootLocation = rootSubject.getUniqueId() + "/";
         var location = uri.substring(rootLocation.length());
         return URLDecoder.decode(location.split("/")[0], StandardCharsets.UTF_8);
@@ -87,21 +122,37 @@ public class JdbcQueryService implements QueryService {
             filters.addAll(request.getFilters());
         }
         applyCollectionsFilterIfRequired(request.getView(), filters);
+        awaitIndexingIfRequired(request);
         try (var viewStoreReader = getViewStoreReader()){
-            List<Map<String, Set<ValueDTO>>> rows = viewStoreReader.retrieveRows(
-                    request.getView(), filters,
-                    (page - 1) * size,
-                    size + 1,
-                    request.includeJoinedViews()
-            );
+            List<Map<String, Set<ValueDTO>>> rows = request.getCursor() != null
+                    ? viewStoreReader.retrieveRowsAfter(
+                            request.getView(), filters,
+                            PageCursor.decode(request.getCursor()),
+                            size + 1,
+                            request.includeJoinedViews())
+                    : viewStoreReader.retrieveRows(
+                            request.getView(), filters,
+                            (page - 1) * size,
+                            size + 1,
+                            request.includeJoinedViews());
+            var pageRows = rows.subList(0, min(size, rows.size()));
+            var hasNext = rows.size() > size;
             var pageBuilder = ViewPageDTO.builder()
-                    .rows(rows.subList(0, min(size, rows.size())))
-                    .hasNext(rows.size() > size);
+                    .rows(pageRows)
+                    .hasNext(hasNext);
+            if (hasNext) {
+                var lastId = pageRows.get(pageRows.size() - 1).get(request.getView()).iterator().next().getValue();
+                pageBuilder = pageBuilder.nextCursor(PageCursor.encode(lastId.toString()));
+            }
             if (request.includeCounts()) {
-                long count = viewStoreReader.countRows(request.getView(), filters);
+                var count = countRows(request.getView(), filters);
+                if (count.isTimeout()) {
+                    throw new SQLTimeoutException();
+                }
                 pageBuilder = pageBuilder
-                        .totalCount(count)
-                        .totalPages(count / size + ((count % size > 0) ? 1 : 0));
+                        .totalCount(count.getCount())
+                        .totalPages(count.getCount() / size + ((count.getCount() % size > 0) ? 1 : 0))
+                        .approximateCount(count.isApproximate());
             }
             return pageBuilder.build();
         } catch (SQLTimeoutException e) {
@@ -119,13 +170,36 @@ public class JdbcQueryService implements QueryService {
             filters = new ArrayList<>();
         }
         applyCollectionsFilterIfRequired(request.getView(), filters);
-        try (var viewStoreReader = getViewStoreReader()){
-            return new CountDTO(viewStoreReader.countRows(request.getView(), filters), false);
+        awaitIndexingIfRequired(request);
+        return countRows(request.getView(), filters);
+    }
+
+    @SneakyThrows
+    private CountDTO countRows(String view, List<ViewFilter> filters) {
+        if (countCache == null) {
+            return countExactly(view, filters);
+        }
+        return countCache.count(view, filters,
+                copy -> countExactly(view, copy),
+                copy -> estimateRows(view, copy));
+    }
+
+    @SneakyThrows
+    private CountDTO countExactly(String view, List<ViewFilter> filters) {
+        try (var viewStoreReader = getViewStoreReader()) {
+            return new CountDTO(viewStoreReader.countRows(view, filters), false);
         } catch (SQLTimeoutException e) {
             return new CountDTO(0, true);
         }
     }
 
+    @SneakyThrows
+    private Long estimateRows(String view, List<ViewFilter> filters) {
+        try (var viewStoreReader = getViewStoreReader()) {
+            return viewStoreReader.estimateRows(view, filters);
+        }
+    }
+
     @SneakyThrows
     public List<SearchResultDTO> searchFiles(FileSearchRequest request) {
         var collectionsForUser = transactions.calculateRead(m ->
@@ -0,0 +1,29 @@
+package io.fairspace.saturn.services.views;
+
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes the position of the next page of a view as an opaque cursor,
+ * so that clients cannot depend on how the position is represented by the query service.
+ */
+class PageCursor {
+    private PageCursor() {
+    }
+
+    static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is not valid.
+     */
+    static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
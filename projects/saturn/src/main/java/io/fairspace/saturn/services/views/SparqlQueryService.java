@@ -11,6 +11,7 @@ import io.fairspace.saturn.vocabulary.FS;
 import lombok.extern.log4j.*;
 import org.apache.jena.datatypes.xsd.XSDDateTime;
 import org.apache.jena.query.*;
+import org.apache.jena.query.text.TextQuery;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
@@ -22,6 +23,10 @@ import java.time.*;
 import java.util.*;
 
 import static io.fairspace.saturn.rdf.ModelUtils.getResourceProperties;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.INITIAL_HITS;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.isEnabled;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.queryWithGrowingHits;
+import static io.fairspace.saturn.rdf.search.LuceneTextIndex.toLuceneQuery;
 import static io.fairspace.saturn.util.ValidationUtils.validateIRI;
 import static java.time.Instant.ofEpochMilli;
 import static java.util.Comparator.comparing;
@@ -38,12 +43,23 @@ public class SparqlQueryService implements QueryService {
     private static final String RESOURCES_VIEW = "Resource";
     private final Config.Search config;
     private final ViewsConfig searchConfig;
+    private static final int MAX_SEARCH_RESULTS = 10_000;
+
     private final Dataset ds;
+    private final CountCache countCache;
 
     public SparqlQueryService(Config.Search config, ViewsConfig viewsConfig, Dataset ds) {
+        this(config, viewsConfig, ds, null);
+    }
+
+    /**
+     * @param countCache if set, exact counts are cached.
+     */
+    public SparqlQueryService(Config.Search config, ViewsConfig viewsConfig, Dataset ds, CountCache countCache) {
         this.config = config;
         this.searchConfig = viewsConfig;
         this.ds = ds;
+        this.countCache = countCache;
     }
 
     public ViewPageDTO retrieveViewPage(ViewRequest request) {
@@ -53,8 +69,9 @@ public class SparqlQueryService implements QueryService {
 
         var page = (request.getPage() != null && request.getPage() >= 1) ? request.getPage() : 1;
         var size = (request.getSize() != null && request.getSize() >= 1) ? request.getSize() : 20;
+        var offset = request.getCursor() != null ? parseOffset(request.getCursor()) : (page - 1) * size;
         query.setLimit(size + 1);
-        query.setOffset((page - 1) * size);
+        query.setOffset(offset);
 
         log.debug("Query with filters and pagination applied: \n{}", query);
 
@@ -83,11 +100,28 @@ public class SparqlQueryService implements QueryService {
             return ViewPageDTO.builder()
                     .rows(rows)
                     .hasNext(hasNext)
+                    .nextCursor(hasNext ? PageCursor.encode(Long.toString(offset + size)) : null)
                     .timeout(timeout)
                     .build();
         });
     }
 
+    /**
+     * Cursors of SPARQL query results contain the offset of the next page.
+     */
+    private static long parseOffset(String cursor) {
+        long offset;
+        try {
+            offset = Long.parseLong(PageCursor.decode(cursor));
+        } catch (NumberFormatException e) {
+            offset = -1;
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return offset;
+    }
+
     private Map<String, Set<ValueDTO>> fetch(Resource resource, String viewName) {
         var view = getView(viewName);
 
@@ -128,10 +162,18 @@ public class SparqlQueryService implements QueryService {
     }
 
     public List<SearchResultDTO> searchFiles(FileSearchRequest request) {
-        var query = getSearchForFilesQuery(request.getParentIRI());
         var binding = new QuerySolutionMap();
-        binding.add("regexQuery", createStringLiteral(SparqlUtils.getQueryRegex(request.getQuery())));
-        return SparqlUtils.getByQuery(query, binding, ds);
+        var textQuery = isEnabled(ds.asDatasetGraph()) ? toLuceneQuery(request.getQuery()) : "";
+        if (!textQuery.isEmpty()) {
+            binding.add("textQuery", createStringLiteral(textQuery));
+        } else {
+            binding.add("regexQuery", createStringLiteral(SparqlUtils.getQueryRegex(request.getQuery())));
+        }
+        if (!textQuery.isEmpty()) {
+            return queryWithGrowingHits(ds.asDatasetGraph(), textQuery, MAX_SEARCH_RESULTS, INITIAL_HITS, hits ->
+                    SparqlUtils.getByQuery(getSearchForFilesQuery(request.getParentIRI(), hits), binding, ds));
+        }
+        return SparqlUtils.getByQuery(getSearchForFilesQuery(request.getParentIRI(), null), binding, ds);
     }
 
     private Set<ValueDTO> getValues(Resource resource, View.Column column) {
@@ -316,13 +358,22 @@ public class SparqlQueryService implements QueryService {
                 });
     }
 
-    private Query getSearchForFilesQuery(String parentIRI) {
+    /**
+     * @param textHits the number of hits to look up in the text index, or null to filter all resources instead
+     */
+    private Query getSearchForFilesQuery(String parentIRI, Integer textHits) {
+        var textSearch = textHits != null;
         var builder = new StringBuilder("PREFIX fs: <")
                 .append(FS.NS)
-                .append(">\nPREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n\n")
-                .append("SELECT ?id ?label ?comment ?type\n")
+                .append(">\nPREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n")
+                .append("PREFIX text: <").append(TextQuery.NS).append(">\n\n")
+                .append("SELECT DISTINCT ?id ?label ?comment ?type\n")
                 .append("WHERE {\n");
 
+        if (textSearch) {
+            builder.append("?id text:query (?textQuery ").append(textHits).append(") .\n");
+        }
+
         if (parentIRI != null && !parentIRI.trim().isEmpty()) {
             validateIRI(parentIRI);
             builder.append("?id fs:belongsTo* <").append(parentIRI).append("> .\n");
@@ -331,9 +382,11 @@ public class SparqlQueryService implements QueryService {
         builder.append("?id rdfs:label ?label ; a ?type .\n")
                 .append("FILTER (?type in (fs:File, fs:Directory, fs:Collection))\n")
                 .append("OPTIONAL { ?id rdfs:comment ?comment }\n")
-                .append("FILTER NOT EXISTS { ?id fs:dateDeleted ?anydate }\n")
-                .append("FILTER (regex(?label, ?regexQuery, \"i\") || regex(?comment, ?regexQuery, \"i\"))\n")
-                .append("}\nLIMIT 10000");
+                .append("FILTER NOT EXISTS { ?id fs:dateDeleted ?anydate }\n");
+        if (!textSearch) {
+            builder.append("FILTER (regex(?label, ?regexQuery, \"i\") || regex(?comment, ?regexQuery, \"i\"))\n");
+        }
+        builder.append("}\nLIMIT ").append(MAX_SEARCH_RESULTS);
 
         return QueryFactory.create(builder.toString());
     }
@@ -354,6 +407,14 @@ public class SparqlQueryService implements QueryService {
     }
 
     public CountDTO count(CountRequest request) {
+        if (countCache != null) {
+            // Results depend on the access rights of the current user, so the count is computed in this thread
+            return countCache.countInCurrentThread(request.getView(), request.getFilters(), () -> countExactly(request));
+        }
+        return countExactly(request);
+    }
+
+    private CountDTO countExactly(CountRequest request) {
         var query = getQuery(request);
 
         log.debug("Querying the total number of matches: \n{}", query);
@@ -7,7 +7,7 @@ import javax.validation.constraints.*;
 import java.util.*;
 
 @Data
-@Builder @NoArgsConstructor @AllArgsConstructor
+@Builder(toBuilder = true) @NoArgsConstructor @AllArgsConstructor
 public class ViewFilter {
     /**
      * Field name of the shape `${view}_${column}`.
@@ -0,0 +1,240 @@
+package io.fairspace.saturn.services.views;
+
+import io.fairspace.saturn.rdf.transactions.*;
+import lombok.extern.slf4j.*;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.Date;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Applies changes to the view database in the background, decoupled from the commit
+ * of the RDF transaction.
+ * The subjects updated by a transaction are submitted after the transaction has been
+ * committed, together with the index of the transaction in the transaction log,
+ * which is taken before the commit, while the write lock is still held.
+ * A single worker thread applies the submitted changes in commit order, merging
+ * the pending submissions into one batch.
+ * The index of the last applied transaction is stored in the view database in the
+ * same database transaction as the view updates, so that indexing can resume from
+ * the transaction log after a restart.
+ */
+@Slf4j
+public class ViewIndexer implements AutoCloseable {
+    private static final long MIN_RETRY_DELAY = 1_000;
+    private static final long MAX_RETRY_DELAY = 60_000;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final ViewStoreClientFactory viewStoreClientFactory;
+    private final DatasetGraph dsg;
+    private final TransactionLog transactionLog;
+    private final LinkedBlockingQueue<IndexTask> queue = new LinkedBlockingQueue<>();
+    private final Thread worker = new Thread(this::run, "View indexer " + threadCounter.incrementAndGet());
+    private final Object monitor = new Object();
+    private volatile long submitted = -1;
+    private volatile long indexed = -1;
+
+    /**
+     * @param viewStoreClientFactory the factory for view database connections.
+     * @param dsg                    the dataset graph to read the indexed subjects from.
+     *                               Should not be wrapped by a {@link TxnIndexDatasetGraph}.
+     * @param transactionLog         the transaction log, used to resume indexing after a restart.
+     */
+    public ViewIndexer(ViewStoreClientFactory viewStoreClientFactory, DatasetGraph dsg, TransactionLog transactionLog) {
+        this.viewStoreClientFactory = viewStoreClientFactory;
+        this.dsg = dsg;
+        this.transactionLog = transactionLog;
+        worker.setDaemon(true);
+    }
+
+    /**
+     * Reads the index of the last indexed transaction from the view database,
+     * schedules the transactions that have not been indexed yet and starts the worker thread.
+     */
+    public void start() throws SQLException, IOException {
+        var logSize = transactionLog.size();
+        Long lastIndexed;
+        try (var viewStoreClient = viewStoreClientFactory.build()) {
+            lastIndexed = viewStoreClient.retrieveLogIndex();
+            if (lastIndexed == null) {
+                // The view database has been maintained synchronously until now
+                lastIndexed = logSize - 1;
+                viewStoreClient.updateLogIndex(lastIndexed);
+                viewStoreClient.commit();
+            }
+        }
+        synchronized (monitor) {
+            indexed = lastIndexed;
+            // Transactions may have been submitted already, while restoring the dataset
+            submitted = Math.max(submitted, lastIndexed);
+        }
+        if (lastIndexed < logSize - 1) {
+            log.info("Resuming view indexing from transaction {} of {}", lastIndexed + 1, logSize);
+        }
+        for (var i = lastIndexed + 1; i < logSize; i++) {
+            var subjects = new HashSet<Node>();
+            transactionLog.read(i, new TransactionListener() {
+                @Override
+                public void onAdd(Node graph, Node subject, Node predicate, Node object) {
+                    subjects.add(subject);
+                }
+
+                @Override
+                public void onDelete(Node graph, Node subject, Node predicate, Node object) {
+                    subjects.add(subject);
+                }
+            });
+            submit(i, subjects);
+        }
+        worker.start();
+    }
+
+    /**
+     * @return the index of the last transaction in the transaction log.
+     * To get the index of the current write transaction, call it after the transaction has been logged,
+     * but before it has been committed, while the write lock is still held.
+     */
+    public long lastLogIndex() {
+        return transactionLog.size() - 1;
+    }
+
+    /**
+     * Schedules the subjects updated by a committed transaction for indexing.
+     *
+     * @param index    the index of the transaction in the transaction log, see {@link #lastLogIndex()}.
+     * @param subjects the subjects updated by the transaction.
+     */
+    public void submit(long index, Set<Node> subjects) {
+        synchronized (monitor) {
+            submitted = Math.max(submitted, index);
+        }
+        queue.offer(new IndexTask(index, subjects));
+    }
+
+    /**
+     * @return the index of the last transaction that has been applied to the view database.
+     */
+    public long getLastIndexed() {
+        return indexed;
+    }
+
+    /**
+     * @return the number of transactions that have been committed, but not yet indexed.
+     */
+    public long getLag() {
+        return submitted - indexed;
+    }
+
+    /**
+     * Waits until all transactions committed before the call have been applied to the view database.
+     * Enables read-your-writes consistency for readers of the view database.
+     *
+     * @param timeout the maximum time to wait in milliseconds.
+     * @return true if all changes have been indexed, false if the timeout has elapsed.
+     */
+    public boolean awaitIndexed(long timeout) {
+        return awaitIndexed(submitted, timeout);
+    }
+
+    /**
+     * Waits until the transaction with the specified index has been applied to the view database.
+     *
+     * @param index   the index of the transaction in the transaction log.
+     * @param timeout the maximum time to wait in milliseconds.
+     * @return true if the transaction has been indexed, false if the timeout has elapsed.
+     */
+    public boolean awaitIndexed(long index, long timeout) {
+        var deadline = System.currentTimeMillis() + timeout;
+        synchronized (monitor) {
+            while (indexed < index) {
+                var remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    monitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private void run() {
+        var retryDelay = MIN_RETRY_DELAY;
+        var tasks = new ArrayList<IndexTask>();
+        while (true) {
+            try {
+                if (tasks.isEmpty()) {
+                    tasks.add(queue.take());
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(tasks);
+
+            var subjects = new HashSet<Node>();
+            var index = -1L;
+            for (var task : tasks) {
+                subjects.addAll(task.subjects);
+                index = Math.max(index, task.index);
+            }
+
+            try {
+                apply(subjects, index);
+                tasks.clear();
+                retryDelay = MIN_RETRY_DELAY;
+                synchronized (monitor) {
+                    indexed = Math.max(indexed, index);
+                    monitor.notifyAll();
+                }
+            } catch (Exception e) {
+                log.error("Indexing {} subjects up to transaction {} failed. Retrying in {}ms", subjects.size(), index, retryDelay, e);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                retryDelay = Math.min(2 * retryDelay, MAX_RETRY_DELAY);
+            }
+        }
+    }
+
+    private void apply(Set<Node> subjects, long index) throws SQLException {
+        var start = new Date().getTime();
+        try (var viewStoreClient = viewStoreClientFactory.build();
+             var viewUpdater = new ViewUpdater(viewStoreClient, dsg)) {
+            Txn.executeRead(dsg, () -> subjects.forEach(viewUpdater::updateSubject));
+            viewStoreClient.updateLogIndex(index);
+            viewUpdater.commit();
+        }
+        log.debug("Indexing {} subjects up to transaction {} took {}ms", subjects.size(), index, new Date().getTime() - start);
+    }
+
+    @Override
+    public void close() {
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    private static class IndexTask {
+        final long index;
+        final Set<Node> subjects;
+
+        IndexTask(long index, Set<Node> subjects) {
+            this.index = index;
+            this.subjects = subjects;
+        }
+    }
+}
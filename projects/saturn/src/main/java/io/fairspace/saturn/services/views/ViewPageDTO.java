@@ -14,7 +14,15 @@ public class ViewPageDTO {
     @NonNull
     List<Map<String, Set<ValueDTO>>> rows;
     boolean hasNext;
+    /**
+     * Cursor for the next page, if any.
+     */
+    String nextCursor;
     boolean timeout;
     Long totalCount;
     Long totalPages;
+    /**
+     * True if the total count is an estimate.
+     */
+    boolean approximateCount;
 }
@@ -11,6 +11,11 @@ public class ViewRequest extends CountRequest {
     private Integer page;
     @Min(1)
     private Integer size;
+    /**
+     * The cursor of the page to retrieve, as returned in {@link ViewPageDTO#getNextCursor()} of the previous page.
+     * Takes precedence over {@link #page}.
+     */
+    private String cursor;
     private Boolean includeCounts;
     public boolean includeCounts() {
         return includeCounts != null && includeCounts;
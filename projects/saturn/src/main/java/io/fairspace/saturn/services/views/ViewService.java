@@ -1,25 +1,45 @@
 package io.fairspace.saturn.services.views;
 
 import io.fairspace.saturn.config.*;
+import io.fairspace.saturn.rdf.transactions.*;
 import io.fairspace.saturn.vocabulary.FS;
+import io.milton.resource.CollectionResource;
 import lombok.*;
 import lombok.extern.log4j.*;
 import org.apache.jena.datatypes.xsd.*;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Literal;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
+import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+import static io.fairspace.saturn.config.Services.FS_ROOT;
 import static io.fairspace.saturn.config.ViewsConfig.ColumnType;
 import static io.fairspace.saturn.config.ViewsConfig.View;
 import static java.time.Instant.ofEpochMilli;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 import static org.apache.jena.system.Txn.calculateRead;
 
+/**
+ * Provides the view configuration and the facets of the views.
+ * <p>
+ * If caching is enabled, the facets of a view are cached until a transaction changes an entity of one of the types
+ * of the view, or a term of the type of one of its term columns.
+ * When facets are computed from the metadata, they depend on the access rights of the user, and are cached per user.
+ * Changes to users, workspaces and collections, which determine access to metadata, invalidate all facets in that case.
+ * When the view database is enabled, facets are computed from the view database and shared by all users,
+ * except for the facets of the Resource view, which only reflect the collections readable by the user,
+ * and are cached per set of readable collections.
+ */
 @Log4j2
-public class ViewService {
+public class ViewService implements CommitListener {
     private static final Query VALUES_QUERY = QueryFactory.create(String.format("""
             PREFIX fs: <%s>
             PREFIX rdfs:  <http://www.w3.org/2000/01/rdf-schema#>
@@ -58,16 +78,42 @@ public class ViewService {
             """, FS.NS));
 
 
+    // Changes to entities of these types affect the access rights of users
+    static final Set<Node> ACCESS_TYPES = Set.of(FS.User.asNode(), FS.Workspace.asNode(), FS.Collection.asNode());
+    // Cache key used for facets that do not depend on the user
+    private static final Node SHARED = NodeFactory.createURI(FS.NS + "SharedFacets");
+
     private final Config.Search searchConfig;
     private final ViewsConfig viewsConfig;
     private final Dataset ds;
     private final ViewStoreClientFactory viewStoreClientFactory;
+    private final ViewIndexer viewIndexer;
+    private final boolean cacheEnabled;
+    // Incremented on every invalidation of the facets of a view
+    private final Map<String, AtomicLong> facetVersions = new ConcurrentHashMap<>();
+    // Facets of a view by user, set of readable collections or SHARED
+    private final Map<String, Map<Object, CachedFacets>> facetCache = new ConcurrentHashMap<>();
 
     public ViewService(Config.Search searchConfig, ViewsConfig viewsConfig, Dataset ds, ViewStoreClientFactory viewStoreClientFactory) {
+        this(searchConfig, viewsConfig, ds, viewStoreClientFactory, null, null);
+    }
+
+    /**
+     * @param viewIndexer  if set, facets are not cached while the view database is behind.
+     * @param txnListeners if set, facets are cached and invalidated after commits.
+     */
+    public ViewService(Config.Search searchConfig, ViewsConfig viewsConfig, Dataset ds, ViewStoreClientFactory viewStoreClientFactory,
+                       ViewIndexer viewIndexer, TxnListenerDatasetGraph txnListeners) {
         this.searchConfig = searchConfig;
         this.viewsConfig = viewsConfig;
         this.ds = ds;
         this.viewStoreClientFactory = viewStoreClientFactory;
+        this.viewIndexer = viewIndexer;
+        this.cacheEnabled = txnListeners != null;
+        viewsConfig.views.forEach(view -> facetVersions.put(view.name, new AtomicLong()));
+        if (txnListeners != null) {
+            txnListeners.addListener(this);
+        }
     }
 
     private Object convertLiteralValue(Object value) {
@@ -77,43 +123,80 @@ public class ViewService {
         return value;
     }
 
+    /**
+     * @param collections if not null, only resources in these collections are taken into account.
+     */
     @SneakyThrows
-    Range getColumnRange(View view, View.Column column) {
+    Range getColumnRange(View view, View.Column column, List<String> collections) {
         if (!EnumSet.of(ColumnType.Date, ColumnType.Number).contains(column.type)) {
             return null;
         }
         try (var reader = new ViewStoreReader(searchConfig, viewStoreClientFactory)) {
-            return reader.aggregate(view.name, column.name);
+            return reader.aggregate(view.name, column.name, collections);
+        }
+    }
+
+    /**
+     * @param collections if not null, only resources in these collections are taken into account.
+     */
+    @SneakyThrows
+    List<ValueDTO> getTermValues(View view, View.Column column, List<String> collections) {
+        try (var reader = new ViewStoreReader(searchConfig, viewStoreClientFactory)) {
+            return reader.termValues(view.name, column.name, collections);
         }
     }
 
-    private FacetDTO getFacetInfo(View view, View.Column column) {
+    private static boolean isResourceView(View view) {
+        return view.name.equalsIgnoreCase("Resource");
+    }
+
+    /**
+     * @return the names of the collections readable by the current user, in alphabetical order.
+     */
+    @SneakyThrows
+    private List<String> getReadableCollections() {
+        var rootSubject = (CollectionResource) ds.getContext().get(FS_ROOT);
+        return rootSubject.getChildren().stream()
+                .map(collection -> JdbcQueryService.getCollectionName(rootSubject, collection.getUniqueId()))
+                .sorted()
+                .collect(toList());
+    }
+
+    private static boolean isResourceTypeColumn(View view, View.Column column) {
+        return view.name.equalsIgnoreCase("Resource") && column.name.equalsIgnoreCase("type");
+    }
+
+    private FacetDTO getFacetInfo(View view, View.Column column, List<String> collections) {
         List<ValueDTO> values = null;
         Object min = null;
         Object max = null;
 
         switch (column.type) {
             case Term, TermSet -> {
-                var query = (view.name.equalsIgnoreCase("Resource") && column.name.equalsIgnoreCase("type"))
-                        ? RESOURCE_TYPE_VALUES_QUERY
-                        : VALUES_QUERY;
-                var binding = new QuerySolutionMap();
-                binding.add("type", createResource(column.rdfType));
-                binding.add("predicate", createResource(column.source));
-
-                values = new ArrayList<>();
-                try (var execution = QueryExecutionFactory.create(query, ds, binding)) {
-                    //noinspection NullableProblems
-                    for (var row : (Iterable<QuerySolution>) execution::execSelect) {
-                        var resource = row.getResource("value");
-                        var label = row.getLiteral("label").getString();
-                        values.add(new ValueDTO(label, resource.getURI()));
+                if (viewStoreClientFactory != null && !isResourceTypeColumn(view, column)) {
+                    values = getTermValues(view, column, collections);
+                } else {
+                    var query = isResourceTypeColumn(view, column)
+                            ? RESOURCE_TYPE_VALUES_QUERY
+                            : VALUES_QUERY;
+                    var binding = new QuerySolutionMap();
+                    binding.add("type", createResource(column.rdfType));
+                    binding.add("predicate", createResource(column.source));
+
+                    values = new ArrayList<>();
+                    try (var execution = QueryExecutionFactory.create(query, ds, binding)) {
+                        //noinspection NullableProblems
+                        for (var row : (Iterable<QuerySolution>) execution::execSelect) {
+                            var resource = row.getResource("value");
+                            var label = row.getLiteral("label").getString();
+                            values.add(new ValueDTO(label, resource.getURI()));
+                        }
                     }
                 }
             }
             case Number, Date -> {
                 if (viewStoreClientFactory != null) {
-                    var range = getColumnRange(view, column);
+                    var range = getColumnRange(view, column, collections);
                     if (range != null) {
                         min = range.getStart();
                         max = range.getEnd();
@@ -137,14 +220,65 @@ public class ViewService {
     public List<FacetDTO> getFacets() {
         return calculateRead(ds, () -> viewsConfig.views
                 .stream()
-                .flatMap(view ->
-                        view.columns.stream()
-                                .map(column -> getFacetInfo(view, column))
-                                .filter(f -> f.getMin() != null || f.getMax() != null || (f.getValues() != null && f.getValues().size() > 1))
-                )
+                .flatMap(view -> getViewFacets(view).stream())
                 .collect(toList()));
     }
 
+    private List<FacetDTO> getViewFacets(View view) {
+        // Facets of resources computed from the view database are restricted to the readable collections
+        var collections = viewStoreClientFactory != null && isResourceView(view) ? getReadableCollections() : null;
+        if (!cacheEnabled) {
+            return computeViewFacets(view, collections);
+        }
+        Object key = viewStoreClientFactory == null ? ofNullable(getUserURI()).orElse(SHARED)
+                : collections != null ? collections : SHARED;
+        // Read the version before computing, so that facets computed concurrently with an invalidation are discarded
+        var version = facetVersions.get(view.name).get();
+        var cached = facetCache.computeIfAbsent(view.name, name -> new ConcurrentHashMap<>()).get(key);
+        if (cached != null && cached.version == version) {
+            return cached.facets;
+        }
+        // Facets computed from a view database that is behind would be stale
+        var cacheable = viewStoreClientFactory == null || viewIndexer == null || viewIndexer.getLag() == 0;
+        var facets = computeViewFacets(view, collections);
+        if (cacheable) {
+            facetCache.get(view.name).put(key, new CachedFacets(version, facets));
+        }
+        return facets;
+    }
+
+    private List<FacetDTO> computeViewFacets(View view, List<String> collections) {
+        return view.columns.stream()
+                .map(column -> getFacetInfo(view, column, collections))
+                .filter(f -> f.getMin() != null || f.getMax() != null || (f.getValues() != null && f.getValues().size() > 1))
+                .collect(toList());
+    }
+
+    /**
+     * Invalidates the facets of the views affected by a committed transaction.
+     */
+    @Override
+    public void onCommit(Map<Node, Set<Node>> subjectTypes) {
+        var types = subjectTypes.values().stream()
+                .flatMap(Set::stream)
+                .collect(toSet());
+        var accessChanged = types.stream().anyMatch(ACCESS_TYPES::contains);
+        for (var view : viewsConfig.views) {
+            // Facets cached per set of readable collections are dropped as well, so that the cache does not grow
+            var accessDependent = viewStoreClientFactory == null || isResourceView(view);
+            if ((accessChanged && accessDependent) || isAffected(view, types)) {
+                log.debug("Invalidating facets of view {}", view.name);
+                facetVersions.get(view.name).incrementAndGet();
+                ofNullable(facetCache.get(view.name)).ifPresent(Map::clear);
+            }
+        }
+    }
+
+    static boolean isAffected(View view, Set<Node> types) {
+        return view.types.stream().anyMatch(type -> types.contains(NodeFactory.createURI(type)))
+                || view.columns.stream().anyMatch(column -> column.rdfType != null && types.contains(NodeFactory.createURI(column.rdfType)));
+    }
+
     public List<ViewDTO> getViews() {
         return viewsConfig.views.stream()
                 .map(v -> {
@@ -172,4 +306,14 @@ public class ViewService {
                 })
                 .collect(toList());
     }
+
+    private static class CachedFacets {
+        final long version;
+        final List<FacetDTO> facets;
+
+        CachedFacets(long version, List<FacetDTO> facets) {
+            this.version = version;
+            this.facets = facets;
+        }
+    }
 }
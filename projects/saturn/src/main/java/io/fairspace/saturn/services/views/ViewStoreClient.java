@@ -1,12 +1,16 @@
 package io.fairspace.saturn.services.views;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.fairspace.saturn.config.*;
 import io.fairspace.saturn.config.ViewsConfig.*;
 import io.fairspace.saturn.services.views.Table.*;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.apache.commons.lang3.tuple.*;
+import org.postgresql.*;
 
+import java.io.*;
 import java.sql.*;
 import java.time.*;
 import java.util.*;
@@ -15,15 +19,28 @@ import java.util.stream.*;
 
 import static io.fairspace.saturn.services.views.Table.idColumn;
 import static io.fairspace.saturn.services.views.Table.valueColumn;
+import static io.fairspace.saturn.services.views.ViewStoreClientFactory.H2_DATABASE;
+import static io.fairspace.saturn.services.views.ViewStoreClientFactory.indexName;
 
 @Slf4j
 public class ViewStoreClient implements AutoCloseable {
+    private static final String INDEX_STATE_ID = "views";
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+    private static final int MAX_PARAMETERS_PER_STATEMENT = 30_000;
+    private static final int MAX_CACHED_LABELS = 100_000;
 
     public static class ViewStoreConfiguration {
         final Map<String, View> viewConfig;
         final Map<String, Table> viewTables = new HashMap<>();
         final Map<String, Map<String, Table>> propertyTables = new HashMap<>();
         final Map<String, Map<String, Table>> joinTables = new HashMap<>();
+        // Terms known to have a label in the view database, shared by all clients.
+        // Labels are never deleted, so the cache does not need to be invalidated.
+        final Cache<String, Boolean> labelledTerms = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_LABELS)
+                .build();
+        // Whether the pg_trgm extension is available for substring search
+        boolean trigramSearch;
 
         ViewStoreConfiguration(ViewsConfig viewsConfig) {
             viewConfig = viewsConfig.views.stream().collect(Collectors.toMap(view -> view.name, Function.identity()));
@@ -47,6 +64,8 @@ public class ViewStoreClient implements AutoCloseable {
 
     public final Connection connection;
     final ViewStoreConfiguration configuration;
+    // Terms for which a label has been added in the current database transaction
+    private final Set<String> addedLabels = new HashSet<>();
 
     public ViewStoreClient(
             Connection connection,
@@ -62,6 +81,8 @@ public class ViewStoreClient implements AutoCloseable {
 
     public void commit() throws SQLException {
         this.connection.commit();
+        addedLabels.forEach(id -> configuration.labelledTerms.put(id, Boolean.TRUE));
+        addedLabels.clear();
     }
 
     public void deleteRow(String view, String uri) throws SQLException {
@@ -74,184 +95,470 @@ public class ViewStoreClient implements AutoCloseable {
         }
     }
 
-    Set<String> retrieveValues(String joinTable, String view, String id, ColumnDefinition column) throws SQLException {
-        try (var query = connection.prepareStatement(
-                "select " + column.name + " from " + joinTable +
-                        " where " + idColumn(view).name + " = ?"
-        )) {
-            query.setString(1, id);
-            var result = query.executeQuery();
-            var links = new HashSet<String>();
-            while (result.next()) {
-                links.add(result.getString(1));
+    /**
+     * The number of rows written by a single multi-row statement,
+     * such that the number of parameters stays well below the limit of PostgreSQL (32767).
+     */
+    static int rowsPerStatement(int columns) {
+        return Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, MAX_PARAMETERS_PER_STATEMENT / columns));
+    }
+
+    static String valuesClause(int rows, int columns) {
+        var row = "( " + String.join(", ", Collections.nCopies(columns, "?")) + " )";
+        return String.join(", ", Collections.nCopies(rows, row));
+    }
+
+    /**
+     * Inserts (id, value) tuples into a value set or join table, skipping tuples that already exist.
+     */
+    int insertValues(
+            Table table,
+            ColumnDefinition idColumn,
+            ColumnDefinition valueColumn,
+            Collection<Pair<String, String>> values) throws SQLException {
+        var count = 0;
+        var chunkSize = rowsPerStatement(2);
+        var remaining = new ArrayList<>(values);
+        for (var from = 0; from < remaining.size(); from += chunkSize) {
+            var chunk = remaining.subList(from, Math.min(from + chunkSize, remaining.size()));
+            try (var insert = connection.prepareStatement(
+                    "insert into " + table.name + " ( " + idColumn.name + ", " + valueColumn.name + " )" +
+                            " values " + valuesClause(chunk.size(), 2) +
+                            " on conflict do nothing")) {
+                var index = 1;
+                for (var value : chunk) {
+                    insert.setString(index++, value.getKey());
+                    insert.setString(index++, value.getValue());
+                }
+                count += insert.executeUpdate();
             }
-            return links;
         }
+        return count;
     }
 
-    int deleteValues(
+    /**
+     * Replaces the values of a row in a value set or join table,
+     * deleting the values that are not in the new set and inserting the values that are missing.
+     * Small sets are replaced without reading the existing values first.
+     * For sets with more values than fit in a single statement, the existing values are read,
+     * and the values that are not in the new set are deleted in chunks.
+     */
+    void replaceValues(
             Table table,
             ColumnDefinition idColumn,
             String id,
             ColumnDefinition valueColumn,
-            Collection<String> values) throws SQLException {
-        var deleteSql = "delete from " + table.name +
-                " where " + idColumn.name + " = ? " +
-                " and " + valueColumn.name + " = ?";
-        try (var delete = connection.prepareStatement(deleteSql)) {
-            for (String value : values) {
+            Set<String> values) throws SQLException {
+        values = values.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        int deleteCount;
+        if (values.size() <= rowsPerStatement(1)) {
+            try (var delete = connection.prepareStatement(
+                    "delete from " + table.name + " where " + idColumn.name + " = ?" +
+                            (values.isEmpty() ? "" : " and " + valueColumn.name + " not in ( " + ViewStoreReader.placeholders(values.size()) + " )"))) {
                 delete.setString(1, id);
-                delete.setString(2, value);
-                delete.addBatch();
+                var index = 2;
+                for (var value : values) {
+                    delete.setString(index++, value);
+                }
+                deleteCount = delete.executeUpdate();
             }
-            return Arrays.stream(delete.executeBatch()).sum();
+        } else {
+            deleteCount = deleteValuesNotIn(table, idColumn, id, valueColumn, values);
         }
+        var insertCount = insertValues(table, idColumn, valueColumn,
+                values.stream().map(value -> Pair.of(id, value)).collect(Collectors.toList()));
+        log.debug("Deleted {}, inserted {} values for {} in {}", deleteCount, insertCount, id, table.name);
     }
 
-    int insertValues(
+    private int deleteValuesNotIn(
             Table table,
             ColumnDefinition idColumn,
+            String id,
             ColumnDefinition valueColumn,
-            Collection<Pair<String, String>> values) throws SQLException {
-        var insertSql = "insert into " + table.name + " ( " +
-                idColumn.name + ", " + valueColumn.name + " ) values ( ?, ? )";
-        try (var insert = connection.prepareStatement(insertSql)) {
-            for (var value : values) {
-                insert.setString(1, value.getKey());
-                insert.setString(2, value.getValue());
-                insert.addBatch();
+            Set<String> values) throws SQLException {
+        var removed = new ArrayList<String>();
+        try (var query = connection.prepareStatement(
+                "select " + valueColumn.name + " from " + table.name + " where " + idColumn.name + " = ?")) {
+            query.setString(1, id);
+            var result = query.executeQuery();
+            while (result.next()) {
+                var value = result.getString(1);
+                if (!values.contains(value)) {
+                    removed.add(value);
+                }
             }
-            return Arrays.stream(insert.executeBatch()).sum();
         }
+        var count = 0;
+        var chunkSize = rowsPerStatement(1);
+        for (var from = 0; from < removed.size(); from += chunkSize) {
+            var chunk = removed.subList(from, Math.min(from + chunkSize, removed.size()));
+            try (var delete = connection.prepareStatement(
+                    "delete from " + table.name + " where " + idColumn.name + " = ?" +
+                            " and " + valueColumn.name + " in ( " + ViewStoreReader.placeholders(chunk.size()) + " )")) {
+                delete.setString(1, id);
+                var index = 2;
+                for (var value : chunk) {
+                    delete.setString(index++, value);
+                }
+                count += delete.executeUpdate();
+            }
+        }
+        return count;
     }
 
     public void updateValues(String view, String id, String property, Set<String> values) throws SQLException {
         var propertyTable = configuration.propertyTables.get(view).get(property);
-        var valueColumn = valueColumn(property, ColumnType.Text);
-        var existing = retrieveValues(propertyTable.name, view, id, valueColumn);
-
-        var deleteCount = deleteValues(
-                propertyTable,
-                idColumn(view),
-                id,
-                valueColumn,
-                existing.stream().filter(value -> !values.contains(value)).collect(Collectors.toList()));
-
-        var insertCount = insertValues(
-                propertyTable,
-                idColumn(view),
-                valueColumn,
-                values.stream().filter(value -> !existing.contains(value))
-                        .map(value -> Pair.of(id, value))
-                        .collect(Collectors.toList()));
-
-        log.debug("Deleted {}, inserted {} values for {}_{}", deleteCount, insertCount, view, property);
+        replaceValues(propertyTable, idColumn(view), id, valueColumn(property, ColumnType.Text), values);
     }
 
     public void updateLinks(String view, String id, String joinView, Set<String> links) throws SQLException {
         var joinTable = configuration.joinTables.get(view).get(joinView);
-        var existing = retrieveValues(joinTable.name, view, id, idColumn(joinView));
-
-        var deleteCount = deleteValues(
-                joinTable,
-                idColumn(view),
-                id,
-                idColumn(joinView),
-                existing.stream().filter(link -> !links.contains(link)).collect(Collectors.toList()));
-
-        var insertCount = insertValues(
-                joinTable,
-                idColumn(view),
-                idColumn(joinView),
-                links.stream()
-                        .filter(link -> !existing.contains(link))
-                        .map(link -> Pair.of(id, link))
-                        .collect(Collectors.toList()));
-
-        log.debug("Deleted {}, inserted {} links for {} - {}", deleteCount, insertCount, view, joinView);
-    }
-
-    boolean rowExists(String table, String id) throws SQLException {
-        try (var query = connection.prepareStatement(
-                "select exists ( select 1 from " + table + " where id = ? )"
-        )) {
-            query.setString(1, id);
-            var result = query.executeQuery();
-            result.next();
-            return result.getBoolean(1);
-        }
+        replaceValues(joinTable, idColumn(view), id, idColumn(joinView), links);
     }
 
+    /**
+     * Adds the label of a term, unless the term already has a label.
+     * Terms known to have a label in the database are cached, so that repeated terms skip the database.
+     */
     public void addLabel(String id, String type, String label) throws SQLException {
-        if (!rowExists("label", id)) {
-            try (var insert = connection.prepareStatement("insert into label (id, type, label) values (?, ?, ?)")) {
-                insert.setString(1, id);
-                insert.setString(2, type);
-                insert.setString(3, label);
-                insert.executeUpdate();
+        if (configuration.labelledTerms.getIfPresent(id) != null || !addedLabels.add(id)) {
+            return;
+        }
+        try (var insert = connection.prepareStatement(
+                "insert into label (id, type, label) values (?, ?, ?) on conflict do nothing")) {
+            insert.setString(1, id);
+            insert.setString(2, type);
+            insert.setString(3, label);
+            if (insert.executeUpdate() > 0) {
                 log.debug("Inserted label '{}' for {} (type {})", label, id, type);
             }
         }
     }
 
-    public int updateRows(String view, List<Map<String, Object>> rows, boolean bulkInsert) throws SQLException {
-        var viewTable = configuration.viewTables.get(view);
+    /**
+     * Records whether a term is deleted. The label of a deleted term is kept,
+     * as it may still be used in view rows, but the term is not offered as a facet value.
+     *
+     * @param deleted the date the term was deleted, or null if the term is not deleted.
+     */
+    public void setTermDeleted(String id, Instant deleted) throws SQLException {
+        try (var update = connection.prepareStatement(
+                "update label set deleted = ? where id = ?")) {
+            setQueryValue(update, 1, deleted);
+            update.setString(2, id);
+            update.executeUpdate();
+        }
+    }
+
+    /**
+     * Find the columns for which there are values in the rows, skipping value set columns.
+     */
+    private List<String> getColumnNames(String view, List<Map<String, Object>> rows) {
         var config = configuration.viewConfig.get(view);
-        // Find the columns for which there are values in the rows
-        var columnNames = rows.stream()
+        return rows.stream()
                 .flatMap(row -> row.entrySet().stream()
                         .filter(entry -> entry.getValue() != null)
                         .map(Map.Entry::getKey))
                 .distinct()
                 .filter(columnName -> config.columns.stream().noneMatch(column ->
-                        // Skip value set columns
                         column.name.equalsIgnoreCase(columnName) && column.type.isSet()))
                 .collect(Collectors.toList());
+    }
+
+    /**
+     * Inserts or updates rows of a view table, using multi-row statements.
+     * Existing rows are updated in the same statement, using 'insert ... on conflict do update' on PostgreSQL
+     * and 'merge' on H2, which does not support the former.
+     *
+     * @param bulkInsert if true, rows are only inserted, rows with an id that already exists in the table are skipped.
+     */
+    public int updateRows(String view, List<Map<String, Object>> rows, boolean bulkInsert) throws SQLException {
+        var viewTable = configuration.viewTables.get(view);
+        var columnNames = getColumnNames(view, rows);
+        if (columnNames.isEmpty()) {
+            return 0;
+        }
+        var count = 0;
+        var chunkSize = rowsPerStatement(columnNames.size());
+        for (var from = 0; from < rows.size(); from += chunkSize) {
+            var chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+            try (var upsert = connection.prepareStatement(upsertSql(viewTable, columnNames, chunk.size(), bulkInsert))) {
+                var index = 1;
+                for (var row : chunk) {
+                    for (var columnName : columnNames) {
+                        setQueryValue(upsert, index++, row.get(columnName));
+                    }
+                }
+                count += upsert.executeUpdate();
+            }
+        }
+        log.debug("Inserted or updated {} rows of view {}", count, view);
+        return count;
+    }
+
+    private static String upsertSql(Table table, List<String> columnNames, int rows, boolean insertOnly) {
+        var columns = String.join(", ", columnNames);
+        var values = valuesClause(rows, columnNames.size());
+        if (insertOnly) {
+            return "insert into " + table.name + " ( " + columns + " ) values " + values + " on conflict do nothing";
+        }
+        if (H2_DATABASE) {
+            return "merge into " + table.name + " ( " + columns + " ) key ( id ) values " + values;
+        }
+        var updates = columnNames.stream()
+                .filter(column -> !column.equals("id"))
+                .map(column -> column + " = excluded." + column)
+                .collect(Collectors.joining(", "));
+        return "insert into " + table.name + " ( " + columns + " ) values " + values +
+                " on conflict ( id ) do " + (updates.isEmpty() ? "nothing" : "update set " + updates);
+    }
+
+    boolean isCopySupported() throws SQLException {
+        return connection.isWrapperFor(PGConnection.class);
+    }
+
+    /**
+     * Appends a value in the text format of the PostgreSQL COPY command.
+     * Values are converted in the same way as in {@link #setQueryValue(PreparedStatement, int, Object)}.
+     */
+    static void appendCopyValue(StringBuilder data, Object value) {
+        if (value == null) {
+            data.append("\\N");
+            return;
+        }
+        String text;
+        if (value instanceof Number) {
+            text = String.valueOf(((Number) value).floatValue());
+        } else if (value instanceof Instant) {
+            text = Timestamp.from((Instant) value).toString();
+        } else if (value instanceof Collection) {
+            throw new IllegalArgumentException("Unexpected value of collection type.");
+        } else {
+            text = value.toString();
+        }
+        for (var i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '\\' -> data.append("\\\\");
+                case '\t' -> data.append("\\t");
+                case '\n' -> data.append("\\n");
+                case '\r' -> data.append("\\r");
+                default -> data.append(c);
+            }
+        }
+    }
+
+    /**
+     * Copies rows into a table, skipping rows with a key that already exists in the table.
+     * As a duplicate key would abort the whole COPY command, the rows are copied into a temporary staging table first,
+     * and then inserted into the table with 'on conflict do nothing'.
+     *
+     * @return the number of inserted rows.
+     */
+    private long copy(String table, List<String> columnNames, StringBuilder data) throws SQLException {
+        var staging = table + "_staging";
+        var columns = String.join(", ", columnNames);
+        try (var statement = connection.createStatement()) {
+            statement.execute("create temporary table if not exists " + staging + " ( like " + table + " ) on commit drop");
+            statement.execute("truncate " + staging);
+        }
+        var command = "copy " + staging + " ( " + columns + " ) from stdin";
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn(command, new StringReader(data.toString()));
+        } catch (IOException e) {
+            throw new SQLException("Failed to copy rows into table " + table, e);
+        }
+        try (var statement = connection.createStatement()) {
+            return statement.executeUpdate("insert into " + table + " ( " + columns + " )" +
+                    " select " + columns + " from " + staging + " on conflict do nothing");
+        }
+    }
+
+    /**
+     * Inserts new rows into a view table in bulk, using the COPY command if the database supports it.
+     * Only the first of the rows with the same id is inserted, and rows with an id that already exists in the table
+     * are skipped, e.g., the rows of an entity with multiple types of the view, copied for each of the types.
+     */
+    public int copyRows(String view, List<Map<String, Object>> rows) throws SQLException {
+        var rowsById = new LinkedHashMap<Object, Map<String, Object>>();
+        rows.forEach(row -> rowsById.putIfAbsent(row.get("id"), row));
+        if (rowsById.size() < rows.size()) {
+            log.debug("Skipped {} duplicate rows for view {}", rows.size() - rowsById.size(), view);
+            rows = new ArrayList<>(rowsById.values());
+        }
+        if (!isCopySupported()) {
+            return updateRows(view, rows, true);
+        }
+        var columnNames = getColumnNames(view, rows);
         if (columnNames.isEmpty()) {
             return 0;
         }
-        var updateSql = "update " + viewTable.name + " set " +
-                columnNames.stream()
-                        .map(column -> column + " = ?")
-                        .collect(Collectors.joining(", ")) +
-                " where id = ?";
-        var insertSql = "insert into " + viewTable.name + " ( " +
-                String.join(", ", columnNames) + " ) values ( " +
-                columnNames.stream()
-                        .map(column -> "?")
-                        .collect(Collectors.joining(", ")) + " )";
-        try (var insert = connection.prepareStatement(insertSql);
-             var update = connection.prepareStatement(updateSql)) {
-            for (var row: rows) {
-                var values = columnNames.stream()
-                        .map(columnName -> row.getOrDefault(columnName, null))
-                        .collect(Collectors.toList());
-                var id = (String) row.get("id");
-                var exists = (!bulkInsert) && rowExists(viewTable.name, id);
-                if (exists) {
-                    for (var i = 0; i < values.size(); i++) {
-                        var value = values.get(i);
-                        setQueryValue(update, i + 1, value);
+        var data = new StringBuilder();
+        for (var row: rows) {
+            for (var i = 0; i < columnNames.size(); i++) {
+                if (i > 0) {
+                    data.append('\t');
+                }
+                appendCopyValue(data, row.get(columnNames.get(i)));
+            }
+            data.append('\n');
+        }
+        var insertCount = (int) copy(configuration.viewTables.get(view).name, columnNames, data);
+        log.debug("Copied {} rows into view {}", insertCount, view);
+        return insertCount;
+    }
+
+    /**
+     * Inserts new (id, value) tuples into a value set or join table in bulk,
+     * using the COPY command if the database supports it.
+     * Duplicate tuples and tuples that already exist in the table are skipped.
+     */
+    int copyValues(
+            Table table,
+            ColumnDefinition idColumn,
+            ColumnDefinition valueColumn,
+            Collection<Pair<String, String>> values) throws SQLException {
+        values = new LinkedHashSet<>(values);
+        if (!isCopySupported()) {
+            return insertValues(table, idColumn, valueColumn, values);
+        }
+        if (values.isEmpty()) {
+            return 0;
+        }
+        var data = new StringBuilder();
+        for (var value: values) {
+            appendCopyValue(data, value.getKey());
+            data.append('\t');
+            appendCopyValue(data, value.getValue());
+            data.append('\n');
+        }
+        return (int) copy(table.name, List.of(idColumn.name, valueColumn.name), data);
+    }
+
+    /**
+     * Secondary indexes of the tables of a view, as (index name, table and indexed columns) pairs.
+     * The primary keys cover lookups by the view identifier.
+     * <ul>
+     *     <li>Columns of the view table are indexed for the filters supported by their type:
+     *     B-tree indexes for equality and range filters on term, number and date columns,
+     *     and, on PostgreSQL, pattern indexes on the lower case values for prefix filters on text columns
+     *     and on the identifiers of resources for location filters.</li>
+     *     <li>Value set tables are indexed by value and row identifier,
+     *     so that value set filters can be answered from the index only.</li>
+     *     <li>Join tables are indexed in the reverse order of their primary key.</li>
+     * </ul>
+     * Text columns cannot be indexed in H2, where they are stored as CLOBs.
+     */
+    List<Pair<String, String>> getSecondaryIndexes(String view) {
+        var indexes = new ArrayList<Pair<String, String>>();
+        var viewTable = configuration.viewTables.get(view);
+        if (!H2_DATABASE) {
+            indexes.add(index(viewTable, "label", "lower(label) text_pattern_ops"));
+            if (view.equalsIgnoreCase("Resource")) {
+                indexes.add(index(viewTable, "id", "id text_pattern_ops"));
+                indexes.add(index(viewTable, "collection", "collection"));
+            }
+        }
+        if (configuration.trigramSearch) {
+            indexes.add(trigramIndex(viewTable, "label"));
+            if (view.equalsIgnoreCase("Resource")) {
+                indexes.add(trigramIndex(viewTable, "description"));
+            }
+        }
+        for (var column: configuration.viewConfig.get(view).columns) {
+            var columnName = column.name.toLowerCase();
+            switch (column.type) {
+                case Number, Date -> indexes.add(index(viewTable, columnName, columnName));
+                case Term -> {
+                    if (!H2_DATABASE) {
+                        indexes.add(index(viewTable, columnName, columnName));
                     }
-                    update.setString(values.size() + 1, id);
-                    update.addBatch();
-                } else {
-                    for (var i = 0; i < values.size(); i++) {
-                        var value = values.get(i);
-                        setQueryValue(insert, i + 1, value);
+                }
+                case Text -> {
+                    if (!H2_DATABASE) {
+                        indexes.add(index(viewTable, columnName, "lower(" + columnName + ") text_pattern_ops"));
                     }
-                    insert.addBatch();
                 }
+                case Set, TermSet -> {
+                    var propertyTable = configuration.propertyTables.get(view).get(column.name);
+                    indexes.add(index(propertyTable, columnName, columnName + ", " + idColumn(view).name));
+                }
+                default -> {}
+            }
+        }
+        configuration.joinTables.getOrDefault(view, Collections.emptyMap()).values().forEach(joinTable -> {
+            var left = joinTable.columns.get(0).name;
+            var right = joinTable.columns.get(1).name;
+            indexes.add(index(joinTable, right, right + ", " + left));
+        });
+        return indexes;
+    }
+
+    private static Pair<String, String> index(Table table, String column, String definition) {
+        return Pair.of(indexName(table, column), table.name + " ( " + definition + " )");
+    }
+
+    private static Pair<String, String> trigramIndex(Table table, String column) {
+        return Pair.of(indexName(table, column + "_trgm"),
+                table.name + " using gin ( lower(" + column + ") gin_trgm_ops )");
+    }
+
+    /**
+     * Drops the secondary indexes of the tables of a view, to speed up bulk loading.
+     */
+    public void dropSecondaryIndexes(String view) throws SQLException {
+        for (var index: getSecondaryIndexes(view)) {
+            try (var statement = connection.prepareStatement(
+                    "drop index if exists " + index.getKey())) {
+                statement.executeUpdate();
             }
-            var insertCount = Arrays.stream(insert.executeBatch()).sum();
-            if (insertCount > 0) {
-                log.debug("Inserted {} rows into view {}", insertCount, view);
+        }
+    }
+
+    /**
+     * (Re)creates the secondary indexes of the tables of a view.
+     */
+    public void createSecondaryIndexes(String view) throws SQLException {
+        for (var index: getSecondaryIndexes(view)) {
+            try (var statement = connection.prepareStatement(
+                    "create index if not exists " + index.getKey() + " on " + index.getValue())) {
+                statement.executeUpdate();
             }
-            var updateCount = Arrays.stream(update.executeBatch()).sum();
-            if (updateCount > 0) {
-                log.debug("Updated {} rows of view {}", updateCount, view);
+        }
+        log.debug("Created secondary indexes for view {}", view);
+    }
+
+    /**
+     * @return the index of the last transaction from the transaction log that
+     *         has been applied to the view database, or null if unknown.
+     */
+    public Long retrieveLogIndex() throws SQLException {
+        try (var query = connection.prepareStatement(
+                "select log_index from index_state where id = ?")) {
+            query.setString(1, INDEX_STATE_ID);
+            var result = query.executeQuery();
+            if (result.next()) {
+                return result.getLong("log_index");
             }
-            return insertCount + updateCount;
+            return null;
+        }
+    }
+
+    public void updateLogIndex(long index) throws SQLException {
+        try (var update = connection.prepareStatement(
+                "update index_state set log_index = ? where id = ?")) {
+            update.setLong(1, index);
+            update.setString(2, INDEX_STATE_ID);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (var insert = connection.prepareStatement(
+                "insert into index_state (id, log_index) values (?, ?)")) {
+            insert.setString(1, INDEX_STATE_ID);
+            insert.setLong(2, index);
+            insert.executeUpdate();
         }
     }
 
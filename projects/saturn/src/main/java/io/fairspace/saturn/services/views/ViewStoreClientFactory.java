@@ -64,14 +64,57 @@ public class ViewStoreClientFactory {
                 .columns(List.of(
                         idColumn(),
                         valueColumn("type", ColumnType.Text),
-                        valueColumn("label", ColumnType.Text)
+                        valueColumn("label", ColumnType.Text),
+                        // Set when the term is deleted, deleted terms are not offered as facet values
+                        valueColumn("deleted", ColumnType.Date)
+                ))
+                .build());
+        if (!H2_DATABASE) {
+            try (var connection = getConnection()) {
+                connection.setAutoCommit(true);
+                connection.createStatement().execute(
+                        "create index if not exists label_type_label_idx on label ( type, label )");
+            }
+        }
+
+        ensureTableExists(Table.builder()
+                .name("index_state")
+                .columns(List.of(
+                        idColumn(),
+                        valueColumn("log_index", ColumnType.Number)
                 ))
                 .build());
 
         configuration = new ViewStoreClient.ViewStoreConfiguration(viewsConfig);
+        configuration.trigramSearch = !H2_DATABASE && enableTrigramSearch();
         for (View view: viewsConfig.views) {
             ensureViewExists(view);
         }
+        try (var viewStoreClient = build()) {
+            for (View view: viewsConfig.views) {
+                viewStoreClient.createSecondaryIndexes(view.name);
+            }
+            viewStoreClient.commit();
+        }
+    }
+
+    /**
+     * Enables the pg_trgm extension, used to index labels and descriptions for substring search.
+     * Search falls back to sequential scans if the extension is not available.
+     */
+    private boolean enableTrigramSearch() {
+        try (var connection = getConnection()) {
+            connection.setAutoCommit(true);
+            connection.createStatement().execute("create extension if not exists pg_trgm");
+            return true;
+        } catch (SQLException e) {
+            log.warn("The pg_trgm extension is not available, text search will not use trigram indexes: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    static String indexName(Table table, String column) {
+        return String.format("%s_%s_idx", table.name, column.toLowerCase());
     }
 
     public Connection getConnection() throws SQLException {
@@ -1,5 +1,7 @@
 package io.fairspace.saturn.services.views;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fairspace.saturn.config.*;
 import io.fairspace.saturn.config.ViewsConfig.*;
 import io.fairspace.saturn.services.search.FileSearchRequest;
@@ -8,6 +10,7 @@ import io.fairspace.saturn.vocabulary.*;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.*;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.vocabulary.RDFS;
 
 import java.sql.*;
 import java.time.*;
@@ -28,6 +31,8 @@ import static io.fairspace.saturn.services.views.Table.idColumn;
  */
 @Slf4j
 public class ViewStoreReader implements AutoCloseable {
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
     final Config.Search searchConfig;
     final ViewStoreClient.ViewStoreConfiguration configuration;
     final Connection connection;
@@ -52,7 +57,7 @@ public class ViewStoreReader implements AutoCloseable {
 
     String iriForLabel(String type, String label) throws SQLException {
         try (var query = connection.prepareStatement(
-                "select id from label where type = ? and label = ?")) {
+                "select id from label where type = ? and label = ? order by case when deleted is null then 0 else 1 end")) {
             query.setString(1, type);
             query.setString(2, label);
             var result = query.executeQuery();
@@ -207,7 +212,7 @@ public class ViewStoreReader implements AutoCloseable {
                 prefixFieldName = prefixFieldName.replaceAll("\\.id$", ".label");
             }
             values.add(escapeLikeString(filter.getPrefix().trim().toLowerCase()) + "%");
-            constraints.add(prefixFieldName + " ilike ? escape '\\'");
+            constraints.add("lower(" + prefixFieldName + ") like ? escape '\\'");
         }
         if (filter.getPrefixes() != null && !filter.getPrefixes().isEmpty()) {
             String finalFieldName = fieldName;
@@ -251,6 +256,20 @@ public class ViewStoreReader implements AutoCloseable {
     }
 
     PreparedStatement query(String view, String projection, List<ViewFilter> filters, String scope) throws SQLException {
+        return query(view, projection, filters, null, scope);
+    }
+
+    /**
+     * @param after if not null, only rows with an identifier greater than this value are selected (keyset pagination).
+     */
+    PreparedStatement query(String view, String projection, List<ViewFilter> filters, String after, String scope) throws SQLException {
+        return query(false, view, projection, filters, after, scope);
+    }
+
+    /**
+     * @param explain if true, the query plan is selected instead of the rows (PostgreSQL only).
+     */
+    private PreparedStatement query(boolean explain, String view, String projection, List<ViewFilter> filters, String after, String scope) throws SQLException {
         if (filters == null) {
             filters = Collections.emptyList();
         }
@@ -276,6 +295,10 @@ public class ViewStoreReader implements AutoCloseable {
                             ")";
                 })
                 .collect(Collectors.toList());
+        if (after != null) {
+            values.add(after);
+            subqueries.add("v.id > ?");
+        }
         constraints = Stream.concat(
                 Stream.of(constraints),
                 subqueries.stream())
@@ -284,6 +307,7 @@ public class ViewStoreReader implements AutoCloseable {
 
         var viewTable = configuration.viewTables.get(view);
         var query = connection.prepareStatement(
+                (explain ? "explain (format json) " : "") +
                 "select " + projection +
                         " from " + viewTable.name + " v " +
                         (constraints.isBlank() ? "" : " where " + constraints) +
@@ -303,36 +327,62 @@ public class ViewStoreReader implements AutoCloseable {
         return query;
     }
 
-    Map<String, PreparedStatement> prepareValueSetQueries(String view, List<String> properties) throws SQLException {
-        var valueSetQueries = new LinkedHashMap<String, PreparedStatement>();
+    /**
+     * Converts a timeout in milliseconds from the configuration to the seconds expected by JDBC.
+     */
+    static int seconds(long millis) {
+        return (int) Math.max(1, (millis + 999) / 1000);
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Fetches the values of the specified value set properties for all specified rows,
+     * using a single query per property table.
+     *
+     * @return a map from property name to a map from row id to the set of values.
+     */
+    Map<String, Map<String, Set<ValueDTO>>> retrieveValueSets(String view, List<String> properties, Collection<String> ids) throws SQLException {
+        var valueSets = new HashMap<String, Map<String, Set<ValueDTO>>>();
         for (var propertyName : properties) {
+            var valuesById = new HashMap<String, Set<ValueDTO>>();
+            valueSets.put(propertyName, valuesById);
+            if (ids.isEmpty()) {
+                continue;
+            }
             var propertyTable = configuration.propertyTables.get(view).get(propertyName);
-            var valueSetQuery = connection.prepareStatement(
-                    "select " + propertyName.toLowerCase() +
+            var idColumnName = idColumn(view).name;
+            try (var valueSetQuery = connection.prepareStatement(
+                    "select " + idColumnName + ", " + propertyName.toLowerCase() +
                             " from " + propertyTable.name + " p " +
-                            " where p." + idColumn(view).name + " = ?");
-            valueSetQueries.put(propertyName, valueSetQuery);
+                            " where p." + idColumnName + " in ( " + placeholders(ids.size()) + " )")) {
+                var index = 1;
+                for (var id : ids) {
+                    valueSetQuery.setString(index++, id);
+                }
+                var valueSetResult = valueSetQuery.executeQuery();
+                while (valueSetResult.next()) {
+                    var label = valueSetResult.getString(propertyName.toLowerCase());
+                    valuesById.computeIfAbsent(valueSetResult.getString(idColumnName), id -> new LinkedHashSet<>())
+                            .add(new ValueDTO(label, label));
+                }
+            }
         }
-        return valueSetQueries;
+        return valueSets;
     }
 
-    void addValueSetValues(String view, Map<String, Set<ValueDTO>> row, List<String> properties, Map<String, PreparedStatement> valueSetQueries) throws SQLException {
+    void addValueSetValues(String view, Map<String, Set<ValueDTO>> row, List<String> properties, Map<String, Map<String, Set<ValueDTO>>> valueSets) {
         var rowId = (String) row.get(view).stream().findFirst().orElseThrow().getValue();
         for (var propertyName : properties) {
-            var valueSetQuery = valueSetQueries.get(propertyName);
-            valueSetQuery.setString(1, rowId);
-            var valueSetResult = valueSetQuery.executeQuery();
-            var values = new LinkedHashSet<ValueDTO>();
-            while (valueSetResult.next()) {
-                var label = valueSetResult.getString(propertyName.toLowerCase());
-                values.add(new ValueDTO(label, label));
-            }
-            row.put(view + "_" + propertyName, values);
+            var values = valueSets.get(propertyName).getOrDefault(rowId, Collections.emptySet());
+            row.put(view + "_" + propertyName, new LinkedHashSet<>(values));
         }
     }
 
     List<Map<String, Set<ValueDTO>>> retrieveViewTableRows(
-            String view, List<ViewFilter> filters, int offset, int limit) throws SQLException {
+            String view, List<ViewFilter> filters, String after, int offset, int limit) throws SQLException {
         var viewConfig = configuration.viewConfig.get(view);
         if (viewConfig == null) {
             throw new IllegalArgumentException("View not supported: " + view);
@@ -341,32 +391,70 @@ public class ViewStoreReader implements AutoCloseable {
                 .filter(column -> column.type.isSet())
                 .map(column -> column.name)
                 .collect(Collectors.toList());
-        var valueSetQueries = prepareValueSetQueries(view, valueSetProperties);
         var start = new Date().getTime();
-        try (var query = query(view, "*", filters,
-                String.format("order by id %s limit %d", offset > 0 ? String.format("offset %d", offset) : "", limit))) {
-            query.setQueryTimeout((int) searchConfig.pageRequestTimeout);
+        try (var query = query(view, "*", filters, after,
+                String.format("order by id limit %d%s", limit, offset > 0 ? String.format(" offset %d", offset) : ""))) {
+            query.setQueryTimeout(seconds(searchConfig.pageRequestTimeout));
             var result = query.executeQuery();
             log.debug("Query took {} ms", new Date().getTime() - start);
             var mid = new Date().getTime();
             List<Map<String, Set<ValueDTO>>> rows = new ArrayList<>();
+            var ids = new ArrayList<String>();
             while (result.next()) {
-                var row = transformRow(viewConfig, result);
-                addValueSetValues(view, row, valueSetProperties, valueSetQueries);
-                rows.add(row);
+                rows.add(transformRow(viewConfig, result));
+                ids.add(result.getString("id"));
+            }
+            var valueSets = retrieveValueSets(view, valueSetProperties, ids);
+            for (var row : rows) {
+                addValueSetValues(view, row, valueSetProperties, valueSets);
             }
             log.debug("Processing rows + querying value sets took {} ms", new Date().getTime() - mid);
             return rows;
         } finally {
-            for (var q : valueSetQueries.values()) {
-                q.close();
-            }
             log.debug("Complete process took {} ms", new Date().getTime() - start);
         }
     }
 
-    List<Map<String, Set<ValueDTO>>> retrieveJoinTableRows(
-            String view, View.JoinView joinView, String id) throws SQLException {
+    Map<String, Set<ValueDTO>> transformJoinedRow(View.JoinView joinView, List<String> projectionColumns, ResultSet result) throws SQLException {
+        Map<String, Set<ValueDTO>> row = new HashMap<>();
+        row.put(joinView.view, Collections.singleton(new ValueDTO(result.getString("label"), result.getString("id"))));
+        for (var column : projectionColumns) {
+            var columnName = joinView.view + "_" + column;
+            var columnDefinition = configuration.viewTables.get(joinView.view).getColumns().stream()
+                    .filter(c -> c.getName().equalsIgnoreCase(column))
+                    .findFirst().orElseThrow(() -> {
+                        throw new NoSuchElementException("Cannot find column " + column);
+                    });
+            if (columnDefinition.type == ColumnType.Number) {
+                var value = result.getBigDecimal(columnDefinition.name);
+                if (value != null) {
+                    row.put(columnName, Collections.singleton(new ValueDTO(value.toString(), value)));
+                }
+            } else if (columnDefinition.type == Date) {
+                var value = result.getTimestamp(columnDefinition.name);
+                if (value != null) {
+                    row.put(columnName, Collections.singleton(new ValueDTO(value.toInstant().toString(), value.toString())));
+                }
+            } else {
+                var label = result.getString(columnDefinition.name);
+                row.put(columnName, Collections.singleton(new ValueDTO(label, label)));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Fetches the rows of a joined view for all specified rows of the main view,
+     * using a single query on the join table and one query per value set property.
+     *
+     * @return a map from the id of a row in the main view to the list of joined rows.
+     */
+    Map<String, List<Map<String, Set<ValueDTO>>>> retrieveJoinTableRows(
+            String view, View.JoinView joinView, Collection<String> ids) throws SQLException {
+        var joinedRowsById = new HashMap<String, List<Map<String, Set<ValueDTO>>>>();
+        if (ids.isEmpty()) {
+            return joinedRowsById;
+        }
         var joinedTable = configuration.viewTables.get(joinView.view);
         var joinViewConfig = configuration.viewConfig.get(joinView.view);
         var valueSetProperties = joinViewConfig.columns.stream()
@@ -374,67 +462,53 @@ public class ViewStoreReader implements AutoCloseable {
                 .map(column -> column.name)
                 .filter(joinView.include::contains)
                 .collect(Collectors.toList());
-        var valueSetQueries = prepareValueSetQueries(joinView.view, valueSetProperties);
         var joinTable = configuration.joinTables.get(view).get(joinView.view);
         var projectionColumns = Stream.concat(
                 Stream.of("id", "label"),
                 joinView.include.stream()
                         .filter(column -> !valueSetProperties.contains(column)))
                 .collect(Collectors.toList());
-        var query = connection.prepareStatement(
-                "select " + projectionColumns.stream().map(String::toLowerCase).collect(Collectors.joining(", ")) +
+        var joinedRows = new LinkedHashMap<String, Map<String, Set<ValueDTO>>>();
+        try (var query = connection.prepareStatement(
+                "select jt." + idColumn(view).name + ", " +
+                        projectionColumns.stream().map(column -> "j." + column.toLowerCase()).collect(Collectors.joining(", ")) +
                         " from " + joinedTable.name + " j " +
-                        " where exists (" +
-                        "   select * from " + joinTable.name + " jt " +
-                        "   where jt." + idColumn(joinView.view).name + " = j.id" +
-                        "   and jt." + idColumn(view).name + " = ? )"
-        );
-        query.setString(1, id);
-        var result = query.executeQuery();
-        List<Map<String, Set<ValueDTO>>> rows = new ArrayList<>();
-        while (result.next()) {
-            Map<String, Set<ValueDTO>> row = new HashMap<>();
-            row.put(joinView.view, Collections.singleton(new ValueDTO(result.getString("label"), result.getString("id"))));
-            for (var column : projectionColumns) {
-                var columnName = joinView.view + "_" + column;
-                var columnDefinition = configuration.viewTables.get(joinView.view).getColumns().stream()
-                        .filter(c -> c.getName().equalsIgnoreCase(column))
-                        .findFirst().orElseThrow(() -> {
-                            throw new NoSuchElementException("Cannot find column " + column);
-                        });
-                if (columnDefinition.type == ColumnType.Number) {
-                    var value = result.getBigDecimal(columnDefinition.name);
-                    if (value != null) {
-                        row.put(columnName, Collections.singleton(new ValueDTO(value.toString(), value)));
-                    }
-                } else if (columnDefinition.type == Date) {
-                    var value = result.getTimestamp(columnDefinition.name);
-                    if (value != null) {
-                        row.put(columnName, Collections.singleton(new ValueDTO(value.toInstant().toString(), value.toString())));
-                    }
-                } else {
-                    var label = result.getString(columnDefinition.name);
-                    row.put(columnName, Collections.singleton(new ValueDTO(label, label)));
+                        " join " + joinTable.name + " jt " +
+                        " on jt." + idColumn(joinView.view).name + " = j.id" +
+                        " where jt." + idColumn(view).name + " in ( " + placeholders(ids.size()) + " )"
+        )) {
+            var index = 1;
+            for (var id : ids) {
+                query.setString(index++, id);
+            }
+            var result = query.executeQuery();
+            while (result.next()) {
+                var joinedId = result.getString("id");
+                var row = joinedRows.get(joinedId);
+                if (row == null) {
+                    row = transformJoinedRow(joinView, projectionColumns, result);
+                    joinedRows.put(joinedId, row);
                 }
+                joinedRowsById.computeIfAbsent(result.getString(1), id -> new ArrayList<>()).add(row);
             }
-            addValueSetValues(joinView.view, row, valueSetProperties, valueSetQueries);
-            rows.add(row);
         }
-        for (var q : valueSetQueries.values()) {
-            q.close();
+        var valueSets = retrieveValueSets(joinView.view, valueSetProperties, joinedRows.keySet());
+        for (var row : joinedRows.values()) {
+            addValueSetValues(joinView.view, row, valueSetProperties, valueSets);
         }
-        query.close();
-        return rows;
+        return joinedRowsById;
     }
 
     /**
      * Compute the range of numerical or date values in a column of a view.
      *
-     * @param view   the view name.
-     * @param column the column name.
+     * @param view        the view name.
+     * @param column      the column name.
+     * @param collections if not null, only rows of resources in these collections are included.
+     *                    Only supported for the Resource view.
      * @return a range object containing the minimum and maximum values.
      */
-    public Range aggregate(String view, String column) {
+    public Range aggregate(String view, String column, List<String> collections) {
         var viewConfig = configuration.viewConfig.get(view);
         if (viewConfig == null) {
             throw new IllegalArgumentException("View not supported: " + view);
@@ -448,10 +522,19 @@ public class ViewStoreReader implements AutoCloseable {
         if (!EnumSet.of(Date, ColumnType.Number).contains(columnDefinition.type)) {
             throw new IllegalArgumentException("Aggregation only supported for numerical and date columns");
         }
+        if (collections != null && collections.isEmpty()) {
+            return null;
+        }
         try (PreparedStatement query = connection.prepareStatement(
                 "select min(" + columnDefinition.name + ") as min, max(" + columnDefinition.name + ") as max" +
-                        " from " + table.name
+                        " from " + table.name +
+                        (collections == null ? "" : " where collection in (" + placeholders(collections.size()) + ")")
         )) {
+            if (collections != null) {
+                for (int i = 0; i < collections.size(); i++) {
+                    query.setString(i + 1, collections.get(i));
+                }
+            }
             var result = query.executeQuery();
             if (!result.next()) {
                 return null;
@@ -471,6 +554,64 @@ public class ViewStoreReader implements AutoCloseable {
         }
     }
 
+    /**
+     * Retrieves the distinct terms used as values of a term (set) column, ordered by label.
+     * Term values are stored by label, the identifiers of the terms are taken from the label table.
+     * Deleted terms are skipped. As the labels of the terms of a type are unique among the terms that are not deleted,
+     * every value resolves to a single term.
+     *
+     * @param collections if not null, only values of resources in these collections are included.
+     *                    Only supported for the Resource view.
+     */
+    public List<ValueDTO> termValues(String view, String column, List<String> collections) {
+        var viewConfig = configuration.viewConfig.get(view);
+        if (viewConfig == null) {
+            throw new IllegalArgumentException("View not supported: " + view);
+        }
+        var columnDefinition = viewConfig.columns.stream()
+                .filter(c -> c.name.equalsIgnoreCase(column))
+                .findFirst().orElseThrow(() -> {
+                    throw new NoSuchElementException("Cannot find column " + column);
+                });
+        if (!EnumSet.of(ColumnType.Term, ColumnType.TermSet).contains(columnDefinition.type)) {
+            throw new IllegalArgumentException("Term values only supported for term columns");
+        }
+        var table = columnDefinition.type.isSet()
+                ? configuration.propertyTables.get(view).get(columnDefinition.name)
+                : configuration.viewTables.get(view);
+        var columnName = columnDefinition.name.toLowerCase();
+        if (collections != null && collections.isEmpty()) {
+            return List.of();
+        }
+        var queryString = "select distinct l.id, l.label from label l join " + table.name + " v on v." + columnName + " = l.label";
+        var rowAlias = "v";
+        if (collections != null && columnDefinition.type.isSet()) {
+            queryString += " join " + configuration.viewTables.get(view).name + " r on r.id = v." + idColumn(view).name;
+            rowAlias = "r";
+        }
+        queryString += " where l.type = ? and l.deleted is null";
+        if (collections != null) {
+            queryString += " and " + rowAlias + ".collection in (" + placeholders(collections.size()) + ")";
+        }
+        queryString += " order by l.label, l.id";
+        try (var query = connection.prepareStatement(queryString)) {
+            query.setString(1, columnDefinition.rdfType);
+            if (collections != null) {
+                for (int i = 0; i < collections.size(); i++) {
+                    query.setString(i + 2, collections.get(i));
+                }
+            }
+            var result = query.executeQuery();
+            var values = new ArrayList<ValueDTO>();
+            while (result.next()) {
+                values.add(new ValueDTO(result.getString("label"), result.getString("id")));
+            }
+            return values;
+        } catch (SQLException e) {
+            throw new QueryException("Error retrieving term values", e);
+        }
+    }
+
     /**
      * Reads rows from a view table after applying the specified filters.
      * A row is represented as a map from column name to the set of values,
@@ -489,6 +630,32 @@ public class ViewStoreReader implements AutoCloseable {
             int offset,
             int limit,
             boolean includeJoinedViews
+    ) throws SQLTimeoutException {
+        return retrieveRows(view, filters, null, offset, limit, includeJoinedViews);
+    }
+
+    /**
+     * Reads the rows following the row with the specified identifier, in the order of identifiers.
+     * Unlike {@link #retrieveRows(String, List, int, int, boolean)}, the cost does not depend on the position
+     * of the page in the view, as the primary key index is used to find the first row of the page.
+     *
+     * @param after the identifier of the last row of the previous page, or null for the first page.
+     */
+    public List<Map<String, Set<ValueDTO>>> retrieveRowsAfter(
+            String view, List<ViewFilter> filters,
+            String after,
+            int limit,
+            boolean includeJoinedViews
+    ) throws SQLTimeoutException {
+        return retrieveRows(view, filters, after, 0, limit, includeJoinedViews);
+    }
+
+    private List<Map<String, Set<ValueDTO>>> retrieveRows(
+            String view, List<ViewFilter> filters,
+            String after,
+            int offset,
+            int limit,
+            boolean includeJoinedViews
     ) throws SQLTimeoutException {
         try {
             var viewConfig = configuration.viewConfig.get(view);
@@ -496,13 +663,17 @@ public class ViewStoreReader implements AutoCloseable {
                 throw new IllegalArgumentException("View not supported: " + view);
             }
             // Fetch rows with columns from the view table
-            var rows = this.retrieveViewTableRows(view, filters, offset, limit);
+            var rows = this.retrieveViewTableRows(view, filters, after, offset, limit);
             // Add items from join tables
             if (includeJoinedViews) {
+                var ids = rows.stream()
+                        .map(row -> (String) row.get(view).stream().findFirst().orElseThrow().getValue())
+                        .collect(Collectors.toList());
                 for (var joinView : viewConfig.join) {
+                    var joinedRowsById = this.retrieveJoinTableRows(view, joinView, ids);
                     for (var row : rows) {
                         var id = (String) row.get(view).stream().findFirst().orElseThrow().getValue();
-                        for (var joinTableRow : this.retrieveJoinTableRows(view, joinView, id)) {
+                        for (var joinTableRow : joinedRowsById.getOrDefault(id, Collections.emptyList())) {
                             joinTableRow.forEach((key, values) -> {
                                 if (!row.containsKey(key)) {
                                     row.put(key, new LinkedHashSet<>());
@@ -529,7 +700,7 @@ public class ViewStoreReader implements AutoCloseable {
      */
     public long countRows(String view, List<ViewFilter> filters) throws SQLTimeoutException {
         try (var q = query(view, "count(*) as rowCount", filters, null)) {
-            q.setQueryTimeout((int) searchConfig.countRequestTimeout);
+            q.setQueryTimeout(seconds(searchConfig.countRequestTimeout));
             var result = q.executeQuery();
             result.next();
             return result.getLong("rowCount");
@@ -540,40 +711,78 @@ public class ViewStoreReader implements AutoCloseable {
         }
     }
 
+    /**
+     * Estimates the number of rows matching the filters, based on the statistics of the query planner.
+     *
+     * @return the estimated number of rows, or null if the database does not provide estimates.
+     */
+    public Long estimateRows(String view, List<ViewFilter> filters) {
+        if (ViewStoreClientFactory.H2_DATABASE) {
+            return null;
+        }
+        try (var q = query(true, view, "id", filters, null, null)) {
+            var result = q.executeQuery();
+            if (!result.next()) {
+                return null;
+            }
+            var plan = new ObjectMapper().readTree(result.getString(1)).path(0).path("Plan").path("Plan Rows");
+            return plan.isNumber() ? plan.asLong() : null;
+        } catch (SQLException | JsonProcessingException e) {
+            log.warn("Error estimating the number of rows", e);
+            return null;
+        }
+    }
+
+    /**
+     * Orders matches by relevance: exact matches first, then matches on a prefix of the label,
+     * then (if trigram search is available) by similarity of the label to the query.
+     * Adds the values of the placeholders to the list.
+     */
+    private String relevance(String query, List<String> values) {
+        var normalised = query.trim().toLowerCase();
+        values.add(normalised);
+        values.add(escapeLikeString(normalised) + "%");
+        var ranking = "lower(label) = ? desc, lower(label) like ? escape '\\' desc, ";
+        if (configuration.trigramSearch) {
+            values.add(normalised);
+            ranking += "similarity(lower(label), ?) desc, ";
+        }
+        return ranking;
+    }
+
+    /**
+     * Searches files, directories and collections by label or description.
+     * With the pg_trgm extension of PostgreSQL, the substring matches are answered from trigram indexes.
+     */
     public List<SearchResultDTO> searchFiles(FileSearchRequest request, List<String> userCollections) {
         if (userCollections == null || userCollections.isEmpty()) {
             return Collections.emptyList();
         }
 
-        var searchString = "%" + escapeLikeString(request.getQuery().toLowerCase()) + "%";
+        var searchString = "%" + escapeLikeString(request.getQuery().trim().toLowerCase()) + "%";
 
-        ArrayList<String> values = new ArrayList<String>();
+        var values = new ArrayList<String>();
         values.add(searchString);
         values.add(searchString);
         values.addAll(userCollections);
+        var idConstraint = "";
+        if (!StringUtils.isBlank(request.getParentIRI())) {
+            values.add(escapeLikeString(request.getParentIRI()) + "%");
+            idConstraint = "and id like ? escape '\\' ";
+        }
 
-        var collectionPlaceholders = userCollections
-                .stream()
-                .map(uc -> "?")
-                .collect(Collectors.toList());
-        var collectionConstraint = "and collection in (" + String.join(", ",collectionPlaceholders) + ") ";
-
-        var idConstraint = StringUtils.isBlank(request.getParentIRI()) ? "" :
-                "and id like '" + escapeLikeString(request.getParentIRI()) + "%' ";
-
-        var queryString = new StringBuilder()
-                .append("select id, label, description, type FROM resource ")
-                .append("where (label ilike ? OR description ilike ?) ")
-                .append(collectionConstraint)
-                .append(idConstraint)
-                .append("order by id asc limit 1000");
+        var queryString = "select id, label, description, type from resource " +
+                "where (lower(label) like ? escape '\\' or lower(description) like ? escape '\\') " +
+                "and collection in (" + placeholders(userCollections.size()) + ") " +
+                idConstraint +
+                "order by " + relevance(request.getQuery(), values) + "id asc limit " + MAX_SEARCH_RESULTS;
 
-        try (var statement = connection.prepareStatement(queryString.toString())) {
-            for(int i = 0; i< values.size(); i++) {
+        try (var statement = connection.prepareStatement(queryString)) {
+            for (int i = 0; i < values.size(); i++) {
                 statement.setString(i + 1, values.get(i));
             }
 
-            statement.setQueryTimeout((int) searchConfig.pageRequestTimeout);
+            statement.setQueryTimeout(seconds(searchConfig.pageRequestTimeout));
 
             var result = statement.executeQuery();
             return convertResult(result);
@@ -584,6 +793,70 @@ public class ViewStoreReader implements AutoCloseable {
         }
     }
 
+    /**
+     * @return the name of the view indexing only entities of the given type, together with their descriptions
+     * (a text column with rdfs:comment as its source), or null if there is no such view.
+     */
+    public String viewForType(String type) {
+        return configuration.viewConfig.values().stream()
+                .filter(view -> view.types.size() == 1 && view.types.get(0).equals(type))
+                .filter(view -> descriptionColumn(view) != null)
+                .map(view -> view.name)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String descriptionColumn(View view) {
+        return view.columns.stream()
+                .filter(column -> column.type == ColumnType.Text && RDFS.comment.getURI().equals(column.source))
+                .map(column -> column.name.toLowerCase())
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Searches the rows of a view by label or description, ordered by relevance.
+     * The view must have a description column, see {@link #viewForType}.
+     */
+    public List<SearchResultDTO> searchLabels(String view, String query, int offset, int limit) {
+        var viewTable = configuration.viewTables.get(view);
+        if (viewTable == null) {
+            throw new IllegalArgumentException("View not supported: " + view);
+        }
+        var viewConfig = configuration.viewConfig.get(view);
+        var description = descriptionColumn(viewConfig);
+        if (description == null) {
+            throw new IllegalArgumentException("View has no description column: " + view);
+        }
+        var type = viewConfig.types.get(0);
+        var values = new ArrayList<String>();
+        var pattern = "%" + escapeLikeString(query.trim().toLowerCase()) + "%";
+        values.add(pattern);
+        values.add(pattern);
+        var queryString = "select id, label, " + description + " from " + viewTable.name +
+                " where (lower(label) like ? escape '\\' or lower(" + description + ") like ? escape '\\')" +
+                " order by " + relevance(query, values) + "label, id limit " + limit + " offset " + offset;
+        try (var statement = connection.prepareStatement(queryString)) {
+            for (int i = 0; i < values.size(); i++) {
+                statement.setString(i + 1, values.get(i));
+            }
+            statement.setQueryTimeout(seconds(searchConfig.pageRequestTimeout));
+            var result = statement.executeQuery();
+            var rows = new ArrayList<SearchResultDTO>();
+            while (result.next()) {
+                rows.add(SearchResultDTO.builder()
+                        .id(result.getString("id"))
+                        .label(result.getString("label"))
+                        .comment(result.getString(description))
+                        .type(type)
+                        .build());
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new QueryException("Error searching labels", e);
+        }
+    }
+
     @SneakyThrows
     private List<SearchResultDTO> convertResult(ResultSet resultSet) {
         var rows = new ArrayList<SearchResultDTO>();
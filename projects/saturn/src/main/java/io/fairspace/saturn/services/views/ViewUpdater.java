@@ -5,6 +5,7 @@ import io.fairspace.saturn.rdf.*;
 import io.fairspace.saturn.vocabulary.*;
 import lombok.extern.slf4j.*;
 import org.apache.commons.lang3.tuple.*;
+import org.apache.jena.datatypes.xsd.*;
 import org.apache.jena.graph.*;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
@@ -28,14 +29,34 @@ import static io.fairspace.saturn.services.views.ViewStoreClientFactory.protecte
 
 @Slf4j
 public class ViewUpdater implements AutoCloseable {
+    private static final int BULK_BATCH_SIZE = 5000;
+    // Types of the terms used in term (set) columns
+    private static final Set<String> TERM_TYPES = VIEWS_CONFIG.views.stream()
+            .flatMap(view -> view.columns.stream())
+            .filter(column -> column.type == ViewsConfig.ColumnType.Term || column.type == ViewsConfig.ColumnType.TermSet)
+            .map(column -> column.rdfType)
+            .collect(Collectors.toSet());
+
     private final ViewStoreClient viewStoreClient;
     private final DatasetGraph dsg;
     private final Graph graph;
+    // Terms for which a label has been added, shared by updaters running concurrently
+    private final Set<String> labelledTerms;
 
     public ViewUpdater(ViewStoreClient viewStoreClient, DatasetGraph dsg) {
+        this(viewStoreClient, dsg, null);
+    }
+
+    /**
+     * @param labelledTerms if not null, the label of a term is only added by the first updater
+     *                      adding the term to the set, to avoid conflicting label inserts
+     *                      from concurrent database transactions.
+     */
+    public ViewUpdater(ViewStoreClient viewStoreClient, DatasetGraph dsg, Set<String> labelledTerms) {
         this.viewStoreClient = viewStoreClient;
         this.dsg = dsg;
         this.graph = dsg.getDefaultGraph();
+        this.labelledTerms = labelledTerms;
     }
 
     @Override
@@ -88,11 +109,7 @@ public class ViewUpdater implements AutoCloseable {
                     throw new SQLException("Failed to parse date value.", e);
                 }
             }
-            case Term, TermSet -> {
-                var label = getLabel(graph, node);
-                viewStoreClient.addLabel(node.getURI(), column.rdfType, label);
-                yield label;
-            }
+            case Term, TermSet -> addTermLabel(column, node);
             default -> {
                 if (node.isLiteral()) {
                     yield node.getLiteralValue().toString();
@@ -103,6 +120,32 @@ public class ViewUpdater implements AutoCloseable {
         };
     }
 
+    /**
+     * Adds the label of a term to the view database, marking the term if it is deleted.
+     *
+     * @return the label of the term.
+     */
+    private String addTermLabel(ViewsConfig.View.Column column, Node term) throws SQLException {
+        var label = getLabel(graph, term);
+        if (labelledTerms == null || labelledTerms.add(term.getURI())) {
+            viewStoreClient.addLabel(term.getURI(), column.rdfType, label);
+            var deleted = getDateDeleted(term);
+            if (deleted != null) {
+                viewStoreClient.setTermDeleted(term.getURI(), deleted);
+            }
+        }
+        return label;
+    }
+
+    private Instant getDateDeleted(Node subject) {
+        return graph.find(subject, FS.dateDeleted.asNode(), Node.ANY)
+                .mapWith(triple -> triple.getObject().getLiteralValue())
+                .mapWith(value -> value instanceof XSDDateTime
+                        ? ((XSDDateTime) value).asCalendar().toInstant()
+                        : Instant.now())
+                .nextOptional().orElse(null);
+    }
+
     /**
      * If the subject is a protected resource, add the collection name to the row.
      * @param type The type IRI
@@ -136,6 +179,13 @@ public class ViewUpdater implements AutoCloseable {
         var start = new Date().getTime();
         var type = typeNode.get().getObject();
         log.debug("Subject {} of type {}", subject.getURI(), type.getLocalName());
+        if (TERM_TYPES.contains(type.getURI())) {
+            try {
+                viewStoreClient.setTermDeleted(subject.getURI(), getDateDeleted(subject));
+            } catch (SQLException e) {
+                log.error("Failed to update the deletion state of a term", e);
+            }
+        }
         VIEWS_CONFIG.views.stream().filter(view -> view.types.contains(type.getURI())).forEach(view -> {
             if (graph.find(subject, FS.dateDeleted.asNode(), Node.ANY).hasNext()) {
                 log.debug("Deleting entity {} of type {} from view {}", subject.getURI(), type.getLocalName(), view.name);
@@ -176,9 +226,7 @@ public class ViewUpdater implements AutoCloseable {
                         var values = new HashSet<String>();
                         for (var term: objects) {
                             if (column.type == ViewsConfig.ColumnType.TermSet) {
-                                var label = getLabel(graph, term);
-                                viewStoreClient.addLabel(term.getURI(), column.rdfType, label);
-                                values.add(label);
+                                values.add(addTermLabel(column, term));
                             } else {
                                 values.add(term.getLiteralValue().toString());
                             }
@@ -218,25 +266,6 @@ public class ViewUpdater implements AutoCloseable {
         log.debug("Updating subject of type {} took {}ms", type.getLocalName(), new Date().getTime() - start);
     }
 
-    public void recreateIndexForView(ViewStoreClient viewStoreClient, ViewsConfig.View view) throws SQLException {
-        // Clear database tables for view
-        viewStoreClient.truncateViewTables(view.name);
-        for (String type : view.types) {
-            copyValuesForType(view, type);
-            var valueSetColumns = view.columns.stream()
-                    .filter(column -> column.type.isSet())
-                    .collect(Collectors.toList());
-            for (var valueSetColumn: valueSetColumns) {
-                copyValueSetsForColumn(view, type, valueSetColumn);
-            }
-            for (var join: view.join) {
-                if (!join.reverse) {
-                    copyLinks(view, type, join);
-                }
-            }
-        }
-    }
-
     private Map<String, Object> transformResult(
             String type, List<ViewsConfig.View.Column> columns, QuerySolution result) throws SQLException {
         var values = new HashMap<String, Object>();
@@ -257,12 +286,13 @@ public class ViewUpdater implements AutoCloseable {
      * Copy rows of values for a specified type to the view database in bulk.
      *
      * All simple values (no value sets) for the type are queried and the rows are inserted
-     * into the view database in batches of 1000 rows.
+     * into the view database in batches of 5000 rows.
      *
      * @param view The view for which to update the values.
      * @param type The subject type (for when the view includes multiple types)
+     * @return the number of inserted rows.
      */
-    public void copyValuesForType(ViewsConfig.View view, String type) throws SQLException {
+    public int copyValuesForType(ViewsConfig.View view, String type) throws SQLException {
         var columns = view.columns.stream()
                 .filter(column -> !column.type.isSet())
                 .collect(Collectors.toList());
@@ -291,8 +321,8 @@ public class ViewUpdater implements AutoCloseable {
             try {
                 rows.add(transformResult(type, columns, q));
                 // copy in chunks to the view database
-                if (rows.size() == 1000) {
-                    updateCount[0] += viewStoreClient.updateRows(view.name, rows, true);
+                if (rows.size() == BULK_BATCH_SIZE) {
+                    updateCount[0] += viewStoreClient.copyRows(view.name, rows);
                     rows.clear();
                 }
             } catch (SQLException e) {
@@ -304,21 +334,23 @@ public class ViewUpdater implements AutoCloseable {
             throw error.get();
         }
         // copy any remaining items to the view database
-        updateCount[0] += viewStoreClient.updateRows(view.name, rows, true);
+        updateCount[0] += viewStoreClient.copyRows(view.name, rows);
         log.debug("Inserted {} rows for view {}", updateCount[0], view.name);
+        return updateCount[0];
     }
 
     /**
      * Copy value sets for a specified type and property to the view database in bulk.
      *
      * All values for the type and property are queried and the (subject, value) tuples are inserted
-     * into the view database in batches of 1000 tuples.
+     * into the view database in batches of 5000 tuples.
      *
      * @param view The view for which to update the value set property.
      * @param type The subject type (for when the view includes multiple types)
      * @param column The view column of value set property.
+     * @return the number of inserted tuples.
      */
-    public void copyValueSetsForColumn(ViewsConfig.View view, String type, ViewsConfig.View.Column column) throws SQLException {
+    public int copyValueSetsForColumn(ViewsConfig.View view, String type, ViewsConfig.View.Column column) throws SQLException {
         var property = column.name;
         var propertyTable = viewStoreClient.configuration.propertyTables.get(view.name).get(property);
         var idColumn = idColumn(view.name);
@@ -343,8 +375,8 @@ public class ViewUpdater implements AutoCloseable {
                         getValue(column, q.get(column.name).asNode()).toString())
                 );
                 // copy in chunks to the view database
-                if (rows.size() == 1000) {
-                    updateCount[0] += viewStoreClient.insertValues(propertyTable, idColumn, propertyColumn, rows);
+                if (rows.size() == BULK_BATCH_SIZE) {
+                    updateCount[0] += viewStoreClient.copyValues(propertyTable, idColumn, propertyColumn, rows);
                     rows.clear();
                 }
             } catch (SQLException e) {
@@ -356,21 +388,23 @@ public class ViewUpdater implements AutoCloseable {
             throw error.get();
         }
         // copy any remaining items to the view database
-        updateCount[0] += viewStoreClient.insertValues(propertyTable, idColumn, propertyColumn, rows);
+        updateCount[0] += viewStoreClient.copyValues(propertyTable, idColumn, propertyColumn, rows);
         log.debug("Inserted {} rows for property {} of view {}", updateCount[0], column.name, view.name);
+        return updateCount[0];
     }
 
     /**
      * Copy view join links for a specified type and join relation to the view database in bulk.
      *
      * All join links for the type and join relation are queried and the (source, target) tuples are inserted
-     * into the view database in batches of 1000 tuples.
+     * into the view database in batches of 5000 tuples.
      *
      * @param view The view for which to update the join links.
      * @param type The subject type (for when the view includes multiple types)
      * @param join The join relation.
+     * @return the number of inserted tuples.
      */
-    public void copyLinks(ViewsConfig.View view, String type, ViewsConfig.View.JoinView join) throws SQLException {
+    public int copyLinks(ViewsConfig.View view, String type, ViewsConfig.View.JoinView join) throws SQLException {
         var joinTable = viewStoreClient.configuration.joinTables.get(view.name).get(join.view);
         var idColumn = idColumn(view.name);
         var joinColumn = idColumn(join.view);
@@ -394,8 +428,8 @@ public class ViewUpdater implements AutoCloseable {
                         q.getResource("target").getURI()
                 ));
                 // copy in chunks to the view database
-                if (rows.size() == 1000) {
-                    updateCount[0] += viewStoreClient.insertValues(joinTable, idColumn, joinColumn, rows);
+                if (rows.size() == BULK_BATCH_SIZE) {
+                    updateCount[0] += viewStoreClient.copyValues(joinTable, idColumn, joinColumn, rows);
                     rows.clear();
                 }
             } catch (SQLException e) {
@@ -407,7 +441,8 @@ public class ViewUpdater implements AutoCloseable {
             throw error.get();
         }
         // copy any remaining items to the view database
-        updateCount[0] += viewStoreClient.insertValues(joinTable, idColumn, joinColumn, rows);
+        updateCount[0] += viewStoreClient.copyValues(joinTable, idColumn, joinColumn, rows);
         log.debug("Inserted {} rows for join of view {} with view {}", updateCount[0], view.name, join.view);
+        return updateCount[0];
     }
 }
@@ -2,8 +2,8 @@ package io.fairspace.saturn.services.workspaces;
 
 import io.fairspace.saturn.rdf.dao.DAO;
 import io.fairspace.saturn.rdf.transactions.Transactions;
+import io.fairspace.saturn.rdf.transactions.TxnListenerDatasetGraph;
 import io.fairspace.saturn.services.AccessDeniedException;
-import io.fairspace.saturn.services.users.User;
 import io.fairspace.saturn.services.users.UserService;
 import io.fairspace.saturn.vocabulary.FS;
 import lombok.extern.log4j.*;
@@ -13,6 +13,7 @@ import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,43 +29,45 @@ import static java.util.stream.Collectors.toList;
 public class WorkspaceService {
     private final Transactions tx;
     private final UserService userService;
+    private final WorkspaceSummaryIndex summaryIndex;
 
     public WorkspaceService(Transactions tx, UserService userService) {
+        this(tx, userService, null);
+    }
+
+    /**
+     * @param txnListeners if set, workspace summaries are maintained incrementally, from the committed changes.
+     */
+    public WorkspaceService(Transactions tx, UserService userService, TxnListenerDatasetGraph txnListeners) {
         this.tx = tx;
         this.userService = userService;
+        if (txnListeners != null) {
+            summaryIndex = new WorkspaceSummaryIndex(txnListeners);
+            txnListeners.addListener(summaryIndex);
+        } else {
+            summaryIndex = null;
+        }
     }
 
     public List<Workspace> listWorkspaces() {
+        var position = summaryIndex != null ? summaryIndex.position() : -1;
         return tx.calculateRead(m -> {
             var user = m.wrapAsResource(getUserURI());
+            var currentUser = userService.currentUser();
+            var summaries = position >= 0 ? summaryIndex.summaries(m, position) : Map.<Node, WorkspaceSummaryIndex.Entry>of();
             return new DAO(m).list(Workspace.class)
                     .stream()
                     .peek(ws -> {
                         var res = m.wrapAsResource(ws.getIri());
-                        ws.setCanManage(userService.currentUser().isAdmin() || user.hasProperty(FS.isManagerOf, res));
+                        ws.setCanManage(currentUser.isAdmin() || user.hasProperty(FS.isManagerOf, res));
                         ws.setCanCollaborate(ws.isCanManage() || user.hasProperty(FS.isMemberOf, res));
-                        var workspaceCollections = m
-                                .listSubjectsWithProperty(FS.ownedBy, res)
-                                .filterKeep(r -> r.hasProperty(RDF.type, FS.Collection))
-                                .toList();
-                        var totalCollectionCount = workspaceCollections.size();
-                        var nonDeletedCollectionCount = (int) workspaceCollections.stream()
-                                .filter(collection -> !collection.hasProperty(FS.dateDeleted))
-                                .count();
-                        var memberCount = m
-                                .listSubjectsWithProperty(RDF.type, FS.User)
-                                .filterKeep(u -> u.hasProperty(FS.isMemberOf, res))
-                                .toList().size();
-                        var managers = new DAO(m).list(User.class).stream()
-                                .filter(u -> m.wrapAsResource(u.getIri()).hasProperty(FS.isManagerOf, res))
-                                .collect(toList());
-                        ws.setSummary(WorkspaceSummary.builder()
-                                .totalCollectionCount(totalCollectionCount)
-                                .nonDeletedCollectionCount(nonDeletedCollectionCount)
-                                .memberCount(memberCount + managers.size())
-                                .build());
-                        ws.setManagers(managers);
-                    }).filter(ws -> userService.currentUser().isCanViewPublicMetadata() || ws.isCanManage() || ws.isCanCollaborate())
+                        var entry = summaries.get(ws.getIri());
+                        if (entry == null) {
+                            entry = WorkspaceSummaryIndex.compute(m, res);
+                        }
+                        ws.setSummary(entry.toSummary());
+                        ws.setManagers(new ArrayList<>(entry.getManagers()));
+                    }).filter(ws -> currentUser.isCanViewPublicMetadata() || ws.isCanManage() || ws.isCanCollaborate())
                     .collect(toList());
         });
     }
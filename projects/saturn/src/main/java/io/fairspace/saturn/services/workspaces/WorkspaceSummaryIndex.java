@@ -0,0 +1,215 @@
+package io.fairspace.saturn.services.workspaces;
+
+import io.fairspace.saturn.rdf.dao.DAO;
+import io.fairspace.saturn.rdf.transactions.CommitListener;
+import io.fairspace.saturn.services.users.User;
+import io.fairspace.saturn.vocabulary.FS;
+import lombok.Value;
+import lombok.extern.log4j.*;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Summaries of workspaces (collection counts, member count and managers), maintained incrementally.
+ * <p>
+ * All summaries are computed when they are requested for the first time.
+ * Afterwards, committed changes of collections, users and workspaces, including changes of workspace roles,
+ * are queued, and only the summaries of the workspaces affected by them are computed again when requested next.
+ * A change is applied by a read transaction only if it was queued before that transaction began,
+ * so that a summary is never computed from a snapshot which predates a change it should reflect.
+ * <p>
+ * The queue is bounded: if more than {@link #MAX_QUEUED_CHANGES} changes are queued, e.g., because summaries are
+ * not requested for a long time, the queued changes are dropped, and all summaries are computed again when requested next.
+ */
+@Log4j2
+class WorkspaceSummaryIndex implements CommitListener {
+    private static final Set<Node> TYPES = Set.of(FS.Collection.asNode(), FS.User.asNode(), FS.Workspace.asNode());
+    static final int MAX_QUEUED_CHANGES = 10_000;
+
+    @Value
+    static class Entry {
+        int totalCollectionCount;
+        int nonDeletedCollectionCount;
+        int memberCount;
+        List<User> managers;
+        // The collections, members and managers of the workspace
+        Set<Node> related;
+
+        WorkspaceSummary toSummary() {
+            return WorkspaceSummary.builder()
+                    .totalCollectionCount(totalCollectionCount)
+                    .nonDeletedCollectionCount(nonDeletedCollectionCount)
+                    .memberCount(memberCount)
+                    .build();
+        }
+    }
+
+    @Value
+    private static class Change {
+        Node subject;
+        long position;
+    }
+
+    private final DatasetGraph dsg;
+    private final int maxQueuedChanges;
+    private final AtomicLong position = new AtomicLong();
+    private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    // The approximate size of the queue, as the size of a concurrent queue is expensive to compute
+    private final AtomicInteger queued = new AtomicInteger();
+    // Guarded by this
+    private final Map<Node, Entry> entries = new HashMap<>();
+    private final Map<Node, Set<Node>> workspacesOf = new HashMap<>();
+    private boolean built;
+    // The position of the last dropped change, or 0 if all summaries reflect the dropped changes
+    private long droppedUpTo;
+
+    WorkspaceSummaryIndex(DatasetGraph dsg) {
+        this(dsg, MAX_QUEUED_CHANGES);
+    }
+
+    WorkspaceSummaryIndex(DatasetGraph dsg, int maxQueuedChanges) {
+        this.dsg = dsg;
+        this.maxQueuedChanges = maxQueuedChanges;
+    }
+
+    @Override
+    public void onCommit(Map<Node, Set<Node>> subjectTypes) {
+        subjectTypes.forEach((subject, types) -> {
+            if (types.stream().anyMatch(TYPES::contains)) {
+                changes.add(new Change(subject, position.incrementAndGet()));
+                queued.incrementAndGet();
+            }
+        });
+        if (queued.get() > maxQueuedChanges) {
+            dropChanges();
+        }
+    }
+
+    /**
+     * Drops the queued changes, so that all summaries are computed again when requested next.
+     */
+    private synchronized void dropChanges() {
+        if (queued.get() <= maxQueuedChanges) {
+            return;
+        }
+        var upTo = position.get();
+        changes.removeIf(change -> change.position <= upTo);
+        queued.set(changes.size());
+        droppedUpTo = upTo;
+        log.debug("Dropped the queued changes up to position {}, all workspace summaries will be computed again", upTo);
+    }
+
+    /**
+     * @return the approximate number of queued changes
+     */
+    int queuedChanges() {
+        return queued.get();
+    }
+
+    /**
+     * Must be called before beginning the read transaction passed to {@link #summaries}.
+     *
+     * @return the position in the change queue, or -1 if the index cannot be used by the current thread,
+     * because it is in a transaction already (its snapshot may be older, or contain uncommitted changes).
+     */
+    long position() {
+        return dsg.isInTransaction() ? -1 : position.get();
+    }
+
+    /**
+     * @param model    the model of a read transaction
+     * @param position the result of {@link #position()}, obtained before beginning the transaction
+     * @return the summaries by workspace. Workspaces created after the last applied change may be missing.
+     */
+    synchronized Map<Node, Entry> summaries(Model model, long position) {
+        if (!built || droppedUpTo > 0) {
+            changes.removeIf(change -> change.position <= position);
+            queued.set(changes.size());
+            entries.clear();
+            workspacesOf.clear();
+            model.listSubjectsWithProperty(RDF.type, FS.Workspace)
+                    .forEachRemaining(ws -> update(model, ws.asNode()));
+            built = true;
+            // Changes dropped after the transaction began may not be reflected by its snapshot
+            if (droppedUpTo <= position) {
+                droppedUpTo = 0;
+            }
+            log.debug("Computed summaries of {} workspaces", entries.size());
+            return Map.copyOf(entries);
+        }
+
+        var affected = new HashSet<Node>();
+        for (var it = changes.iterator(); it.hasNext(); ) {
+            var change = it.next();
+            if (change.position > position) {
+                continue;
+            }
+            it.remove();
+            queued.decrementAndGet();
+            affected.addAll(workspacesOf.getOrDefault(change.subject, Set.of()));
+            var subject = model.wrapAsResource(change.subject);
+            if (entries.containsKey(change.subject) || subject.hasProperty(RDF.type, FS.Workspace)) {
+                affected.add(change.subject);
+            }
+            subject.listProperties(FS.ownedBy)
+                    .andThen(subject.listProperties(FS.isMemberOf))
+                    .andThen(subject.listProperties(FS.isManagerOf))
+                    .mapWith(stmt -> stmt.getObject().asNode())
+                    .forEachRemaining(affected::add);
+        }
+        affected.forEach(ws -> update(model, ws));
+        return Map.copyOf(entries);
+    }
+
+    private void update(Model model, Node ws) {
+        var old = entries.remove(ws);
+        if (old != null) {
+            old.related.forEach(node -> {
+                var workspaces = workspacesOf.get(node);
+                if (workspaces != null && workspaces.remove(ws) && workspaces.isEmpty()) {
+                    workspacesOf.remove(node);
+                }
+            });
+        }
+        var res = model.wrapAsResource(ws);
+        if (!res.hasProperty(RDF.type, FS.Workspace)) {
+            return;
+        }
+        var entry = compute(model, res);
+        entries.put(ws, entry);
+        entry.related.forEach(node -> workspacesOf.computeIfAbsent(node, key -> new HashSet<>()).add(ws));
+    }
+
+    static Entry compute(Model model, Resource ws) {
+        var collections = model.listSubjectsWithProperty(FS.ownedBy, ws)
+                .filterKeep(r -> r.hasProperty(RDF.type, FS.Collection))
+                .toList();
+        var nonDeletedCollectionCount = (int) collections.stream()
+                .filter(collection -> !collection.hasProperty(FS.dateDeleted))
+                .count();
+        var related = new HashSet<Node>();
+        collections.forEach(r -> related.add(r.asNode()));
+        model.listSubjectsWithProperty(FS.isMemberOf, ws)
+                .andThen(model.listSubjectsWithProperty(FS.isManagerOf, ws))
+                .mapWith(RDFNode::asNode)
+                .forEachRemaining(related::add);
+        var memberCount = model.listSubjectsWithProperty(FS.isMemberOf, ws)
+                .filterKeep(u -> u.hasProperty(RDF.type, FS.User))
+                .toList().size();
+        var managers = new DAO(model).readAll(User.class, model.listSubjectsWithProperty(FS.isManagerOf, ws)
+                .filterKeep(u -> u.hasProperty(RDF.type, FS.User))
+                .mapWith(RDFNode::asNode)
+                .toList());
+        return new Entry(collections.size(), nonDeletedCollectionCount, memberCount + managers.size(),
+                List.copyOf(managers), related);
+    }
+}
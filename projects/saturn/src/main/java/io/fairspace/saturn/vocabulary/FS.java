@@ -24,6 +24,12 @@ public class FS {
     public static final String VERSIONS_URI = NS + "versions";
     public static final Property versions = createProperty(VERSIONS_URI);
 
+    public static final String LATEST_VERSION_URI = NS + "latestVersion";
+    public static final Property latestVersion = createProperty(LATEST_VERSION_URI);
+
+    public static final String VERSION_NUMBER_URI = NS + "versionNumber";
+    public static final Property versionNumber = createProperty(VERSION_NUMBER_URI);
+
     public static final String FILE_VERSION_URI = NS + "FileVersion";
     public static final Resource FileVersion = createResource(FILE_VERSION_URI);
 
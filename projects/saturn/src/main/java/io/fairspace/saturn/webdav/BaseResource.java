@@ -28,6 +28,7 @@ import static io.fairspace.saturn.rdf.ModelUtils.*;
 import static io.fairspace.saturn.rdf.SparqlUtils.parseXSDDateTimeLiteral;
 import static io.fairspace.saturn.vocabulary.Vocabularies.USER_VOCABULARY;
 import static io.fairspace.saturn.webdav.DavFactory.childSubject;
+import static io.fairspace.saturn.webdav.DavFactory.versionSubject;
 import static io.fairspace.saturn.webdav.WebDAVServlet.includeMetadataLinks;
 import static io.fairspace.saturn.webdav.WebDAVServlet.timestampLiteral;
 import static io.milton.http.ResponseStatus.SC_FORBIDDEN;
@@ -107,6 +108,7 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
             if (!factory.userService.currentUser().isAdmin()) {
                 throw new NotAuthorizedException("Not authorized to purge the resource.", this, SC_FORBIDDEN);
             }
+            removeVersions(subject);
             subject.getModel().removeAll(subject, null, null).removeAll(null, null, subject);
         } else if (!subject.hasProperty(FS.dateDeleted)) {
             subject.addProperty(FS.dateDeleted, timestampLiteral())
@@ -149,17 +151,17 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
         subject.listProperties()
                 .filterDrop(stmt -> stmt.getPredicate().equals(RDFS.label))
                 .filterDrop(stmt -> stmt.getPredicate().equals(FS.belongsTo))
-                .filterDrop(stmt -> stmt.getPredicate().equals(FS.versions))
+                .filterDrop(stmt -> stmt.getPredicate().equals(FS.latestVersion))
                 .toSet()  // convert to set, to prevent updating a model while iterating over its elements
                 .forEach(stmt -> newSubject.addProperty(stmt.getPredicate(), stmt.getObject()));
 
-        var versions = getListProperty(subject, FS.versions);
+        var currentVersion = getIntegerProperty(subject, FS.currentVersion);
 
-        if (versions != null) {
-            var newVersions = subject.getModel().createList(versions.iterator()
-                    .mapWith(RDFNode::asResource)
-                    .mapWith(BaseResource::copyVersion));
-            newSubject.addProperty(FS.versions, newVersions);
+        if (currentVersion != null) {
+            for (var version = 1; version <= currentVersion; version++) {
+                copyVersion(versionSubject(subject, version), versionSubject(newSubject, version));
+            }
+            newSubject.addProperty(FS.latestVersion, versionSubject(newSubject, currentVersion));
         }
 
         subject.getModel().listSubjectsWithProperty(FS.belongsTo, subject)
@@ -171,6 +173,7 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
                 .toSet()  // convert to set, to prevent updating a model while iterating over its elements
                 .forEach(stmt -> stmt.getSubject().addProperty(stmt.getPredicate(), newSubject));
 
+        removeVersions(subject);
         subject.getModel().removeAll(subject, null, null).removeAll(null, null, subject);
 
         subject.addProperty(FS.movedTo, newSubject);
@@ -181,10 +184,18 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
         }
     }
 
-    private static Resource copyVersion(Resource ver) {
-        var newVer = ver.getModel().createResource();
-        copyProperties(ver.asResource(), newVer, RDF.type, FS.dateModified, FS.deletedBy, FS.fileSize, FS.blobId, FS.md5);
-        return newVer;
+    private static void copyVersion(Resource ver, Resource newVer) {
+        newVer.removeProperties();
+        copyProperties(ver, newVer, RDF.type, FS.versionNumber, FS.dateModified, FS.deletedBy, FS.fileSize, FS.blobId, FS.md5);
+    }
+
+    private static void removeVersions(Resource subject) {
+        var currentVersion = getIntegerProperty(subject, FS.currentVersion);
+        if (currentVersion != null) {
+            for (var version = 1; version <= currentVersion; version++) {
+                versionSubject(subject, version).removeProperties();
+            }
+        }
     }
 
     @Override
@@ -209,18 +220,14 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
 
         copyProperties(subject, newSubject, RDF.type, FS.contentType);
 
-        if (subject.hasProperty(FS.versions)) {
-            var src = getListProperty(subject, FS.versions).getHead().asResource();
+        if (subject.hasProperty(FS.latestVersion)) {
+            var src = subject.getPropertyResourceValue(FS.latestVersion);
 
-            var ver = newSubject.getModel().createResource()
-                    .addProperty(RDF.type, FS.FileVersion)
+            var ver = nextVersion(newSubject)
                     .addProperty(FS.modifiedBy, user)
                     .addProperty(FS.dateModified, date);
 
             copyProperties(src, ver, FS.blobId, FS.fileSize, FS.md5);
-
-            newSubject.addLiteral(FS.currentVersion, 1)
-                    .addProperty(FS.versions, newSubject.getModel().createList(ver));
         }
         subject.getModel()
                 .listSubjectsWithProperty(FS.belongsTo, subject)
@@ -325,11 +332,9 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
         return subject.getURI().substring(factory.rootSubject.getURI().length());
     }
 
-    protected Resource newVersion(BlobInfo blob) {
+    protected Resource newVersion(Resource file, BlobInfo blob) {
         updateParents(subject);
-        return subject.getModel()
-                .createResource()
-                .addProperty(RDF.type, FS.FileVersion)
+        return nextVersion(file)
                 .addProperty(FS.blobId, blob.id)
                 .addLiteral(FS.fileSize, blob.size)
                 .addProperty(FS.md5, blob.md5)
@@ -337,6 +342,24 @@ abstract class BaseResource implements PropFindableResource, DeletableResource,
                 .addProperty(FS.modifiedBy, factory.currentUserResource());
     }
 
+    /**
+     * Adds a new version to a file and makes it the current one.
+     */
+    protected static Resource nextVersion(Resource file) {
+        var currentVersion = getIntegerProperty(file, FS.currentVersion);
+        var number = (currentVersion != null ? currentVersion : 0) + 1;
+        var version = versionSubject(file, number)
+                .removeProperties()
+                .addProperty(RDF.type, FS.FileVersion)
+                .addLiteral(FS.versionNumber, number);
+
+        file.removeAll(FS.currentVersion)
+                .removeAll(FS.latestVersion)
+                .addLiteral(FS.currentVersion, number)
+                .addProperty(FS.latestVersion, version);
+        return version;
+    }
+
     protected static void updateParents(Resource subject) {
         var now = timestampLiteral();
         for (var s = subject.getPropertyResourceValue(FS.belongsTo);
@@ -0,0 +1,123 @@
+package io.fairspace.saturn.webdav;
+
+import lombok.extern.log4j.*;
+import org.apache.commons.io.input.MessageDigestCalculatingInputStream;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.codec.binary.Hex.encodeHexString;
+import static org.apache.commons.io.IOUtils.copyLarge;
+
+/**
+ * Stores blobs under the SHA-256 hash of their contents, so that identical contents are stored only once.
+ * Blobs are placed in a two-level directory structure based on the first four characters of the hash,
+ * e.g. blob 3a7bd3e2... is stored as 3a/7b/3a7bd3e2...
+ * Blobs written by {@link LocalBlobStore} to the same directory remain readable by their original ids.
+ * Blobs and the directories containing them are synced to durable storage before their ids are returned.
+ */
+@Log4j2
+public class ContentAddressedBlobStore implements BlobStore {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String TEMP_DIRECTORY = "tmp";
+
+    private final File dir;
+    private final File tempDir;
+
+    public ContentAddressedBlobStore(File dir) {
+        this.dir = dir;
+        this.tempDir = new File(dir, TEMP_DIRECTORY);
+        if (!tempDir.exists() && !tempDir.mkdirs()) {
+            throw new RuntimeException("Cannot initialize the content-addressed blob store");
+        }
+    }
+
+    @Override
+    public String write(InputStream in) throws IOException {
+        var temp = new File(tempDir, randomUUID().toString());
+        try {
+            MessageDigestCalculatingInputStream hashingInputStream;
+            try {
+                hashingInputStream = new MessageDigestCalculatingInputStream(in, MessageDigest.getInstance(HASH_ALGORITHM));
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+            long size;
+            try (var file = new FileOutputStream(temp);
+                 var out = new BufferedOutputStream(file)) {
+                size = copyLarge(hashingInputStream, out);
+                out.flush();
+                // Durable before it becomes visible under its id
+                file.getChannel().force(true);
+            }
+            var id = encodeHexString(hashingInputStream.getMessageDigest().digest());
+            var dest = path(id);
+            if (Files.exists(dest)) {
+                if (Files.size(dest) == size) {
+                    // The same contents have been stored before
+                    return id;
+                }
+                log.warn("Replacing blob {} of {} bytes, expected {} bytes", id, Files.size(dest), size);
+            }
+            var shard = dest.getParent();
+            var newShard = !Files.isDirectory(shard);
+            Files.createDirectories(shard);
+            try {
+                // Atomically replaces an incomplete blob on POSIX file systems
+                Files.move(temp.toPath(), dest, ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ignore) {
+                // Stored concurrently by another upload
+            }
+            force(shard);
+            if (newShard) {
+                force(shard.getParent());
+                force(dir.toPath());
+            }
+            return id;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Override
+    public void read(String id, OutputStream out, long start, Long finish) throws IOException {
+        try (var channel = FileChannel.open(path(id), READ)) {
+            var end = finish == null ? channel.size() : Math.min(finish + 1, channel.size());
+            var target = Channels.newChannel(out);
+            var position = start;
+            while (position < end) {
+                var transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private Path path(String id) {
+        if (!isHash(id)) {
+            return new File(dir, id).toPath();
+        }
+        return dir.toPath().resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static boolean isHash(String id) {
+        return id.length() == 64 && id.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+    }
+}
@@ -1,16 +1,22 @@
 package io.fairspace.saturn.webdav;
 
+import io.fairspace.saturn.rdf.transactions.TxnListenerDatasetGraph;
+import io.fairspace.saturn.services.users.User;
 import io.fairspace.saturn.services.users.UserService;
 import io.fairspace.saturn.vocabulary.FS;
 import io.milton.http.ResourceFactory;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.resource.Resource;
+import org.apache.jena.graph.Node;
 import org.apache.jena.sparql.util.Context;
 import org.apache.jena.vocabulary.RDF;
 
 import java.net.URI;
+import java.util.*;
 
+import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+import static io.fairspace.saturn.config.Services.COMMIT_LISTENERS;
 import static io.fairspace.saturn.util.EnumUtils.max;
 import static io.fairspace.saturn.util.EnumUtils.min;
 import static io.fairspace.saturn.webdav.AccessMode.DataPublished;
@@ -20,6 +26,8 @@ import static io.fairspace.saturn.webdav.WebDAVServlet.isMetadataRequest;
 import static io.fairspace.saturn.webdav.WebDAVServlet.showDeleted;
 
 public class DavFactory implements ResourceFactory {
+    private static final String ACCESS_CACHE_ATTRIBUTE = "ACCESS_CACHE";
+
     // Represents the root URI, not stored in the database
     final org.apache.jena.rdf.model.Resource rootSubject;
     final BlobStore store;
@@ -27,6 +35,9 @@ public class DavFactory implements ResourceFactory {
     final Context context;
     private final String baseUri;
     public final RootResource root = new RootResource(this);
+    // Tracks changes of the whole dataset, made through any model, invalidating cached access decisions.
+    // Access decisions are not cached without it.
+    private final TxnListenerDatasetGraph txnListeners;
 
     public DavFactory(org.apache.jena.rdf.model.Resource rootSubject, BlobStore store, UserService userService, Context context) {
         this.rootSubject = rootSubject;
@@ -35,6 +46,7 @@ public class DavFactory implements ResourceFactory {
         this.context = context;
         var uri = URI.create(rootSubject.getURI());
         this.baseUri = URI.create(uri.getScheme() + "://" + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "")).toString();
+        this.txnListeners = context.get(COMMIT_LISTENERS);
     }
 
     @Override
@@ -58,12 +70,42 @@ public class DavFactory implements ResourceFactory {
     public Access getAccess(org.apache.jena.rdf.model.Resource subject) {
         var uri = subject.getURI();
         var nextSeparatorPos = uri.indexOf('/', rootSubject.getURI().length() + 1);
-        var coll = rootSubject.getModel().createResource(nextSeparatorPos < 0 ? uri : uri.substring(0, nextSeparatorPos));
+        var collUri = nextSeparatorPos < 0 ? uri : uri.substring(0, nextSeparatorPos);
+        var cache = accessCache();
+        if (cache == null) {
+            return getCollectionAccess(rootSubject.getModel().createResource(collUri), null);
+        }
+        return cache.collections.computeIfAbsent(collUri, key ->
+                getCollectionAccess(rootSubject.getModel().createResource(key), cache));
+    }
+
+    /**
+     * Returns the access decision cache of the current request, discarding it if
+     * the dataset has changed since it was created or if it belongs to another user.
+     * Returns null if there is no current request or changes of the dataset cannot be tracked.
+     */
+    private AccessCache accessCache() {
+        var request = getCurrentRequest();
+        var userUri = getUserURI();
+        if (request == null || userUri == null || txnListeners == null) {
+            return null;
+        }
+        var cache = (AccessCache) request.getAttribute(ACCESS_CACHE_ATTRIBUTE);
+        var version = txnListeners.version();
+        if (cache == null || cache.datasetVersion != version || !cache.user.equals(userUri)) {
+            cache = new AccessCache(userUri, version);
+            request.setAttribute(ACCESS_CACHE_ATTRIBUTE, cache);
+        }
+        return cache;
+    }
+
+    private Access getCollectionAccess(org.apache.jena.rdf.model.Resource coll, AccessCache cache) {
         if (!coll.hasProperty(RDF.type, FS.Collection)) {
             return Access.None;
         }
 
         var user = currentUserResource();
+        var currentUser = cache != null ? cache.currentUser(userService) : userService.currentUser();
         var ownerWs = coll.getPropertyResourceValue(FS.ownedBy);
         var deleted = coll.hasProperty(FS.dateDeleted) || (ownerWs != null && ownerWs.hasProperty(FS.dateDeleted));
 
@@ -73,20 +115,17 @@ public class DavFactory implements ResourceFactory {
             access = Access.Manage;
         }
 
-        if (coll.hasLiteral(FS.accessMode, DataPublished.name()) && (userService.currentUser().isCanViewPublicData() || access.canRead())) {
+        if (coll.hasLiteral(FS.accessMode, DataPublished.name()) && (currentUser.isCanViewPublicData() || access.canRead())) {
             return Access.Read;
         }
-        if (!access.canList() && userService.currentUser().isCanViewPublicMetadata()
+        if (!access.canList() && currentUser.isCanViewPublicMetadata()
                 && (coll.hasLiteral(FS.accessMode, MetadataPublished.name()) || coll.hasLiteral(FS.accessMode, DataPublished.name()))) {
             access = Access.List;
         }
 
-        var userWorkspacesIterator = rootSubject.getModel()
-                .listSubjectsWithProperty(RDF.type, FS.Workspace)
-                .filterKeep(ws -> user.hasProperty(FS.isManagerOf, ws) || user.hasProperty(FS.isMemberOf, ws))
-                .filterDrop(ws -> ws.hasProperty(FS.dateDeleted));
-        while (userWorkspacesIterator.hasNext() && access != Access.Manage) {
-            access = max(access, getGrantedPermission(coll, userWorkspacesIterator.next()));
+        var userWorkspaces = cache != null ? cache.workspaces(user) : getUserWorkspaces(user);
+        for (var it = userWorkspaces.iterator(); it.hasNext() && access != Access.Manage; ) {
+            access = max(access, getGrantedPermission(coll, it.next()));
         }
 
         if (deleted) {
@@ -101,13 +140,30 @@ public class DavFactory implements ResourceFactory {
             access = min(access, Access.List);
         }
 
-        if(access == Access.None && userService.currentUser().isAdmin()) {
+        if(access == Access.None && currentUser.isAdmin()) {
             return Access.List;
         }
 
         return access;
     }
 
+    /**
+     * Returns the workspaces (not deleted) the user is a member or manager of.
+     * Uses the user's role statements rather than scanning all workspaces.
+     */
+    private static List<org.apache.jena.rdf.model.Resource> getUserWorkspaces(org.apache.jena.rdf.model.Resource user) {
+        var workspaces = new LinkedHashSet<org.apache.jena.rdf.model.Resource>();
+        user.listProperties(FS.isManagerOf)
+                .andThen(user.listProperties(FS.isMemberOf))
+                .forEachRemaining(stmt -> {
+                    if (stmt.getObject().isResource()) {
+                        workspaces.add(stmt.getResource());
+                    }
+                });
+        workspaces.removeIf(ws -> !ws.hasProperty(RDF.type, FS.Workspace) || ws.hasProperty(FS.dateDeleted));
+        return new ArrayList<>(workspaces);
+    }
+
     protected static Access getGrantedPermission(org.apache.jena.rdf.model.Resource resource, org.apache.jena.rdf.model.Resource principal) {
         if (principal.hasProperty(FS.canManage, resource)) {
             return Access.Manage;
@@ -152,6 +208,14 @@ public class DavFactory implements ResourceFactory {
         return subject.getModel().createResource(subject.getURI() + "/" + encodePath(name));
     }
 
+    /**
+     * The IRI of a file version is derived from the IRI of the file and the version number,
+     * so that any version can be found without traversing the version history.
+     */
+    static org.apache.jena.rdf.model.Resource versionSubject(org.apache.jena.rdf.model.Resource file, int version) {
+        return file.getModel().createResource(file.getURI() + "?version=" + version);
+    }
+
     org.apache.jena.rdf.model.Resource currentUserResource() {
         return rootSubject.getModel().createResource(getUserURI().getURI());
     }
@@ -159,4 +223,35 @@ public class DavFactory implements ResourceFactory {
     public boolean isFileSystemResource(org.apache.jena.rdf.model.Resource resource) {
         return resource.getURI().startsWith(rootSubject.getURI());
     }
+
+    /**
+     * Access decisions per collection for the user of a request.
+     * Only valid as long as the model has not changed.
+     */
+    private static class AccessCache {
+        final Node user;
+        final long datasetVersion;
+        final Map<String, Access> collections = new HashMap<>();
+        User currentUser;
+        List<org.apache.jena.rdf.model.Resource> workspaces;
+
+        AccessCache(Node user, long datasetVersion) {
+            this.user = user;
+            this.datasetVersion = datasetVersion;
+        }
+
+        User currentUser(UserService userService) {
+            if (currentUser == null) {
+                currentUser = userService.currentUser();
+            }
+            return currentUser;
+        }
+
+        List<org.apache.jena.rdf.model.Resource> workspaces(org.apache.jena.rdf.model.Resource user) {
+            if (workspaces == null) {
+                workspaces = getUserWorkspaces(user);
+            }
+            return workspaces;
+        }
+    }
 }
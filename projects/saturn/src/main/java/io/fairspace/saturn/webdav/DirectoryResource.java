@@ -1,7 +1,6 @@
 package io.fairspace.saturn.webdav;
 
 import io.fairspace.saturn.services.metadata.MetadataService;
-import io.fairspace.saturn.services.metadata.validation.ValidationException;
 import io.fairspace.saturn.vocabulary.FS;
 import io.milton.http.Auth;
 import io.milton.http.FileItem;
@@ -14,10 +13,6 @@ import io.milton.http.exceptions.NotFoundException;
 import io.milton.resource.DeletableCollectionResource;
 import io.milton.resource.FolderResource;
 import io.milton.resource.Resource;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.shacl.vocabulary.SHACLM;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 
@@ -31,16 +26,11 @@ import java.util.*;
 import java.util.stream.Stream;
 
 import static io.fairspace.saturn.config.Services.METADATA_SERVICE;
-import static io.fairspace.saturn.rdf.ModelUtils.getStringProperty;
-import static io.fairspace.saturn.vocabulary.Vocabularies.VOCABULARY;
 import static io.fairspace.saturn.webdav.DavFactory.childSubject;
 import static io.fairspace.saturn.webdav.PathUtils.*;
 import static io.fairspace.saturn.webdav.WebDAVServlet.getBlob;
 import static io.fairspace.saturn.webdav.WebDAVServlet.setErrorMessage;
 import static java.util.stream.Collectors.joining;
-import static org.apache.commons.lang3.StringUtils.isBlank;
-import static org.apache.jena.graph.NodeFactory.createURI;
-import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
 
 class DirectoryResource extends BaseResource implements FolderResource, DeletableCollectionResource {
     public DirectoryResource(DavFactory factory, org.apache.jena.rdf.model.Resource subject, Access access) {
@@ -74,9 +64,8 @@ class DirectoryResource extends BaseResource implements FolderResource, Deletabl
 
     private Resource createNew(String name, BlobInfo blob, String contentType) throws NotAuthorizedException, ConflictException, BadRequestException {
         var subj = createResource(name)
-                .addProperty(RDF.type, FS.File)
-                .addLiteral(FS.currentVersion, 1)
-                .addProperty(FS.versions, subject.getModel().createList(newVersion(blob)));
+                .addProperty(RDF.type, FS.File);
+        newVersion(subj, blob);
 
         if (contentType != null) {
             subj.addProperty(FS.contentType, contentType);
@@ -213,149 +202,18 @@ class DirectoryResource extends BaseResource implements FolderResource, Deletabl
         }
     }
 
-    private void uploadMetadata(FileItem file) throws BadRequestException, ConflictException, NotAuthorizedException {
+    private void uploadMetadata(FileItem file) throws BadRequestException {
         if (file == null) {
             setErrorMessage("Missing 'file' parameter");
             throw new BadRequestException(this);
         }
-        var model = createDefaultModel();
 
+        MetadataService metadataService = factory.context.get(METADATA_SERVICE);
         try (var is = file.getInputStream();
-             var reader = new InputStreamReader(is);
-             var csvParser = CSVFormat.DEFAULT
-                     .withFirstRecordAsHeader()
-                     .withCommentMarker('#')
-                     .withIgnoreEmptyLines()
-                     .parse(reader)) {
-            var headers = new HashSet<>(csvParser.getHeaderNames());
-            if (!headers.contains("Path")) {
-                setErrorMessage("Line " + csvParser.getCurrentLineNumber() + ". Invalid file format. 'Path' column is missing.");
-                throw new BadRequestException(this);
-            }
-            try {
-                for (var record : csvParser) {
-                    var path = record.get("Path");
-                    org.apache.jena.rdf.model.Resource s;
-                    if (path.equals(".") || path.equals("./") || path.equals("/")) {
-                        s = subject;
-                    } else {
-                        if (path.startsWith("./")) {
-                            path = path.substring(2);
-                        }
-                        path = normalizePath(path);
-                        s = subject.getModel().createResource(subject + "/" + encodePath(path));
-                    }
-                    if (!s.getModel().containsResource(s)) {
-                        setErrorMessage("Line " + csvParser.getCurrentLineNumber() + ". File \"" + path + "\" not found");
-                        throw new BadRequestException(this);
-                    }
-
-                    if (s.hasProperty(FS.dateDeleted)) {
-                        setErrorMessage("Line " + csvParser.getCurrentLineNumber() + ". File \"" + path + "\" was deleted");
-                        throw new BadRequestException(this);
-                    }
-
-                    var classShape = s.getPropertyResourceValue(RDF.type).inModel(VOCABULARY);
-                    var propertyShapes = new HashMap<String, org.apache.jena.rdf.model.Resource>();
-
-                    classShape.listProperties(SHACLM.property)
-                            .mapWith(Statement::getObject)
-                            .mapWith(RDFNode::asResource)
-                            .filterKeep(propertyShape -> propertyShape.hasProperty(SHACLM.name)
-                                    && propertyShape.hasProperty(SHACLM.path)
-                                    && propertyShape.getProperty(SHACLM.path).getObject().isURIResource())
-                            .forEachRemaining(propertyShape -> {
-                                var name = getStringProperty(propertyShape, SHACLM.name);
-                                if (name != null) {
-                                    propertyShapes.put(name, propertyShape);
-                                }
-                            });
-
-                    for (var header : headers) {
-                        if (header.equals("Path")) {
-                            continue;
-                        }
-
-                        var text = record.get(header);
-
-                        if (isBlank(text)) {
-                            continue;
-                        }
-
-                        var propertyShape = propertyShapes.get(header);
-
-                        if (propertyShape == null) {
-                            setErrorMessage("Line " + csvParser.getCurrentLineNumber() + ". Unknown attribute: " + header);
-                            throw new BadRequestException(this);
-                        }
-
-                        var property = model.createProperty(propertyShape.getPropertyResourceValue(SHACLM.path).getURI());
-                        var datatype = propertyShape.getPropertyResourceValue(SHACLM.datatype);
-                        var class_ = propertyShape.getPropertyResourceValue(SHACLM.class_);
-                        assert (datatype != null) ^ (class_ != null);
-
-                        var values = text.split("\\|");
-
-                        for (var value : values) {
-                            if (class_ != null) {
-                                var object = subject.getModel().listResourcesWithProperty(RDF.type, class_)
-                                        .filterKeep(r -> r.getURI().equals(value) || r.hasProperty(RDFS.label, value))
-                                        .toList();
-                                if (object.size() == 1) {
-                                    model.add(s, property, object.get(0));
-                                } else if (object.size() > 1) {
-                                    setErrorMessage("Line " + csvParser.getCurrentLineNumber()
-                                            + ". Object \"" + value + "\" of class " + "\"" + class_ + "\" is not unique.");
-                                    throw new BadRequestException(this);
-                                } else {
-                                    setErrorMessage("Line " + csvParser.getCurrentLineNumber()
-                                            + ". Object \"" + value + "\" of class " + "\"" + class_ + "\" does not exist.");
-                                    throw new BadRequestException(this);
-                                }
-                            } else {
-                                var o = model.createTypedLiteral(value, datatype.getURI());
-                                model.add(s, property, o);
-                            }
-                        }
-                    }
-                }
-            } catch (IllegalStateException e) {
-                setErrorMessage("Line " + csvParser.getCurrentLineNumber() + ". Metadata file is not a valid comma separated values file (CSV).");
-                throw new BadRequestException("Error parsing file " + file.getName(), e);
-            }
-        } catch (IllegalArgumentException | IOException e) {
+             var reader = new InputStreamReader(is)) {
+            new MetadataImport(subject, metadataService).run(reader);
+        } catch (MetadataImport.MetadataImportException e) {
             setErrorMessage(e.getMessage());
-            throw new BadRequestException("Error parsing file " + file.getName(), e);
-        }
-
-        MetadataService metadataService = factory.context.get(METADATA_SERVICE);
-        try {
-            metadataService.patch(model);
-        } catch (ValidationException e) {
-            var message = new StringBuilder("Validation of the uploaded metadata failed.\n");
-            var n = 0;
-            for (var v: e.getViolations()) {
-                var path = v.getSubject().replaceFirst(subject.getURI(), "");
-                path = URLDecoder.decode(path, StandardCharsets.UTF_8);
-                var propertyShapes = VOCABULARY.listResourcesWithProperty(SHACLM.path, createURI(v.getPredicate()));
-                var propertyName = propertyShapes.hasNext()
-                        ? getStringProperty(propertyShapes.next(), SHACLM.name)
-                        : createURI(v.getPredicate()).getLocalName();
-                message.append("- <")
-                        .append(path)
-                        .append("> has an invalid value for property *")
-                        .append(propertyName)
-                        .append("*: ")
-                        .append(v.getMessage())
-                        .append(".\n");
-                if (++n == 5) {
-                    if (e.getViolations().size() > n) {
-                        message.append("+ ").append(e.getViolations().size() - n).append(" more errors.");
-                    }
-                    break;
-                }
-            }
-            setErrorMessage(message.toString());
             throw new BadRequestException("Error applying metadata", e);
         } catch (Exception e) {
             throw new BadRequestException("Error applying metadata", e);
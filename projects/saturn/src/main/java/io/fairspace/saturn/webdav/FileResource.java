@@ -1,5 +1,6 @@
 package io.fairspace.saturn.webdav;
 
+import io.fairspace.saturn.rdf.transactions.ReadSnapshot;
 import io.fairspace.saturn.vocabulary.FS;
 import io.milton.http.Auth;
 import io.milton.http.FileItem;
@@ -12,7 +13,6 @@ import io.milton.http.exceptions.NotFoundException;
 import io.milton.resource.ReplaceableResource;
 import lombok.SneakyThrows;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.vocabulary.RDF;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -21,6 +21,7 @@ import java.util.Date;
 import java.util.Map;
 
 import static io.fairspace.saturn.rdf.ModelUtils.*;
+import static io.fairspace.saturn.webdav.DavFactory.versionSubject;
 import static io.fairspace.saturn.webdav.WebDAVServlet.fileVersion;
 import static io.fairspace.saturn.webdav.WebDAVServlet.getBlob;
 import static io.milton.http.ResponseStatus.SC_FORBIDDEN;
@@ -32,6 +33,7 @@ class FileResource extends BaseResource implements io.milton.resource.FileResour
     private long contentLength;
     private Date modifiedDate;
     private boolean singleVersion;
+    private String contentType;
 
     @SneakyThrows
     FileResource(DavFactory factory, Resource subject, Access access) {
@@ -41,20 +43,21 @@ class FileResource extends BaseResource implements io.milton.resource.FileResour
     }
 
     private void loadVersion() throws BadRequestException {
-        var versions = getListProperty(subject, FS.versions);
+        var currentVersion = subject.getRequiredProperty(FS.currentVersion).getInt();
         var ver = fileVersion();
-        version = (ver != null) ? ver : versions.size();
+        version = (ver != null) ? ver : currentVersion;
 
-        if (version < 1 || version > versions.size()) {
+        if (version < 1 || version > currentVersion) {
             throw new BadRequestException("Invalid file version");
         }
 
-        var current = versions.get(subject.getProperty(FS.currentVersion).getInt() - version).asResource();
+        var current = (ver != null) ? versionSubject(subject, version) : subject.getPropertyResourceValue(FS.latestVersion);
 
         blobId = current.getRequiredProperty(FS.blobId).getString();
         contentLength = current.getRequiredProperty(FS.fileSize).getLong();
         modifiedDate = parseDate(current, FS.dateModified);
-        singleVersion = versions.size() == 1;
+        singleVersion = currentVersion == 1;
+        contentType = getStringProperty(subject, FS.contentType);
     }
 
     @Override
@@ -67,6 +70,8 @@ class FileResource extends BaseResource implements io.milton.resource.FileResour
 
     @Override
     public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType) throws IOException, NotAuthorizedException, BadRequestException, NotFoundException {
+        // All metadata needed for the response has been loaded, no need to hold the transaction while streaming
+        ReadSnapshot.release();
         factory.store.read(blobId, out, range != null ? range.getStart() : 0, range != null ? range.getFinish() : null);
     }
 
@@ -77,7 +82,7 @@ class FileResource extends BaseResource implements io.milton.resource.FileResour
 
     @Override
     public String getContentType(String accepts) {
-        return getStringProperty(subject, FS.contentType);
+        return contentType;
     }
 
     @Override
@@ -96,13 +101,7 @@ class FileResource extends BaseResource implements io.milton.resource.FileResour
                     "Deleted file cannot be overwritten.");
         }
 
-        var versions = getListProperty(subject, FS.versions).cons(newVersion(blobInfo));
-        var current = subject.getRequiredProperty(FS.currentVersion).getInt() + 1;
-
-        subject.removeAll(FS.versions)
-                .removeAll(FS.currentVersion)
-                .addProperty(FS.versions, versions)
-                .addLiteral(FS.currentVersion, current);
+        newVersion(subject, blobInfo);
 
         loadVersion();
     }
@@ -142,20 +141,14 @@ class FileResource extends BaseResource implements io.milton.resource.FileResour
         } catch (Exception e) {
             throw new BadRequestException(this, "No version provided");
         }
-        var versions = getListProperty(subject, FS.versions);
-        var ver = versions.get(subject.getProperty(FS.currentVersion).getInt() - version).asResource();
-        var newVer = subject.getModel()
-                .createResource();
+        if (version < 1 || version > subject.getRequiredProperty(FS.currentVersion).getInt()) {
+            throw new BadRequestException(this, "Invalid file version");
+        }
+        var ver = versionSubject(subject, version);
+        var newVer = nextVersion(subject);
 
-        copyProperties(ver, newVer, RDF.type, FS.blobId, FS.fileSize, FS.md5);
+        copyProperties(ver, newVer, FS.blobId, FS.fileSize, FS.md5);
         newVer.addProperty(FS.modifiedBy, factory.currentUserResource())
                 .addLiteral(FS.dateModified, WebDAVServlet.timestampLiteral());
-
-        versions = versions.cons(newVer);
-        var current = subject.getRequiredProperty(FS.currentVersion).getInt() + 1;
-        subject.removeAll(FS.versions)
-                .removeAll(FS.currentVersion)
-                .addProperty(FS.versions, versions)
-                .addLiteral(FS.currentVersion, current);
     }
 }
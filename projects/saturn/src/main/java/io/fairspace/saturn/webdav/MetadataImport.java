@@ -0,0 +1,292 @@
+package io.fairspace.saturn.webdav;
+
+import io.fairspace.saturn.services.metadata.MetadataService;
+import io.fairspace.saturn.services.metadata.validation.ValidationException;
+import io.fairspace.saturn.vocabulary.FS;
+import lombok.extern.log4j.*;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.shacl.vocabulary.SHACLM;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static io.fairspace.saturn.rdf.ModelUtils.getStringProperty;
+import static io.fairspace.saturn.vocabulary.Vocabularies.VOCABULARY;
+import static io.fairspace.saturn.webdav.PathUtils.encodePath;
+import static io.fairspace.saturn.webdav.PathUtils.normalizePath;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
+
+/**
+ * Imports metadata of the files in a directory from a CSV file.
+ * <p>
+ * The file is read row by row. Rows are applied in chunks of {@link #CHUNK_SIZE} rows,
+ * each chunk is validated and written separately, so that the size of an update is bounded.
+ * All chunks are written in the transaction of the request, so an import either succeeds or has no effect.
+ * <p>
+ * The property shapes of each class and the labels of the entities of each class are looked up only once per import.
+ * Errors are reported with the line of the row that caused them. After the first error the remaining rows
+ * are still checked, but not written, until {@link #MAX_REPORTED_ERRORS} errors have been found.
+ */
+@Log4j2
+class MetadataImport {
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_REPORTED_ERRORS = 5;
+
+    private final Resource root;
+    private final MetadataService metadataService;
+    private final int chunkSize;
+
+    private final Map<Resource, Map<String, Resource>> propertyShapesByClass = new HashMap<>();
+    private final Map<Resource, Map<String, List<Resource>>> entitiesByClass = new HashMap<>();
+    // Subject-predicate pairs written by previous chunks, their values must be kept
+    private final Set<Pair<Resource, Property>> written = new HashSet<>();
+    private final List<String> errors = new ArrayList<>();
+    private int errorCount;
+    private int rowCount;
+
+    MetadataImport(Resource root, MetadataService metadataService) {
+        this(root, metadataService, CHUNK_SIZE);
+    }
+
+    MetadataImport(Resource root, MetadataService metadataService, int chunkSize) {
+        this.root = root;
+        this.metadataService = metadataService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the number of imported rows
+     * @throws MetadataImportException if the file is malformed, or any of its rows is invalid.
+     *                                 Nothing is written in that case, provided the transaction of the request is aborted.
+     */
+    int run(Reader reader) throws MetadataImportException {
+        try (var csvParser = CSVFormat.DEFAULT
+                .withFirstRecordAsHeader()
+                .withCommentMarker('#')
+                .withIgnoreEmptyLines()
+                .parse(reader)) {
+            var headers = new ArrayList<>(csvParser.getHeaderNames());
+            if (!headers.contains("Path")) {
+                throw new MetadataImportException("Line " + csvParser.getCurrentLineNumber() + ". Invalid file format. 'Path' column is missing.");
+            }
+            headers.remove("Path");
+
+            var chunk = createDefaultModel();
+            var lines = new HashMap<Resource, Long>();
+            try {
+                for (var record : csvParser) {
+                    var line = csvParser.getCurrentLineNumber();
+                    try {
+                        var s = readRow(record, headers, chunk);
+                        lines.putIfAbsent(s, line);
+                    } catch (RowException e) {
+                        error("Line " + line + ". " + e.getMessage());
+                    }
+                    rowCount++;
+                    if (errorCount >= MAX_REPORTED_ERRORS) {
+                        break;
+                    }
+                    if (rowCount % chunkSize == 0) {
+                        write(chunk, lines);
+                        chunk = createDefaultModel();
+                        lines.clear();
+                    }
+                }
+            } catch (IllegalStateException e) {
+                throw new MetadataImportException("Line " + csvParser.getCurrentLineNumber() + ". Metadata file is not a valid comma separated values file (CSV).", e);
+            }
+            write(chunk, lines);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new MetadataImportException(e.getMessage(), e);
+        }
+
+        if (errorCount > 0) {
+            var message = new StringBuilder("Validation of the uploaded metadata failed.\n");
+            errors.forEach(error -> message.append("- ").append(error).append("\n"));
+            if (errorCount > errors.size()) {
+                message.append("+ ").append(errorCount - errors.size()).append(" more errors.");
+            }
+            throw new MetadataImportException(message.toString());
+        }
+        return rowCount;
+    }
+
+    private Resource readRow(CSVRecord record, List<String> headers, Model chunk) throws RowException {
+        var path = record.get("Path");
+        Resource s;
+        if (path.equals(".") || path.equals("./") || path.equals("/")) {
+            s = root;
+        } else {
+            if (path.startsWith("./")) {
+                path = path.substring(2);
+            }
+            path = normalizePath(path);
+            s = root.getModel().createResource(root + "/" + encodePath(path));
+        }
+        if (!s.getModel().containsResource(s)) {
+            throw new RowException("File \"" + path + "\" not found");
+        }
+        if (s.hasProperty(FS.dateDeleted)) {
+            throw new RowException("File \"" + path + "\" was deleted");
+        }
+
+        var propertyShapes = propertyShapes(s.getPropertyResourceValue(RDF.type));
+
+        for (var header : headers) {
+            var text = record.get(header);
+            if (isBlank(text)) {
+                continue;
+            }
+
+            var propertyShape = propertyShapes.get(header);
+            if (propertyShape == null) {
+                throw new RowException("Unknown attribute: " + header);
+            }
+
+            var property = chunk.createProperty(propertyShape.getPropertyResourceValue(SHACLM.path).getURI());
+            var datatype = propertyShape.getPropertyResourceValue(SHACLM.datatype);
+            var class_ = propertyShape.getPropertyResourceValue(SHACLM.class_);
+            assert (datatype != null) ^ (class_ != null);
+
+            for (var value : text.split("\\|")) {
+                if (class_ != null) {
+                    var objects = entities(class_).getOrDefault(value, List.of());
+                    if (objects.size() > 1) {
+                        throw new RowException("Object \"" + value + "\" of class " + "\"" + class_ + "\" is not unique.");
+                    }
+                    if (objects.isEmpty()) {
+                        throw new RowException("Object \"" + value + "\" of class " + "\"" + class_ + "\" does not exist.");
+                    }
+                    chunk.add(s, property, objects.get(0));
+                } else {
+                    chunk.add(s, property, chunk.createTypedLiteral(value, datatype.getURI()));
+                }
+            }
+        }
+        return s;
+    }
+
+    private Map<String, Resource> propertyShapes(Resource type) {
+        return propertyShapesByClass.computeIfAbsent(type, t -> {
+            var propertyShapes = new HashMap<String, Resource>();
+            t.inModel(VOCABULARY).listProperties(SHACLM.property)
+                    .mapWith(Statement::getObject)
+                    .mapWith(RDFNode::asResource)
+                    .filterKeep(propertyShape -> propertyShape.hasProperty(SHACLM.name)
+                            && propertyShape.hasProperty(SHACLM.path)
+                            && propertyShape.getProperty(SHACLM.path).getObject().isURIResource())
+                    .forEachRemaining(propertyShape -> {
+                        var name = getStringProperty(propertyShape, SHACLM.name);
+                        if (name != null) {
+                            propertyShapes.put(name, propertyShape);
+                        }
+                    });
+            return propertyShapes;
+        });
+    }
+
+    /**
+     * @return the entities of a class by their IRIs and plain labels
+     */
+    private Map<String, List<Resource>> entities(Resource class_) {
+        return entitiesByClass.computeIfAbsent(class_, c -> {
+            var entities = new HashMap<String, List<Resource>>();
+            root.getModel().listResourcesWithProperty(RDF.type, c)
+                    .filterKeep(Resource::isURIResource)
+                    .forEachRemaining(r -> {
+                        entities.computeIfAbsent(r.getURI(), key -> new ArrayList<>()).add(r);
+                        r.listProperties(RDFS.label)
+                                .mapWith(Statement::getObject)
+                                .filterKeep(RDFNode::isLiteral)
+                                .mapWith(RDFNode::asLiteral)
+                                .filterKeep(label -> XSDDatatype.XSDstring.getURI().equals(label.getDatatypeURI()))
+                                .forEachRemaining(label -> {
+                                    var list = entities.computeIfAbsent(label.getString(), key -> new ArrayList<>());
+                                    if (!list.contains(r)) {
+                                        list.add(r);
+                                    }
+                                });
+                    });
+            log.debug("Indexed the labels of {} entities of class {}", entities.size(), c);
+            return entities;
+        });
+    }
+
+    private void write(Model chunk, Map<Resource, Long> lines) {
+        if (errorCount > 0 || chunk.isEmpty()) {
+            return;
+        }
+
+        // Values of properties set by previous chunks are added to, rather than replaced
+        var additions = createDefaultModel();
+        chunk.listStatements()
+                .filterKeep(stmt -> written.contains(Pair.of(stmt.getSubject(), stmt.getPredicate())))
+                .forEachRemaining(additions::add);
+        chunk.remove(additions);
+
+        try {
+            if (!chunk.isEmpty()) {
+                metadataService.patch(chunk);
+            }
+            if (!additions.isEmpty()) {
+                metadataService.put(additions);
+            }
+        } catch (ValidationException e) {
+            for (var v : e.getViolations()) {
+                var subject = root.getModel().createResource(v.getSubject());
+                var line = lines.get(subject);
+                var path = URLDecoder.decode(v.getSubject().replaceFirst(root.getURI(), ""), StandardCharsets.UTF_8);
+                var propertyShapes = VOCABULARY.listResourcesWithProperty(SHACLM.path, createURI(v.getPredicate()));
+                var propertyName = propertyShapes.hasNext()
+                        ? getStringProperty(propertyShapes.next(), SHACLM.name)
+                        : createURI(v.getPredicate()).getLocalName();
+                error((line != null ? "Line " + line + ". " : "")
+                        + "<" + path + "> has an invalid value for property *" + propertyName + "*: " + v.getMessage() + ".");
+            }
+            return;
+        }
+
+        chunk.listStatements()
+                .andThen(additions.listStatements())
+                .forEachRemaining(stmt -> written.add(Pair.of(stmt.getSubject(), stmt.getPredicate())));
+        log.info("Imported metadata of {} rows into {}", rowCount, root);
+    }
+
+    private void error(String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(message);
+        }
+        errorCount++;
+    }
+
+    private static class RowException extends Exception {
+        RowException(String message) {
+            super(message);
+        }
+    }
+
+    static class MetadataImportException extends Exception {
+        MetadataImportException(String message) {
+            super(message);
+        }
+
+        MetadataImportException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
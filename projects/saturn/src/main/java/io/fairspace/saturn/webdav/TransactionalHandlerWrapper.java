@@ -32,7 +32,10 @@ class TransactionalHandlerWrapper implements Handler {
         if (request.getMethod().isWrite) {
             txn.executeWrite(ds -> wrapped.process(httpManager, request, response));
         } else {
-            txn.executeRead(ds -> wrapped.process(httpManager, request, response));
+            // File contents are streamed after releasing the snapshot, see FileResource.sendContent
+            try (var snapshot = txn.readSnapshot()) {
+                wrapped.process(httpManager, request, response);
+            }
         }
     }
 
@@ -0,0 +1,59 @@
+package io.fairspace.saturn.webdav;
+
+import io.fairspace.saturn.rdf.transactions.Transactions;
+import io.fairspace.saturn.vocabulary.FS;
+import lombok.extern.log4j.*;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.util.List;
+
+import static io.fairspace.saturn.rdf.ModelUtils.getListProperty;
+import static io.fairspace.saturn.webdav.DavFactory.versionSubject;
+
+/**
+ * Converts version histories stored as RDF lists (fs:versions, newest version first)
+ * to version resources addressable by version number, see {@link DavFactory#versionSubject}.
+ * Files without a version list are left untouched, so the migration can safely run on every startup.
+ */
+@Log4j2
+public class VersionListMigration {
+    public static void migrate(Transactions transactions) {
+        var migrated = transactions.calculateWrite(VersionListMigration::migrate);
+        if (migrated > 0) {
+            log.info("Migrated the version history of {} files", migrated);
+        }
+    }
+
+    static int migrate(Model model) {
+        var files = model.listSubjectsWithProperty(FS.versions).toList();
+        for (var file : files) {
+            var list = getListProperty(file, FS.versions);
+            var versions = (list != null) ? list.asJavaList() : List.<RDFNode>of();
+
+            var number = versions.size();
+            for (var node : versions) {
+                var ver = node.asResource();
+                var version = versionSubject(file, number).removeProperties();
+                ver.listProperties()
+                        .toList()  // convert to list, to prevent updating a model while iterating over its elements
+                        .forEach(stmt -> version.addProperty(stmt.getPredicate(), stmt.getObject()));
+                version.addLiteral(FS.versionNumber, number);
+                ver.removeProperties();
+                number--;
+            }
+
+            if (list != null) {
+                list.removeList();
+            }
+            file.removeAll(FS.versions)
+                    .removeAll(FS.currentVersion)
+                    .removeAll(FS.latestVersion);
+            if (!versions.isEmpty()) {
+                file.addLiteral(FS.currentVersion, versions.size())
+                        .addProperty(FS.latestVersion, versionSubject(file, versions.size()));
+            }
+        }
+        return files.size();
+    }
+}
@@ -0,0 +1,67 @@
+package io.fairspace.saturn.rdf;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.system.Txn.calculateRead;
+import static org.apache.jena.system.Txn.executeWrite;
+import static org.apache.jena.tdb2.sys.DatabaseConnection.connectCreate;
+import static org.junit.Assert.*;
+
+public class DatasetCompactorTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private File datasetPath;
+    private DatasetGraph dsg;
+
+    @Before
+    public void before() throws IOException {
+        datasetPath = testFolder.newFolder();
+        dsg = connectCreate(Location.create(datasetPath.getAbsolutePath())).getDatasetGraph();
+    }
+
+    @After
+    public void after() {
+        dsg.close();
+    }
+
+    @Test
+    public void compactionKeepsDataAndReclaimsSpace() throws InterruptedException {
+        var subject = createURI("http://example.com/1");
+        var predicate = createURI("http://example.com/value");
+        for (var i = 0; i < 100; i++) {
+            var value = i;
+            executeWrite(dsg, () -> {
+                dsg.deleteAny(Quad.defaultGraphIRI, subject, predicate, null);
+                dsg.add(Quad.defaultGraphIRI, subject, predicate, createLiteral("value " + value));
+            });
+        }
+
+        var compactor = new DatasetCompactor(dsg, datasetPath);
+        assertNull(compactor.getLastResult());
+        assertTrue(compactor.start());
+        while (compactor.isActive()) {
+            Thread.sleep(10);
+        }
+
+        var result = compactor.getLastResult();
+        assertFalse(result.isFailed());
+        assertTrue(result.getSizeAfter() < result.getSizeBefore());
+        assertEquals(result.getSizeAfter(), compactor.size());
+        assertTrue(calculateRead(dsg, () -> dsg.contains(Quad.defaultGraphIRI, subject, predicate, createLiteral("value 99"))));
+        assertEquals(1L, (long) calculateRead(dsg, () -> Iter.count(dsg.find())));
+    }
+}
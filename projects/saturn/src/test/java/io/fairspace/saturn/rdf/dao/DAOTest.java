@@ -12,6 +12,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static io.fairspace.saturn.TestUtils.ensureRecentInstant;
@@ -295,6 +296,22 @@ public class DAOTest {
     }
 
 
+    @Test
+    public void testListAndReadAll() {
+        var deleted = dao.write(new LifecycleAwareEntity());
+        dao.markAsDeleted(deleted);
+        var entities = new ArrayList<LifecycleAwareEntity>();
+        for (var i = 0; i < 10; i++) {
+            entities.add(dao.write(new LifecycleAwareEntity()));
+        }
+
+        assertEquals(new HashSet<>(entities), new HashSet<>(dao.list(LifecycleAwareEntity.class)));
+        assertEquals(11, dao.list(LifecycleAwareEntity.class, true).size());
+
+        var iris = List.of(entities.get(3).getIri(), deleted.getIri(), createURI("http://example.com/iri/unknown"), entities.get(1).getIri());
+        assertEquals(List.of(entities.get(3), entities.get(1)), dao.readAll(LifecycleAwareEntity.class, iris));
+    }
+
     private void testWriteAndRead(PersistentEntity entity) {
         dao.write(entity);
         assertEquals(entity, dao.read(entity.getClass(), entity.getIri()));
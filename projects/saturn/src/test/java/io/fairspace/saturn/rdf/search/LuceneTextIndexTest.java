@@ -0,0 +1,191 @@
+package io.fairspace.saturn.rdf.search;
+
+import io.fairspace.saturn.config.Config;
+import io.fairspace.saturn.rdf.SparqlUtils;
+import io.fairspace.saturn.services.metadata.MetadataPermissions;
+import io.fairspace.saturn.services.search.LookupSearchRequest;
+import io.fairspace.saturn.services.search.SearchResultDTO;
+import io.fairspace.saturn.services.search.SearchService;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.DatasetImpl;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.toList;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.apache.jena.system.Txn.executeWrite;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LuceneTextIndexTest {
+    private static final String TYPE = "http://example.com/Sample";
+    private static final Resource SAMPLE_1 = createResource("http://example.com/sample1");
+    private static final Resource SAMPLE_2 = createResource("http://example.com/sample2");
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Mock
+    private MetadataPermissions permissions;
+
+    private final Config.TextIndex config = new Config.TextIndex();
+    // Simulates the size of the transaction log
+    private final AtomicLong logPosition = new AtomicLong();
+    private DatasetGraph dsg;
+    private Dataset ds;
+
+    @Before
+    public void before() throws IOException {
+        config.enabled = true;
+        config.path = testFolder.newFolder();
+        config.properties = List.of("http://example.com/alias");
+
+        dsg = DatasetGraphFactory.createTxnMem();
+        add(SAMPLE_1, RDFS.label.getURI(), "Blood sample");
+        add(SAMPLE_2, RDFS.label.getURI(), "Tissue sample");
+        add(SAMPLE_2, RDFS.comment.getURI(), "Taken from the liver");
+
+        ds = DatasetImpl.wrap(LuceneTextIndex.wrap(dsg, config, logPosition::get));
+    }
+
+    private void add(Resource subject, String property, String value) {
+        executeWrite(dsg, () -> {
+            var model = DatasetImpl.wrap(dsg).getDefaultModel();
+            model.add(subject, RDF.type, createResource(TYPE));
+            model.add(subject, model.createProperty(property), value);
+        });
+    }
+
+    private List<String> lookup(Dataset dataset, String query) {
+        var request = new LookupSearchRequest();
+        request.setResourceType(TYPE);
+        request.setQuery(query);
+        return new SearchService(dataset).getLookupSearchResults(request).getResults().stream()
+                .map(SearchResultDTO::getLabel)
+                .collect(toList());
+    }
+
+    @Test
+    public void testToLuceneQuery() {
+        assertEquals("blood* AND sam*", LuceneTextIndex.toLuceneQuery(" Blood SAM"));
+        assertEquals("sample* AND s2*", LuceneTextIndex.toLuceneQuery("sample-s2"));
+        assertEquals("", LuceneTextIndex.toLuceneQuery("*:"));
+    }
+
+    @Test
+    public void testExistingContentsAreIndexed() {
+        assertTrue(LuceneTextIndex.isEnabled(ds.asDatasetGraph()));
+        assertEquals(List.of("Blood sample", "Tissue sample"), lookup(ds, "sam"));
+        assertEquals(List.of("Tissue sample"), lookup(ds, "liver"));
+        assertEquals(List.of(), lookup(ds, "ample"));
+    }
+
+    @Test
+    public void testChangesAreIndexedOnCommit() {
+        executeWrite(ds, () -> {
+            ds.getDefaultModel().removeAll(SAMPLE_1, RDFS.label, null);
+            ds.getDefaultModel().add(SAMPLE_1, RDFS.label, "Urine sample");
+            ds.getDefaultModel().add(SAMPLE_1, ds.getDefaultModel().createProperty("http://example.com/alias"), "Pee");
+        });
+
+        assertEquals(List.of(), lookup(ds, "blood"));
+        assertEquals(List.of("Urine sample"), lookup(ds, "urine"));
+        assertEquals(List.of("Urine sample"), lookup(ds, "pee"));
+    }
+
+    @Test
+    public void testIndexIsUsedThroughFilteredView() {
+        when(permissions.readAccess()).thenReturn((Predicate<Resource>) SAMPLE_2::equals);
+        var filtered = DatasetImpl.wrap(new FilteredDatasetGraph(ds, permissions));
+
+        assertTrue(LuceneTextIndex.isEnabled(filtered.asDatasetGraph()));
+        assertEquals(List.of("Tissue sample"), lookup(filtered, "sample"));
+    }
+
+    @Test
+    public void testIndexIsNotRebuiltIfItReflectsTheTransactionLog() throws IOException {
+        add(SAMPLE_1, RDFS.comment.getURI(), "Added while the index was closed");
+
+        ds.close();
+        var reopened = DatasetImpl.wrap(LuceneTextIndex.wrap(dsg, config, logPosition::get));
+
+        assertFalse(lookup(reopened, "sample").isEmpty());
+        assertEquals(List.of(), lookup(reopened, "closed"));
+    }
+
+    @Test
+    public void testIndexIsRebuiltIfItIsBehindTheTransactionLog() throws IOException {
+        logPosition.incrementAndGet();
+        executeWrite(ds, () -> ds.getDefaultModel().add(SAMPLE_2, ds.getDefaultModel().createProperty("http://example.com/alias"), "Indexed on commit"));
+        // Committed to the dataset, but not to the index
+        logPosition.incrementAndGet();
+        add(SAMPLE_1, RDFS.comment.getURI(), "Added while the index was closed");
+
+        ds.close();
+        var reopened = DatasetImpl.wrap(LuceneTextIndex.wrap(dsg, config, logPosition::get));
+
+        assertEquals(List.of("Blood sample"), lookup(reopened, "closed"));
+        assertEquals(List.of("Tissue sample"), lookup(reopened, "commit"));
+    }
+
+    @Test
+    public void testHitsGrowUntilEnoughResultsSurviveTheFilters() {
+        executeWrite(ds, () -> {
+            for (var i = 0; i < 5; i++) {
+                ds.getDefaultModel().add(createResource("http://example.com/other" + i), RDFS.label, "Other sample " + i);
+            }
+        });
+        var attempts = new ArrayList<Integer>();
+
+        var samples = LuceneTextIndex.queryWithGrowingHits(ds.asDatasetGraph(), "sample*", 2, 1,
+                hits -> searchByType(TYPE, hits, attempts));
+
+        assertEquals(2, samples.size());
+        assertEquals(List.of(1, 10), attempts);
+    }
+
+    @Test
+    public void testHitsStopGrowingIfTheIndexHasNoMoreHits() {
+        var attempts = new ArrayList<Integer>();
+
+        var results = LuceneTextIndex.queryWithGrowingHits(ds.asDatasetGraph(), "sample*", 2, 1,
+                hits -> searchByType("http://example.com/Unknown", hits, attempts));
+
+        assertEquals(List.of(), results);
+        assertEquals(List.of(1, 10), attempts);
+    }
+
+    private List<SearchResultDTO> searchByType(String type, int hits, List<Integer> attempts) {
+        attempts.add(hits);
+        var query = QueryFactory.create("""
+                PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+                PREFIX text: <http://jena.apache.org/text#>
+                SELECT ?id ?label
+                WHERE {
+                    ?id text:query ("sample*" %d) ; a <%s> ; rdfs:label ?label .
+                } LIMIT 2
+                """.formatted(hits, type));
+        return SparqlUtils.getByQuery(query, new QuerySolutionMap(), ds);
+    }
+}
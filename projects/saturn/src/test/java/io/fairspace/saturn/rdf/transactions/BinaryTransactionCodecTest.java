@@ -0,0 +1,107 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.apache.jena.graph.NodeFactory.createBlankNode;
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.mockito.Mockito.*;
+
+public class BinaryTransactionCodecTest {
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        var codec = new BinaryTransactionCodec();
+        var out = new ByteArrayOutputStream();
+        var writeListener = codec.write(out);
+
+        writeListener.onBegin();
+        writeListener.onMetadata("userId", "userName", 123L);
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        writeListener.onDelete(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        var blank = createBlankNode();
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), blank);
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createLiteral("line 1\nline 2"));
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createLiteral("tekst", "nl"));
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createLiteral("42", XSDDatatype.XSDinteger));
+        writeListener.onCommit();
+
+        var in = new ByteArrayInputStream(out.toByteArray());
+        var readListener = mock(TransactionListener.class);
+        codec.read(in, readListener);
+
+        verify(readListener).onBegin();
+        verify(readListener).onMetadata("userId", "userName", 123L);
+        verify(readListener).onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        verify(readListener).onDelete(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        verify(readListener).onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), blank);
+        verify(readListener).onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createLiteral("line 1\nline 2"));
+        verify(readListener).onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createLiteral("tekst", "nl"));
+        verify(readListener).onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createLiteral("42", XSDDatatype.XSDinteger));
+        verify(readListener).onCommit();
+        verifyNoMoreInteractions(readListener);
+    }
+
+    @Test
+    public void testNoMeta() throws IOException {
+        var codec = new BinaryTransactionCodec();
+        var out = new ByteArrayOutputStream();
+        var writeListener = codec.write(out);
+
+        writeListener.onBegin();
+        writeListener.onMetadata(null, null,123L);
+        writeListener.onCommit();
+
+        var in = new ByteArrayInputStream(out.toByteArray());
+        var readListener = mock(TransactionListener.class);
+        codec.read(in, readListener);
+
+        verify(readListener).onBegin();
+        verify(readListener).onMetadata(null, null, 123L);
+        verify(readListener).onCommit();
+        verifyNoMoreInteractions(readListener);
+    }
+
+    @Test
+    public void testReadsSparqlTransactions() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var writeListener = new SparqlTransactionCodec().write(out);
+
+        writeListener.onBegin();
+        writeListener.onMetadata("userId", "userName", 123L);
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        writeListener.onCommit();
+
+        var in = new ByteArrayInputStream(out.toByteArray());
+        var readListener = mock(TransactionListener.class);
+        new BinaryTransactionCodec().read(in, readListener);
+
+        verify(readListener).onBegin();
+        verify(readListener).onMetadata("userId", "userName", 123L);
+        verify(readListener).onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        verify(readListener).onCommit();
+        verifyNoMoreInteractions(readListener);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDetectsCorruptedRecords() throws IOException {
+        var codec = new BinaryTransactionCodec();
+        var out = new ByteArrayOutputStream();
+        var writeListener = codec.write(out);
+
+        writeListener.onBegin();
+        writeListener.onMetadata("userId", "userName", 123L);
+        writeListener.onAdd(createURI("http://example.com/graph"), createURI("http://example.com/subject"), createURI("http://example.com/predicate"), createURI("http://example.com/object"));
+        writeListener.onCommit();
+
+        var bytes = out.toByteArray();
+        bytes[bytes.length / 2] ^= 1;
+
+        codec.read(new ByteArrayInputStream(bytes), mock(TransactionListener.class));
+    }
+}
@@ -1,16 +1,23 @@
 package io.fairspace.saturn.rdf.transactions;
 
 import com.pivovarit.function.ThrowingFunction;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.sparql.JenaTransactionException;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.DatasetGraphWrapper;
 import org.apache.jena.vocabulary.RDFS;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.jena.query.DatasetFactory.createTxnMem;
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
@@ -78,6 +85,100 @@ public class BulkTransactionsTest {
 
     }
 
+    @Test
+    public void interactiveTasksAreExecutedBeforeBulkTasks() throws InterruptedException {
+        var order = new ConcurrentLinkedQueue<String>();
+        var blocked = block();
+
+        var bulk = new Thread(() -> txn.executeBulkWrite(m -> order.add("bulk")));
+        bulk.start();
+        awaitQueued(bulk);
+        var interactive = new Thread(() -> txn.executeWrite(m -> order.add("interactive")));
+        interactive.start();
+        awaitQueued(interactive);
+
+        blocked.countDown();
+        bulk.join();
+        interactive.join();
+
+        assertEquals(List.of("interactive", "bulk"), List.copyOf(order));
+    }
+
+    @Test
+    public void failedCommitsAreIsolated() {
+        var poison = createResource("http://example.com/poison");
+        var dsg = new DatasetGraphWrapper(DatasetGraphFactory.createTxnMem()) {
+            @Override
+            public void commit() {
+                if (getDefaultGraph().contains(poison.asNode(), Node.ANY, Node.ANY)) {
+                    abort();
+                    throw new JenaTransactionException("Cannot commit");
+                }
+                super.commit();
+            }
+        };
+        txn = new BulkTransactions(DatasetFactory.wrap(dsg));
+
+        batch(
+                m -> m.add(RESOURCE, RDFS.label, "first"),
+                m -> m.add(poison, RDFS.label, "poison"),
+                m -> m.add(RESOURCE, RDFS.label, "second"),
+                m -> m.add(RESOURCE, RDFS.label, "third")
+        );
+
+        txn.executeRead(model -> {
+            assertTrue(model.contains(RESOURCE, RDFS.label, "first"));
+            assertTrue(model.contains(RESOURCE, RDFS.label, "second"));
+            assertTrue(model.contains(RESOURCE, RDFS.label, "third"));
+            assertFalse(model.containsResource(poison));
+        });
+    }
+
+    @Test
+    public void batchesAreLimitedByNumberOfChanges() {
+        var commits = new AtomicInteger();
+        var dsg = new DatasetGraphWrapper(DatasetGraphFactory.createTxnMem()) {
+            @Override
+            public void commit() {
+                commits.incrementAndGet();
+                super.commit();
+            }
+        };
+        txn = new BulkTransactions(DatasetFactory.wrap(dsg), 1000, 2, 1000);
+
+        batch(
+                m -> m.add(RESOURCE, RDFS.label, "1").add(RESOURCE, RDFS.comment, "1"),
+                m -> m.add(RESOURCE, RDFS.label, "2").add(RESOURCE, RDFS.comment, "2"),
+                m -> m.add(RESOURCE, RDFS.label, "3").add(RESOURCE, RDFS.comment, "3")
+        );
+
+        // The blocking task and one commit per task
+        assertEquals(4, commits.get());
+    }
+
+    // blocks the worker until the latch is released
+    private CountDownLatch block() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var blocked = new CountDownLatch(1);
+        new Thread(() -> {
+            try {
+                txn.executeWrite(m -> {
+                    started.countDown();
+                    blocked.await();
+                });
+            } catch (InterruptedException ignore) {
+            }
+        }).start();
+        started.await();
+        return blocked;
+    }
+
+    private static void awaitQueued(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+    }
+
     // executes actions in one batch
     private void batch(ThrowingFunction<Model, ?, ?>... jobs) {
         try {
@@ -68,6 +68,19 @@ public class LocalTransactionLogTest {
         assertTrue(new File(new File(new File(logDir, "volume-1"), "chapter-2"), "tx-1001").exists());
     }
 
+    @Test
+    public void syncedLogContinuesNumbering() throws IOException {
+        var syncedLog = new LocalTransactionLog(logDir, codec, true);
+        for (int i = 0; i < 3; i++) {
+            syncedLog.onBegin();
+            syncedLog.onMetadata(null, null, i);
+            syncedLog.onCommit();
+        }
+
+        assertEquals(3L, new LocalTransactionLog(logDir, codec, true).size());
+        assertTrue(new File(new File(new File(logDir, "volume-1"), "chapter-1"), "tx-3").exists());
+    }
+
     @Test
     public void doesNotLogAbortedTransactions() throws IOException {
         log.onBegin();
@@ -2,7 +2,10 @@ package io.fairspace.saturn.rdf.transactions;
 
 import io.fairspace.saturn.config.Config;
 import io.fairspace.saturn.rdf.SaturnDatasetFactory;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.system.Txn;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -34,9 +37,9 @@ public class RestoreTest {
     }
 
     @After
-    public void after() {
-        config.transactionLogPath.delete();
-        config.datasetPath.delete();
+    public void after() throws IOException {
+        deleteDirectory(config.transactionLogPath);
+        deleteDirectory(config.datasetPath);
     }
 
     @Test
@@ -76,6 +79,31 @@ public class RestoreTest {
         }
     }
 
+    @Test
+    public void restoreFromSnapshotReplaysOnlyRemainingTransactions() throws Exception {
+        var txnLog = new LocalTransactionLog(config.transactionLogPath, new BinaryTransactionCodec());
+        var dsg = DatasetGraphFactory.createTxnMem();
+        var ds = DatasetFactory.wrap(new TxnLogDatasetGraph(dsg, txnLog));
+        Txn.executeWrite(ds, () -> ds.getDefaultModel()
+                .add(stmt1)
+                .add(createResource("http://example.com/1"), createProperty("http://example.com/items"), ds.getDefaultModel().createList(createTypedLiteral(1), createTypedLiteral(2))));
+
+        var snapshots = new SnapshotStore(new File(config.transactionLogPath, "snapshots"));
+        assertEquals(1L, snapshots.create(dsg, txnLog));
+
+        Txn.executeWrite(ds, () -> ds.getDefaultModel().remove(stmt1).add(stmt2));
+        var before = Txn.calculateRead(ds, () -> ds.getDefaultModel().listStatements().toSet());
+
+        // The first transaction is included in the snapshot and should not be read
+        assertTrue(new File(new File(new File(config.transactionLogPath, "volume-1"), "chapter-1"), "tx-1").delete());
+
+        var restored = DatasetGraphFactory.createTxnMem();
+        Restore.restore(restored, txnLog, snapshots);
+
+        var restoredModel = DatasetFactory.wrap(restored).getDefaultModel();
+        Txn.executeRead(restored, () -> assertEquals(before, restoredModel.listStatements().toSet()));
+    }
+
     private Transactions newDataset() throws IOException {
         return new BulkTransactions(SaturnDatasetFactory.connect(config, null));
     }
@@ -14,6 +14,7 @@ import java.io.File;
 import java.io.IOException;
 
 import static java.util.UUID.randomUUID;
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 import static org.apache.commons.io.FileUtils.deleteDirectory;
 import static org.apache.commons.io.FileUtils.getTempDirectory;
@@ -76,4 +77,32 @@ public class TransactionsTest {
         ds.commit();
     }
 
+    @Test
+    public void readSnapshotsCanBeReleasedEarly() {
+        var txn = new SimpleTransactions(ds);
+        try (var snapshot = txn.readSnapshot()) {
+            assertTrue(snapshot.isActive());
+            assertTrue(ds.isInTransaction());
+
+            ReadSnapshot.release();
+
+            assertFalse(snapshot.isActive());
+            assertFalse(ds.isInTransaction());
+        }
+        assertFalse(ds.isInTransaction());
+    }
+
+    @Test
+    public void nestedReadSnapshotsReuseTheTransaction() {
+        var txn = new SimpleTransactions(ds);
+        txn.executeRead(m -> {
+            try (var snapshot = txn.readSnapshot()) {
+                assertFalse(snapshot.isActive());
+                ReadSnapshot.release();
+                assertTrue(ds.isInTransaction());
+            }
+            assertTrue(ds.isInTransaction());
+        });
+        assertFalse(ds.isInTransaction());
+    }
 }
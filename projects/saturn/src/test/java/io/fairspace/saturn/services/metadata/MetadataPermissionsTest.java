@@ -0,0 +1,96 @@
+package io.fairspace.saturn.services.metadata;
+
+import io.fairspace.saturn.services.users.User;
+import io.fairspace.saturn.services.users.UserService;
+import io.fairspace.saturn.services.workspaces.Workspace;
+import io.fairspace.saturn.services.workspaces.WorkspaceService;
+import io.fairspace.saturn.vocabulary.FS;
+import io.fairspace.saturn.webdav.Access;
+import io.fairspace.saturn.webdav.DavFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static io.fairspace.saturn.TestUtils.setupRequestContext;
+import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetadataPermissionsTest {
+    private static final String ROOT = "http://localhost/api/webdav/";
+
+    @Mock
+    private WorkspaceService workspaceService;
+    @Mock
+    private DavFactory davFactory;
+    @Mock
+    private UserService userService;
+
+    private final User user = new User();
+    private final Model model = ModelFactory.createDefaultModel();
+    private MetadataPermissions permissions;
+
+    @Before
+    public void before() {
+        setupRequestContext();
+        when(userService.currentUser()).thenReturn(user);
+        lenient().when(davFactory.isFileSystemResource(any())).thenAnswer(invocation ->
+                invocation.<org.apache.jena.rdf.model.Resource>getArgument(0).getURI().startsWith(ROOT));
+        permissions = new MetadataPermissions(workspaceService, davFactory, userService);
+    }
+
+    @Test
+    public void readAccessMatchesCanReadMetadata() {
+        var member = model.createResource("http://localhost/ws1").addProperty(RDF.type, FS.Workspace);
+        var other = model.createResource("http://localhost/ws2").addProperty(RDF.type, FS.Workspace);
+        model.createResource(getUserURI().getURI()).addProperty(FS.isMemberOf, member);
+        var readableFile = model.createResource(ROOT + "coll1/file");
+        var hiddenFile = model.createResource(ROOT + "coll2/file");
+        var entity = model.createResource("http://localhost/entity");
+
+        var memberWs = new Workspace();
+        memberWs.setCanCollaborate(true);
+        lenient().when(workspaceService.getWorkspace(member.asNode())).thenReturn(memberWs);
+        lenient().when(workspaceService.getWorkspace(other.asNode())).thenReturn(new Workspace());
+        when(davFactory.getAccess(readableFile)).thenReturn(Access.Read);
+        when(davFactory.getAccess(hiddenFile)).thenReturn(Access.None);
+        user.setCanViewPublicMetadata(true);
+
+        var readAccess = permissions.readAccess();
+        for (var resource : new org.apache.jena.rdf.model.Resource[]{member, other, readableFile, hiddenFile, entity}) {
+            assertEquals(permissions.canReadMetadata(resource), readAccess.test(resource));
+        }
+        assertTrue(readAccess.test(member));
+        assertFalse(readAccess.test(other));
+        assertTrue(readAccess.test(entity));
+    }
+
+    @Test
+    public void readAccessIsMemoizedPerSubject() {
+        var file = model.createResource(ROOT + "coll1/file");
+        when(davFactory.getAccess(file)).thenReturn(Access.List);
+
+        var readAccess = permissions.readAccess();
+        for (var i = 0; i < 10; i++) {
+            assertTrue(readAccess.test(file));
+        }
+
+        verify(davFactory, times(1)).getAccess(file);
+        verify(userService, times(1)).currentUser();
+    }
+
+    @Test
+    public void adminsCanReadEverything() {
+        user.setAdmin(true);
+        var readAccess = permissions.readAccess();
+        assertTrue(readAccess.test(model.createResource(ROOT + "coll1/file")));
+        verifyNoInteractions(davFactory);
+    }
+}
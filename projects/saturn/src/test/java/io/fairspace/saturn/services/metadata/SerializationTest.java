@@ -0,0 +1,52 @@
+package io.fairspace.saturn.services.metadata;
+
+import io.fairspace.saturn.services.PayloadParsingException;
+import io.fairspace.saturn.services.PayloadTooLargeException;
+import org.apache.jena.riot.RDFFormat;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static io.fairspace.saturn.services.metadata.Serialization.deserialize;
+import static io.fairspace.saturn.services.metadata.Serialization.serialize;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class SerializationTest {
+    private static final String TURTLE = """
+            @prefix ex: <http://example.com/> .
+            ex:s1 ex:p "a" .
+            ex:s2 ex:p "b" .
+            ex:s3 ex:p "c" .
+            """;
+
+    @Test
+    public void testRoundTrip() {
+        var model = deserialize(new ByteArrayInputStream(TURTLE.getBytes(UTF_8)), "text/turtle", 1000, 10);
+        assertEquals(3, model.size());
+        assertEquals("http://example.com/", model.getNsPrefixURI("ex"));
+
+        for (var format : new RDFFormat[]{RDFFormat.NTRIPLES, RDFFormat.TURTLE, RDFFormat.JSONLD}) {
+            var out = new ByteArrayOutputStream();
+            serialize(model, format, out);
+            var result = deserialize(new ByteArrayInputStream(out.toByteArray()), format.getLang().getHeaderString(), 10_000, 10);
+            assertTrue(model.isIsomorphicWith(result));
+        }
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void testMaxStatements() {
+        deserialize(new ByteArrayInputStream(TURTLE.getBytes(UTF_8)), "text/turtle", 1000, 2);
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void testMaxRequestSize() {
+        deserialize(new ByteArrayInputStream(TURTLE.getBytes(UTF_8)), "text/turtle", 50, 10);
+    }
+
+    @Test(expected = PayloadParsingException.class)
+    public void testMalformedBody() {
+        deserialize(new ByteArrayInputStream("ex:s1 ex:p".getBytes(UTF_8)), "text/turtle", 1000, 10);
+    }
+}
@@ -210,6 +210,44 @@ public class ShaclValidatorTest {
         expect(resource1, FS.createdBy, newBlankNode);
     }
 
+    @Test
+    public void onlyConstraintsOfChangedPredicatesAreChecked() {
+        // The workspace misses a required label, but neither the label nor the type is changed
+        var before = modelOf(
+                resource1, RDF.type, FS.Workspace,
+                resource1, RDFS.comment, createStringLiteral("old"));
+
+        var toRemove = modelOf(resource1, RDFS.comment, createStringLiteral("old"));
+        var toAdd = modelOf(resource1, RDFS.comment, createTypedLiteral(123));
+
+        validator.validate(before, before.difference(toRemove).union(toAdd), toRemove, toAdd, violationHandler);
+
+        expect(resource1, RDFS.comment, createTypedLiteral(123));
+        verifyNoMoreInteractions(violationHandler);
+    }
+
+    @Test
+    public void unchangedStatementsAreNotValidated() {
+        var before = modelOf(
+                resource1, RDF.type, FS.File,
+                resource1, FS.createdBy, createTypedLiteral(123));
+
+        validator.validate(before, before, EMPTY_MODEL, before, violationHandler);
+
+        verifyZeroInteractions(violationHandler);
+    }
+
+    @Test
+    public void allConstraintsAreCheckedWhenTheTypeChanges() {
+        var before = modelOf(resource1, RDFS.comment, createStringLiteral("comment"));
+        var toAdd = modelOf(resource1, RDF.type, FS.Workspace);
+
+        validator.validate(before, before.union(toAdd), EMPTY_MODEL, toAdd, violationHandler);
+
+        expect(resource1, RDFS.label, null);
+        verifyNoMoreInteractions(violationHandler);
+    }
+
     @Test
     public void multipleResourcesAreValidatedAsExpected() {
         var model = createDefaultModel();
@@ -19,6 +19,7 @@ import static io.fairspace.saturn.TestUtils.*;
 import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 import static io.fairspace.saturn.rdf.SparqlUtils.generateMetadataIri;
 import static org.apache.jena.query.DatasetFactory.createTxnMem;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
@@ -68,7 +69,7 @@ public class UserServiceTest {
                     return keycloakUser;
                 })
                 .collect(Collectors.toList());
-        when(usersResource.list()).thenReturn(keycloakUsers);
+        mockKeycloak(keycloakUsers);
 
         userService = new UserService(ConfigLoader.CONFIG.auth, tx, usersResource);
         workspaceService = new WorkspaceService(tx, userService);
@@ -90,7 +91,18 @@ public class UserServiceTest {
         // Change Keycloak info, triggering a database write
         // when the user cache is refreshed
         keycloakUsers.get(0).setLastName("Updated");
-        when(usersResource.list()).thenReturn(keycloakUsers);
+    }
+
+    /**
+     * A stand-in for the Keycloak admin API, serving the users in pages
+     */
+    private void mockKeycloak(List<UserRepresentation> users) {
+        lenient().when(usersResource.list(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int first = invocation.getArgument(0);
+            int max = invocation.getArgument(1);
+            return users.subList(Math.min(first, users.size()), Math.min(first + max, users.size()));
+        });
+        lenient().when(usersResource.count()).thenAnswer(invocation -> users.size());
     }
 
     /**
@@ -128,4 +140,32 @@ public class UserServiceTest {
         // Check that the updated user was correctly saved to the database.
         Assert.assertEquals("Updated", updatedUser.getName());
     }
+
+    @Test
+    public void testIncrementalSync() {
+        var keycloak = new ArrayList<>(keycloakUsers);
+        var newUser = new UserRepresentation();
+        newUser.setId("new");
+        newUser.setUsername("new");
+        newUser.setFirstName("New");
+        keycloak.add(newUser);
+        mockKeycloak(keycloak);
+        var service = new UserService(ConfigLoader.CONFIG.auth, tx, usersResource, 2);
+
+        var users = service.getUsersMap();
+        Assert.assertEquals(3, users.size());
+        var unchanged = users.get(generateMetadataIri("admin"));
+
+        keycloak.get(0).setLastName("Updated");
+        keycloak.remove(2);
+        service.sync(true);
+
+        var synced = service.getUsersMap();
+        Assert.assertEquals(3, users.size());
+        Assert.assertEquals(2, synced.size());
+        Assert.assertSame(unchanged, synced.get(generateMetadataIri("admin")));
+        Assert.assertEquals("Updated", synced.get(generateMetadataIri("user")).getName());
+        Assert.assertEquals("Updated", tx.calculateRead(model ->
+                new DAO(model).read(User.class, generateMetadataIri("user"))).getName());
+    }
 }
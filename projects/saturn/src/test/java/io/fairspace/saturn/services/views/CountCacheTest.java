@@ -0,0 +1,103 @@
+package io.fairspace.saturn.services.views;
+
+import io.fairspace.saturn.config.*;
+import io.fairspace.saturn.rdf.transactions.*;
+import io.fairspace.saturn.vocabulary.FS;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
+public class CountCacheTest {
+    private static final String SAMPLE_TYPE = "https://institut-curie.org/ontology#BiologicalSample";
+
+    private final Config.Search searchConfig = new Config.Search();
+    private final AtomicInteger exactCounts = new AtomicInteger();
+    // A single thread, so that a task submitted after a count has started completes only after that count
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private CountCache countCache;
+
+    @Before
+    public void before() {
+        searchConfig.countEstimateTimeout = 100;
+        searchConfig.countRequestTimeout = 10_000;
+        countCache = new CountCache(searchConfig, ConfigLoader.VIEWS_CONFIG, null,
+                new TxnListenerDatasetGraph(DatasetGraphFactory.createTxnMem()), false, executor);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private CountDTO count(List<ViewFilter> filters) throws InterruptedException {
+        return countCache.count("Sample", filters, copy -> new CountDTO(exactCounts.incrementAndGet(), false), copy -> null);
+    }
+
+    private static List<ViewFilter> natureFilter(String... values) {
+        return List.of(ViewFilter.builder().field("Sample_nature").values(List.of((Object[]) values)).build());
+    }
+
+    @Test
+    public void testExactCountsAreCachedPerFilterSet() throws InterruptedException {
+        assertEquals(1, count(natureFilter("a", "b")).getCount());
+        assertEquals(1, count(natureFilter("b", "a")).getCount());
+        assertEquals(2, count(natureFilter("a")).getCount());
+        assertEquals(2, exactCounts.get());
+    }
+
+    @Test
+    public void testCountsAreInvalidatedByCommitsAffectingTheView() throws InterruptedException {
+        assertEquals(1, count(List.of()).getCount());
+
+        countCache.onCommit(Map.of(NodeFactory.createURI("http://example.com/other"), Set.of(NodeFactory.createURI("http://example.com/Other"))));
+        assertEquals(1, count(List.of()).getCount());
+
+        countCache.onCommit(Map.of(NodeFactory.createURI("http://example.com/sample"), Set.of(NodeFactory.createURI(SAMPLE_TYPE))));
+        assertEquals(2, count(List.of()).getCount());
+    }
+
+    @Test
+    public void testEstimateIsReturnedWhileExactCountIsComputed() throws Exception {
+        var release = new CountDownLatch(1);
+        var result = countCache.count("Sample", List.of(), copy -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new CountDTO(10, false);
+        }, copy -> 42L);
+        assertEquals(new CountDTO(42, false, true), result);
+
+        release.countDown();
+        // Waits until the count has been completed and cached
+        executor.submit(() -> {}).get(1, TimeUnit.SECONDS);
+        assertEquals(new CountDTO(10, false), countCache.count("Sample", List.of(), copy -> {
+            throw new AssertionError("Should be cached");
+        }, copy -> null));
+    }
+
+    @Test
+    public void testAccessDependentCountsAreInvalidatedByChangesToCollections() throws InterruptedException {
+        countCache = new CountCache(searchConfig, ConfigLoader.VIEWS_CONFIG, null,
+                new TxnListenerDatasetGraph(DatasetGraphFactory.createTxnMem()), true, executor);
+        assertEquals(1, count(List.of()).getCount());
+
+        countCache.onCommit(Map.of(NodeFactory.createURI("http://example.com/collection"), Set.of(FS.Collection.asNode())));
+        assertEquals(2, count(List.of()).getCount());
+    }
+
+    @Test
+    public void testTimedOutCountsAreNotCached() throws InterruptedException {
+        countCache.count("Sample", List.of(), copy -> new CountDTO(0, true), copy -> null);
+        assertEquals(1, count(List.of()).getCount());
+    }
+}
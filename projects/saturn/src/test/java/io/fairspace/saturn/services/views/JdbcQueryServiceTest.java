@@ -7,8 +7,12 @@ import io.fairspace.saturn.services.maintenance.*;
 import io.fairspace.saturn.services.metadata.*;
 import io.fairspace.saturn.services.metadata.validation.*;
 import io.fairspace.saturn.services.search.FileSearchRequest;
+import io.fairspace.saturn.services.search.LookupSearchRequest;
+import io.fairspace.saturn.services.search.SearchResultDTO;
+import io.fairspace.saturn.services.search.SearchService;
 import io.fairspace.saturn.services.users.*;
 import io.fairspace.saturn.services.workspaces.*;
+import io.fairspace.saturn.vocabulary.FS;
 import io.fairspace.saturn.webdav.*;
 import io.milton.http.ResourceFactory;
 import io.milton.http.exceptions.*;
@@ -17,6 +21,7 @@ import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.sparql.core.*;
 import org.apache.jena.sparql.util.*;
+import org.apache.jena.vocabulary.*;
 import org.eclipse.jetty.server.*;
 import org.junit.*;
 import org.junit.runner.*;
@@ -33,6 +38,7 @@ import static io.fairspace.saturn.auth.RequestContext.*;
 import static io.fairspace.saturn.config.Services.FS_ROOT;
 import static io.fairspace.saturn.vocabulary.Vocabularies.VOCABULARY;
 import static org.apache.jena.query.DatasetFactory.*;
+import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -52,7 +58,11 @@ public class JdbcQueryServiceTest {
     WorkspaceService workspaceService;
     MetadataService api;
     QueryService queryService;
+    SearchService searchService;
     MaintenanceService maintenanceService;
+    Transactions tx;
+    ViewStoreClientFactory viewStoreClientFactory;
+    Dataset ds;
 
     User user;
     Authentication.User userAuthentication;
@@ -80,11 +90,11 @@ public class JdbcQueryServiceTest {
         viewDatabase.password = "";
         ViewsConfig config = ConfigLoader.VIEWS_CONFIG;
         ViewStoreClientFactory.H2_DATABASE = true;
-        var viewStoreClientFactory = new ViewStoreClientFactory(config, viewDatabase);
+        viewStoreClientFactory = new ViewStoreClientFactory(config, viewDatabase);
 
         var dsg = new TxnIndexDatasetGraph(DatasetGraphFactory.createTxnMem(), viewStoreClientFactory);
-        Dataset ds = wrap(dsg);
-        Transactions tx = new SimpleTransactions(ds);
+        ds = wrap(dsg);
+        tx = new SimpleTransactions(ds);
         Model model = ds.getDefaultModel();
 
         maintenanceService = new MaintenanceService(userService, ds, viewStoreClientFactory);
@@ -97,6 +107,7 @@ public class JdbcQueryServiceTest {
         ds.getContext().set(FS_ROOT, davFactory.root);
 
         queryService = new JdbcQueryService(ConfigLoader.CONFIG.search, viewStoreClientFactory, tx, davFactory.root);
+        searchService = new SearchService(ds, ConfigLoader.CONFIG.search, viewStoreClientFactory);
 
         when(permissions.canWriteMetadata(any())).thenReturn(true);
         api = new MetadataService(tx, VOCABULARY, new ComposedValidator(new UniqueLabelValidator()), permissions);
@@ -152,7 +163,7 @@ public class JdbcQueryServiceTest {
         var page = queryService.retrieveViewPage(request);
         Assert.assertEquals(2, page.getRows().size());
         var row = page.getRows().get(0);
-        Assert.assertEquals(Set.of("Sample", "Sample_nature", "Sample_parentIsOfNature", "Sample_origin", "Sample_topography", "Sample_tumorCellularity"), row.keySet());
+        Assert.assertEquals(Set.of("Sample", "Sample_description", "Sample_nature", "Sample_parentIsOfNature", "Sample_origin", "Sample_topography", "Sample_tumorCellularity"), row.keySet());
         Assert.assertEquals("Sample A for subject 1", row.get("Sample").stream().findFirst().orElseThrow().getLabel());
         Assert.assertEquals("Blood", row.get("Sample_nature").stream().findFirst().orElseThrow().getLabel());
         Assert.assertEquals("Liver", row.get("Sample_topography").stream().findFirst().orElseThrow().getLabel());
@@ -169,13 +180,42 @@ public class JdbcQueryServiceTest {
         var page = queryService.retrieveViewPage(request);
         Assert.assertEquals(2, page.getRows().size());
         var row = page.getRows().get(0);
-        Assert.assertEquals(Set.of("Sample", "Sample_nature", "Sample_parentIsOfNature", "Sample_origin", "Sample_topography", "Sample_tumorCellularity"), row.keySet());
+        Assert.assertEquals(Set.of("Sample", "Sample_description", "Sample_nature", "Sample_parentIsOfNature", "Sample_origin", "Sample_topography", "Sample_tumorCellularity"), row.keySet());
         Assert.assertEquals("Sample A for subject 1", row.get("Sample").stream().findFirst().orElseThrow().getLabel());
         Assert.assertEquals("Blood", row.get("Sample_nature").stream().findFirst().orElseThrow().getLabel());
         Assert.assertEquals("Liver", row.get("Sample_topography").stream().findFirst().orElseThrow().getLabel());
         Assert.assertEquals(45.2f, ((Number)row.get("Sample_tumorCellularity").stream().findFirst().orElseThrow().getValue()).floatValue(), 0.01);
     }
 
+    @Test
+    public void testRetrieveSamplePagesUsingCursor() {
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setSize(1);
+        var firstPage = queryService.retrieveViewPage(request);
+        Assert.assertEquals(1, firstPage.getRows().size());
+        Assert.assertTrue(firstPage.isHasNext());
+        Assert.assertNotNull(firstPage.getNextCursor());
+
+        request.setCursor(firstPage.getNextCursor());
+        var secondPage = queryService.retrieveViewPage(request);
+        Assert.assertEquals(1, secondPage.getRows().size());
+        Assert.assertFalse(secondPage.isHasNext());
+        Assert.assertNull(secondPage.getNextCursor());
+
+        request.setCursor(null);
+        request.setPage(2);
+        Assert.assertEquals(secondPage.getRows(), queryService.retrieveViewPage(request).getRows());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRetrieveSamplePageUsingInvalidCursor() {
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setCursor("not a cursor");
+        queryService.retrieveViewPage(request);
+    }
+
     @Test
     public void testRetrieveSamplePageUsingSampleFilter() {
         var request = new ViewRequest();
@@ -224,6 +264,27 @@ public class JdbcQueryServiceTest {
         Assert.assertEquals(0, page.getRows().size());
     }
 
+    @Test
+    public void testFacetsOfResourcesAreRestrictedToAccessibleCollections() {
+        var viewService = new ViewService(ConfigLoader.CONFIG.search, ConfigLoader.VIEWS_CONFIG, ds, viewStoreClientFactory);
+
+        // The imaging analysis type is only used in coll1, which is not accessible by the regular user
+        Assert.assertEquals(Set.of("https://institut-curie.org/osiris#O6-12", "https://institut-curie.org/osiris#O6-15"),
+                analysisTypes(viewService));
+
+        selectAdmin();
+        Assert.assertEquals(Set.of(ANALYSIS_TYPE_IMAGING, "https://institut-curie.org/osiris#O6-12", "https://institut-curie.org/osiris#O6-15"),
+                analysisTypes(viewService));
+    }
+
+    private static Set<Object> analysisTypes(ViewService viewService) {
+        return viewService.getFacets().stream()
+                .filter(facet -> facet.getName().equals("Resource_analysisType"))
+                .flatMap(facet -> facet.getValues().stream())
+                .map(ValueDTO::getValue)
+                .collect(Collectors.toSet());
+    }
+
     @Test
     public void testRetrieveSamplePageIncludeJoin() {
         var request = new ViewRequest();
@@ -263,6 +324,79 @@ public class JdbcQueryServiceTest {
                 row2.get("Resource_analysisType").stream().map(ValueDTO::getLabel).collect(Collectors.toSet()));
     }
 
+    @Test
+    public void testUpdatedRowsAndLinksAreReflectedInPages() {
+        tx.executeWrite(model -> {
+            var subjectProperty = model.createProperty("https://institut-curie.org/ontology#subject");
+            model.createResource("http://example.com/samples#s1-a")
+                    .removeAll(subjectProperty)
+                    .addProperty(subjectProperty, model.createResource("http://example.com/subjects#s2"))
+                    .removeAll(RDFS.label)
+                    .addProperty(RDFS.label, "Sample A, now for subject 2");
+        });
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setFilters(Collections.singletonList(
+                ViewFilter.builder()
+                        .field("Subject")
+                        .values(Collections.singletonList("http://example.com/subjects#s2"))
+                        .build()
+        ));
+        var page = queryService.retrieveViewPage(request);
+        Assert.assertEquals(
+                Set.of("Sample A, now for subject 2", "Sample B for subject 2"),
+                page.getRows().stream().map(row -> row.get("Sample").iterator().next().getLabel()).collect(Collectors.toSet()));
+
+        request.setFilters(Collections.singletonList(
+                ViewFilter.builder()
+                        .field("Subject")
+                        .values(Collections.singletonList("http://example.com/subjects#s1"))
+                        .build()
+        ));
+        Assert.assertEquals(0, queryService.retrieveViewPage(request).getRows().size());
+    }
+
+    @Test
+    public void testReplaceValueSetsLargerThanAStatement() throws SQLException {
+        var id = "http://example.com/resource-with-many-values";
+        var size = ViewStoreClient.rowsPerStatement(1) * 3 / 2;
+        var values = IntStream.range(0, size).mapToObj(i -> "value " + i).collect(Collectors.toSet());
+        try (var client = viewStoreClientFactory.build()) {
+            var table = client.configuration.propertyTables.get("Resource").get("analysisType").name;
+            try {
+                client.updateValues("Resource", id, "analysisType", values);
+                client.commit();
+                Assert.assertEquals(size, countValues(client, table, id));
+
+                // Keeps the first two thirds and adds as many new values
+                var replacement = IntStream.range(size / 3, size + size / 3).mapToObj(i -> "value " + i).collect(Collectors.toSet());
+                client.updateValues("Resource", id, "analysisType", replacement);
+                client.commit();
+                Assert.assertEquals(size, countValues(client, table, id));
+                try (var query = client.connection.prepareStatement(
+                        "select count(*) from " + table + " where resource_id = ? and analysistype = ?")) {
+                    query.setString(1, id);
+                    query.setString(2, "value 0");
+                    var result = query.executeQuery();
+                    result.next();
+                    Assert.assertEquals(0, result.getInt(1));
+                }
+            } finally {
+                client.updateValues("Resource", id, "analysisType", Set.of());
+                client.commit();
+            }
+        }
+    }
+
+    private static int countValues(ViewStoreClient client, String table, String id) throws SQLException {
+        try (var query = client.connection.prepareStatement("select count(*) from " + table + " where resource_id = ?")) {
+            query.setString(1, id);
+            var result = query.executeQuery();
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
     @Test
     public void testCountSamples() {
         var request = new CountRequest();
@@ -283,6 +417,92 @@ public class JdbcQueryServiceTest {
         Assert.assertEquals("sample-s2-b-rna_copy.fastq", results.get(1).getLabel());
     }
 
+    @Test
+    public void testLookupSamplesInView() {
+        var request = new LookupSearchRequest();
+        request.setResourceType("https://institut-curie.org/ontology#BiologicalSample");
+        request.setQuery("FOR SUBJECT");
+        var results = searchService.getLookupSearchResults(request).getResults();
+        Assert.assertEquals(List.of("Sample A for subject 1", "Sample B for subject 2"),
+                results.stream().map(SearchResultDTO::getLabel).collect(Collectors.toList()));
+
+        // Only exact matches are returned if there are any
+        request.setQuery("Sample B for subject 2");
+        results = searchService.getLookupSearchResults(request).getResults();
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("Sample B for subject 2", results.get(0).getLabel());
+        Assert.assertEquals("https://institut-curie.org/ontology#BiologicalSample", results.get(0).getType());
+    }
+
+    @Test
+    public void testLookupSamplesInViewByDescription() {
+        var sample = org.apache.jena.rdf.model.ResourceFactory.createResource("http://example.com/samples#s2-b");
+        api.patch(createDefaultModel().add(sample, RDFS.comment, "Collected in the morning"));
+
+        var request = new LookupSearchRequest();
+        request.setResourceType("https://institut-curie.org/ontology#BiologicalSample");
+        request.setQuery("MORNING");
+        var results = searchService.getLookupSearchResults(request).getResults();
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("Sample B for subject 2", results.get(0).getLabel());
+        Assert.assertEquals("Collected in the morning", results.get(0).getComment());
+    }
+
+    @Test
+    public void testLookupSamplesInViewSkipsUnreadableRows() throws SQLException {
+        // Rows of resources missing from the (filtered) dataset, ranked before the readable ones
+        try (var connection = viewStoreClientFactory.getConnection()) {
+            connection.setAutoCommit(true);
+            try (var insert = connection.prepareStatement("insert into sample (id, label) values (?, ?)")) {
+                for (var i = 0; i < 150; i++) {
+                    insert.setString(1, "http://example.com/samples#hidden-" + i);
+                    insert.setString(2, String.format("Sample %03d for subject 0", i));
+                    insert.executeUpdate();
+                }
+            }
+            try {
+                var request = new LookupSearchRequest();
+                request.setResourceType("https://institut-curie.org/ontology#BiologicalSample");
+                request.setQuery("for subject");
+                var results = searchService.getLookupSearchResults(request).getResults();
+                Assert.assertEquals(List.of("Sample A for subject 1", "Sample B for subject 2"),
+                        results.stream().map(SearchResultDTO::getLabel).collect(Collectors.toList()));
+            } finally {
+                try (var delete = connection.prepareStatement("delete from sample where id like 'http://example.com/samples#hidden-%'")) {
+                    delete.executeUpdate();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLookupSamplesFallsBackToTheDatasetIfFewRowsAreReadable() throws SQLException {
+        // More unreadable rows than are read from the view
+        try (var connection = viewStoreClientFactory.getConnection()) {
+            connection.setAutoCommit(true);
+            try (var insert = connection.prepareStatement("insert into sample (id, label) values (?, ?)")) {
+                for (var i = 0; i < 1050; i++) {
+                    insert.setString(1, "http://example.com/samples#hidden-" + i);
+                    insert.setString(2, String.format("Sample %04d for subject 0", i));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try {
+                var request = new LookupSearchRequest();
+                request.setResourceType("https://institut-curie.org/ontology#BiologicalSample");
+                request.setQuery("for subject");
+                var results = searchService.getLookupSearchResults(request).getResults();
+                Assert.assertEquals(List.of("Sample A for subject 1", "Sample B for subject 2"),
+                        results.stream().map(SearchResultDTO::getLabel).collect(Collectors.toList()));
+            } finally {
+                try (var delete = connection.prepareStatement("delete from sample where id like 'http://example.com/samples#hidden-%'")) {
+                    delete.executeUpdate();
+                }
+            }
+        }
+    }
+
     @Test
     public void testSearchFilesRestrictsToAccessibleCollections() {
         var request = new FileSearchRequest();
@@ -312,6 +532,20 @@ public class JdbcQueryServiceTest {
         Assert.assertEquals("coffee.jpg", results.get(0).getLabel());
     }
 
+    @Test
+    public void testReindexingSkipsDuplicateRowsOfEntitiesWithMultipleTypes() {
+        // The file gets a second type of the Resource view, so that it is copied for both types
+        tx.executeWrite(model -> model.add(model.createResource(baseUri + "/coll1/coffee.jpg"), RDF.type, FS.Directory));
+        maintenanceService.recreateIndex();
+
+        selectAdmin();
+        var request = new FileSearchRequest();
+        request.setQuery("coffee");
+        var results = queryService.searchFiles(request);
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("coffee.jpg", results.get(0).getLabel());
+    }
+
     @Test
     public void testSearchFilesRestrictsToParentDirectory() {
         selectAdmin();
@@ -0,0 +1,220 @@
+package io.fairspace.saturn.services.views;
+
+import io.fairspace.saturn.config.*;
+import io.fairspace.saturn.rdf.transactions.*;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.*;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static io.fairspace.saturn.TestUtils.setupRequestContext;
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.sparql.core.DatasetGraphFactory.createTxnMem;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ViewIndexerTest {
+    private static final Node SUBJECT_TYPE = createURI("https://institut-curie.org/ontology#Subject");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ViewStoreClientFactory viewStoreClientFactory;
+    private LocalTransactionLog txnLog;
+    private DatasetGraph dsg;
+    private ViewIndexer viewIndexer;
+    private final CountDownLatch applying = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+    private final AtomicInteger applied = new AtomicInteger();
+
+    @Before
+    public void before() throws SQLException, IOException {
+        setupRequestContext();
+        var viewDatabase = new Config.ViewDatabase();
+        viewDatabase.url = "jdbc:h2:mem:indexer;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        viewDatabase.username = "sa";
+        viewDatabase.password = "";
+        ViewStoreClientFactory.H2_DATABASE = true;
+        viewStoreClientFactory = spy(new ViewStoreClientFactory(ConfigLoader.VIEWS_CONFIG, viewDatabase));
+        try (var connection = viewStoreClientFactory.getConnection()) {
+            connection.createStatement().executeUpdate("delete from index_state");
+            connection.createStatement().executeUpdate("delete from subject");
+            connection.commit();
+        }
+
+        dsg = createTxnMem();
+        txnLog = new LocalTransactionLog(folder.newFolder(), new BinaryTransactionCodec());
+        viewIndexer = new ViewIndexer(viewStoreClientFactory, dsg, txnLog);
+    }
+
+    @After
+    public void after() {
+        proceed.countDown();
+        viewIndexer.awaitIndexed(10_000);
+        viewIndexer.close();
+    }
+
+    @Test
+    public void testIndexingResumesFromTheTransactionLogAfterARestart() throws Exception {
+        // Transactions committed before the restart, only the first one has been indexed
+        var loggedOnly = new TxnLogDatasetGraph(dsg, txnLog);
+        addSubject(loggedOnly, "http://example.com/s0");
+        addSubject(loggedOnly, "http://example.com/s1");
+        addSubject(loggedOnly, "http://example.com/s2");
+        try (var client = viewStoreClientFactory.build()) {
+            client.updateLogIndex(0);
+            client.commit();
+        }
+
+        viewIndexer.start();
+
+        assertTrue(viewIndexer.awaitIndexed(2, 10_000));
+        assertFalse(isIndexed("http://example.com/s0"));
+        assertTrue(isIndexed("http://example.com/s1"));
+        assertTrue(isIndexed("http://example.com/s2"));
+        assertEquals(2L, (long) retrieveLogIndex());
+    }
+
+    @Test
+    public void testReadYourWritesWaitsForEarlierCommits() throws Exception {
+        var ds = indexedDataset();
+        blockIndexing();
+
+        addSubject(ds, "http://example.com/s0");
+        assertTrue(applying.await(10, TimeUnit.SECONDS));
+
+        var awaited = CompletableFuture.supplyAsync(() -> viewIndexer.awaitIndexed(10_000));
+        Thread.sleep(100);
+        assertFalse(awaited.isDone());
+
+        proceed.countDown();
+        assertTrue(awaited.get(10, TimeUnit.SECONDS));
+        assertTrue(isIndexed("http://example.com/s0"));
+    }
+
+    @Test
+    public void testReadYourWritesTimesOut() throws Exception {
+        var ds = indexedDataset();
+        blockIndexing();
+
+        addSubject(ds, "http://example.com/s0");
+        assertTrue(applying.await(10, TimeUnit.SECONDS));
+
+        var request = new CountRequest();
+        request.setView("Subject");
+        request.setReadYourWrites(true);
+        var queryService = new JdbcQueryService(ConfigLoader.CONFIG.search, viewStoreClientFactory, null, null, viewIndexer, 100);
+
+        var start = System.currentTimeMillis();
+        queryService.awaitIndexingIfRequired(request);
+
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertFalse(isIndexed("http://example.com/s0"));
+    }
+
+    @Test
+    public void testPendingBatchesAreCoalesced() throws Exception {
+        var ds = indexedDataset();
+        blockIndexing();
+
+        addSubject(ds, "http://example.com/s0");
+        assertTrue(applying.await(10, TimeUnit.SECONDS));
+        addSubject(ds, "http://example.com/s1");
+        addSubject(ds, "http://example.com/s2");
+        addSubject(ds, "http://example.com/s3");
+        assertEquals(4, viewIndexer.getLag());
+
+        proceed.countDown();
+
+        assertTrue(viewIndexer.awaitIndexed(3, 10_000));
+        assertEquals(2, applied.get());
+        assertEquals(0, viewIndexer.getLag());
+        assertTrue(isIndexed("http://example.com/s1"));
+        assertTrue(isIndexed("http://example.com/s3"));
+        assertEquals(3L, (long) retrieveLogIndex());
+    }
+
+    @Test
+    public void testHighWaterMarkStaysBehindUnappliedTransactions() throws Exception {
+        var ds = indexedDataset();
+        blockIndexing();
+
+        addSubject(ds, "http://example.com/s0");
+        assertTrue(applying.await(10, TimeUnit.SECONDS));
+        addSubject(ds, "http://example.com/s1");
+
+        assertEquals(-1, viewIndexer.getLastIndexed());
+        assertEquals(-1L, (long) retrieveLogIndex());
+        assertFalse(viewIndexer.awaitIndexed(0, 100));
+
+        proceed.countDown();
+
+        assertTrue(viewIndexer.awaitIndexed(1, 10_000));
+        assertEquals(1, viewIndexer.getLastIndexed());
+        assertEquals(1L, (long) retrieveLogIndex());
+    }
+
+    @Test
+    public void testHighWaterMarkStaysBehindFailedTransactions() throws Exception {
+        var ds = indexedDataset();
+        doThrow(new SQLException("Unavailable"))
+                .doCallRealMethod()
+                .when(viewStoreClientFactory).build();
+
+        addSubject(ds, "http://example.com/s0");
+
+        assertFalse(viewIndexer.awaitIndexed(0, 100));
+        assertEquals(-1, viewIndexer.getLastIndexed());
+        assertFalse(isIndexed("http://example.com/s0"));
+
+        // Retried after a delay
+        assertTrue(viewIndexer.awaitIndexed(0, 10_000));
+        assertTrue(isIndexed("http://example.com/s0"));
+        assertEquals(0L, (long) retrieveLogIndex());
+    }
+
+    private DatasetGraph indexedDataset() throws SQLException, IOException {
+        viewIndexer.start();
+        return new TxnLogDatasetGraph(new TxnIndexDatasetGraph(dsg, viewStoreClientFactory, viewIndexer), txnLog);
+    }
+
+    private void blockIndexing() throws SQLException {
+        doAnswer(invocation -> {
+            applied.incrementAndGet();
+            applying.countDown();
+            proceed.await();
+            return invocation.callRealMethod();
+        }).when(viewStoreClientFactory).build();
+    }
+
+    private static void addSubject(DatasetGraph ds, String uri) {
+        var subject = createURI(uri);
+        Txn.executeWrite(ds, () -> {
+            ds.getDefaultGraph().add(subject, RDF.type.asNode(), SUBJECT_TYPE);
+            ds.getDefaultGraph().add(subject, RDFS.label.asNode(), createLiteral(subject.getLocalName()));
+        });
+    }
+
+    private boolean isIndexed(String uri) throws SQLException {
+        try (var connection = viewStoreClientFactory.getConnection();
+             var query = connection.prepareStatement("select id from subject where id = ?")) {
+            query.setString(1, uri);
+            return query.executeQuery().next();
+        }
+    }
+
+    private Long retrieveLogIndex() throws SQLException {
+        // Not built by the factory, which may be blocked
+        try (var client = new ViewStoreClient(viewStoreClientFactory.getConnection(), viewStoreClientFactory.configuration)) {
+            return client.retrieveLogIndex();
+        }
+    }
+}
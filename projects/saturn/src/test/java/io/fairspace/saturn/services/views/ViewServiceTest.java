@@ -14,6 +14,7 @@ import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.sparql.core.*;
 import org.apache.jena.sparql.util.*;
+import org.apache.jena.vocabulary.*;
 import org.eclipse.jetty.server.*;
 import org.junit.*;
 import org.junit.runner.*;
@@ -22,6 +23,7 @@ import org.mockito.junit.*;
 
 import java.io.*;
 import java.sql.*;
+import java.util.*;
 import java.util.stream.*;
 
 import static io.fairspace.saturn.TestUtils.*;
@@ -30,6 +32,8 @@ import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 import static io.fairspace.saturn.config.Services.*;
 import static io.fairspace.saturn.vocabulary.Vocabularies.VOCABULARY;
 import static org.apache.jena.query.DatasetFactory.*;
+import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
@@ -58,7 +62,7 @@ public class ViewServiceTest {
         ViewStoreClientFactory.H2_DATABASE = true;
         var viewStoreClientFactory = new ViewStoreClientFactory(config, viewDatabase);
 
-        var dsg = new TxnIndexDatasetGraph(DatasetGraphFactory.createTxnMem(), viewStoreClientFactory);
+        var dsg = new TxnListenerDatasetGraph(new TxnIndexDatasetGraph(DatasetGraphFactory.createTxnMem(), viewStoreClientFactory));
 
         Dataset ds = wrap(dsg);
         Transactions tx = new SimpleTransactions(ds);
@@ -71,7 +75,7 @@ public class ViewServiceTest {
         var davFactory = new DavFactory(model.createResource(baseUri), store, userService, context);
         ds.getContext().set(FS_ROOT, davFactory.root);
 
-        viewService = new ViewService(ConfigLoader.CONFIG.search, ConfigLoader.VIEWS_CONFIG, ds, viewStoreClientFactory);
+        viewService = new ViewService(ConfigLoader.CONFIG.search, ConfigLoader.VIEWS_CONFIG, ds, viewStoreClientFactory, null, dsg);
 
         when(permissions.canWriteMetadata(any())).thenReturn(true);
         api = new MetadataService(tx, VOCABULARY, new ComposedValidator(new UniqueLabelValidator()), permissions);
@@ -109,4 +113,48 @@ public class ViewServiceTest {
         Assert.assertEquals(2, dateFacets.size());
         viewService.getViews();
     }
+
+    @Test
+    public void testFacetsAreCachedUntilInvalidatedByCommit() {
+        Assert.assertEquals(57, getAgeAtDiagnosisMax());
+        Assert.assertSame(viewService.getFacets().get(0), viewService.getFacets().get(0));
+
+        var model = createDefaultModel();
+        model.createResource("http://example.com/events#e-new")
+                .addProperty(RDF.type, model.createResource("https://institut-curie.org/ontology#TumorPathologyEvent"))
+                .addProperty(RDFS.label, "New tumor pathology event")
+                .addLiteral(model.createProperty("https://institut-curie.org/ontology#ageAtDiagnosis"), 120);
+        api.put(model);
+
+        Assert.assertEquals(120, getAgeAtDiagnosisMax());
+    }
+
+    @Test
+    public void testDeletedTermsAreNotTermValues() {
+        Assert.assertEquals(Set.of("Female", "Male"), getGenderValues());
+
+        api.softDelete(createResource("http://hl7.org/fhir/administrative-gender#female"));
+
+        Assert.assertEquals(Set.of("Male"), getGenderValues());
+    }
+
+    private Set<String> getGenderValues() {
+        var view = ConfigLoader.VIEWS_CONFIG.views.stream()
+                .filter(v -> v.name.equals("Subject"))
+                .findFirst().orElseThrow();
+        var column = view.columns.stream()
+                .filter(c -> c.name.equals("gender"))
+                .findFirst().orElseThrow();
+        return viewService.getTermValues(view, column, null).stream()
+                .map(ValueDTO::getLabel)
+                .collect(Collectors.toSet());
+    }
+
+    private int getAgeAtDiagnosisMax() {
+        return viewService.getFacets().stream()
+                .filter(facet -> facet.getName().equals("TumorPathologyEvent_ageAtDiagnosis"))
+                .map(facet -> ((Number) facet.getMax()).intValue())
+                .findFirst()
+                .orElseThrow();
+    }
 }
@@ -1,13 +1,17 @@
 package io.fairspace.saturn.services.workspaces;
 
+import io.fairspace.saturn.rdf.dao.DAO;
 import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
 import io.fairspace.saturn.rdf.transactions.Transactions;
+import io.fairspace.saturn.rdf.transactions.TxnListenerDatasetGraph;
 import io.fairspace.saturn.services.AccessDeniedException;
 import io.fairspace.saturn.services.users.User;
 import io.fairspace.saturn.services.users.UserService;
 import io.fairspace.saturn.vocabulary.FS;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.DatasetImpl;
 import org.apache.jena.vocabulary.RDF;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,6 +21,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import javax.mail.Session;
 
+import static io.fairspace.saturn.TestUtils.createTestUser;
 import static io.fairspace.saturn.TestUtils.setupRequestContext;
 import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.apache.jena.query.DatasetFactory.createTxnMem;
@@ -97,4 +102,41 @@ public class WorkspaceServiceTest {
             assertEquals("Workspace is not empty", e.getMessage());
         }
     }
+
+    @Test
+    public void testSummariesAreMaintainedFromCommittedChanges() {
+        var listeners = new TxnListenerDatasetGraph(DatasetGraphFactory.createTxnMem());
+        var tx = new SimpleTransactions(DatasetImpl.wrap(listeners));
+        var service = new WorkspaceService(tx, userService, listeners);
+        user.setAdmin(true);
+        var member = createTestUser("member", false);
+        var workspace = service.createWorkspace(Workspace.builder().code("W").build()).getIri();
+        tx.executeWrite(model -> {
+            new DAO(model).write(member);
+            model.add(COLLECTION_1, RDF.type, FS.Collection)
+                    .add(COLLECTION_1, FS.ownedBy, model.wrapAsResource(workspace));
+        });
+
+        var summary = service.listWorkspaces().get(0).getSummary();
+        assertEquals(1, summary.getTotalCollectionCount());
+        assertEquals(1, summary.getNonDeletedCollectionCount());
+        assertEquals(0, summary.getMemberCount());
+
+        tx.executeWrite(model -> model.add(COLLECTION_1, FS.dateDeleted, "2021-01-01"));
+        service.setUserRole(workspace, member.getIri(), WorkspaceRole.Manager);
+
+        var listed = service.listWorkspaces().get(0);
+        assertEquals(1, listed.getSummary().getTotalCollectionCount());
+        assertEquals(0, listed.getSummary().getNonDeletedCollectionCount());
+        assertEquals(1, listed.getSummary().getMemberCount());
+        assertEquals(member.getIri(), listed.getManagers().get(0).getIri());
+
+        tx.executeWrite(model -> model.removeAll(COLLECTION_1, null, null));
+        service.setUserRole(workspace, member.getIri(), WorkspaceRole.None);
+
+        listed = service.listWorkspaces().get(0);
+        assertEquals(0, listed.getSummary().getTotalCollectionCount());
+        assertEquals(0, listed.getSummary().getMemberCount());
+        assertTrue(listed.getManagers().isEmpty());
+    }
 }
@@ -0,0 +1,69 @@
+package io.fairspace.saturn.services.workspaces;
+
+import io.fairspace.saturn.vocabulary.FS;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.jena.query.DatasetFactory.wrap;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.apache.jena.system.Txn.calculateRead;
+import static org.apache.jena.system.Txn.executeWrite;
+import static org.junit.Assert.*;
+
+public class WorkspaceSummaryIndexTest {
+    private static final Resource WORKSPACE = createResource("http://localhost/iri/W1");
+
+    private final DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+    private final Dataset ds = wrap(dsg);
+    private WorkspaceSummaryIndex index;
+
+    @Before
+    public void setUp() {
+        index = new WorkspaceSummaryIndex(dsg, 2);
+        executeWrite(ds, () -> ds.getDefaultModel().add(WORKSPACE, RDF.type, FS.Workspace));
+        index.onCommit(Map.of(WORKSPACE.asNode(), Set.of(FS.Workspace.asNode())));
+    }
+
+    private WorkspaceSummaryIndex.Entry summary() {
+        var position = index.position();
+        return calculateRead(ds, () -> index.summaries(ds.getDefaultModel(), position).get(WORKSPACE.asNode()));
+    }
+
+    private void addCollection(int i) {
+        var collection = createResource("http://localhost/iri/C" + i);
+        executeWrite(ds, () -> ds.getDefaultModel()
+                .add(collection, RDF.type, FS.Collection)
+                .add(collection, FS.ownedBy, WORKSPACE));
+        index.onCommit(Map.<Node, Set<Node>>of(collection.asNode(), Set.of(FS.Collection.asNode())));
+    }
+
+    @Test
+    public void testSummariesReflectQueuedChanges() {
+        assertEquals(0, summary().getTotalCollectionCount());
+
+        addCollection(1);
+        assertEquals(1, index.queuedChanges());
+        assertEquals(1, summary().getTotalCollectionCount());
+        assertEquals(0, index.queuedChanges());
+    }
+
+    @Test
+    public void testQueueIsBoundedAndSummariesAreComputedAgainAfterDroppingChanges() {
+        assertEquals(0, summary().getTotalCollectionCount());
+
+        for (var i = 0; i < 5; i++) {
+            addCollection(i);
+            assertTrue(index.queuedChanges() <= 2);
+        }
+        assertEquals(5, summary().getTotalCollectionCount());
+    }
+}
@@ -0,0 +1,85 @@
+package io.fairspace.saturn.webdav;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.apache.commons.io.FileUtils.writeByteArrayToFile;
+import static org.junit.Assert.*;
+
+public class ContentAddressedBlobStoreTest {
+    private final File dir = new File(getTempDirectory(), randomUUID().toString());
+    private BlobStore blobStore;
+    private byte[] contents1 = new byte[]{0, 1, 2, 3};
+    private byte[] contents2 = new byte[]{4, 5, 6, 7, 8, 9};
+
+    @Before
+    public void before() {
+        blobStore = new ContentAddressedBlobStore(dir);
+    }
+
+    @After
+    public void after() throws IOException {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void shouldReadExactlyWhatWasWritten() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents1));
+        var out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 0, null);
+        assertArrayEquals(contents1, out.toByteArray());
+    }
+
+    @Test
+    public void shouldReadRanges() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents2));
+        var out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 1, 3L);
+        assertArrayEquals(new byte[]{5, 6, 7}, out.toByteArray());
+
+        out.reset();
+        blobStore.read(id, out, 4, null);
+        assertArrayEquals(new byte[]{8, 9}, out.toByteArray());
+    }
+
+    @Test
+    public void shouldDeduplicateIdenticalContents() throws IOException {
+        var id1 = blobStore.write(new ByteArrayInputStream(contents1));
+        var id2 = blobStore.write(new ByteArrayInputStream(contents1.clone()));
+        var id3 = blobStore.write(new ByteArrayInputStream(contents2));
+        assertEquals(id1, id2);
+        assertNotEquals(id1, id3);
+        assertEquals(64, id1.length());
+        assertTrue(new File(dir, id1.substring(0, 2) + "/" + id1.substring(2, 4) + "/" + id1).exists());
+    }
+
+    @Test
+    public void shouldReplaceIncompleteBlobs() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents2));
+        var file = new File(dir, id.substring(0, 2) + "/" + id.substring(2, 4) + "/" + id);
+        writeByteArrayToFile(file, new byte[]{4, 5});
+
+        assertEquals(id, blobStore.write(new ByteArrayInputStream(contents2.clone())));
+
+        var out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 0, null);
+        assertArrayEquals(contents2, out.toByteArray());
+    }
+
+    @Test
+    public void shouldReadBlobsOfLocalBlobStore() throws IOException {
+        var id = new LocalBlobStore(dir).write(new ByteArrayInputStream(contents2));
+        var out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 0, null);
+        assertArrayEquals(contents2, out.toByteArray());
+    }
+}
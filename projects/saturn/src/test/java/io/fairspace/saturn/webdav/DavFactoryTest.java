@@ -3,6 +3,7 @@ package io.fairspace.saturn.webdav;
 import io.fairspace.saturn.rdf.dao.DAO;
 import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
 import io.fairspace.saturn.rdf.transactions.Transactions;
+import io.fairspace.saturn.rdf.transactions.TxnListenerDatasetGraph;
 import io.fairspace.saturn.services.metadata.MetadataService;
 import io.fairspace.saturn.services.users.User;
 import io.fairspace.saturn.services.users.UserService;
@@ -18,6 +19,7 @@ import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.resource.*;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
 import org.apache.jena.sparql.util.Context;
 import org.eclipse.jetty.server.Authentication;
 import org.junit.Before;
@@ -29,13 +31,15 @@ import org.mockito.junit.MockitoJUnitRunner;
 import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
 
 import static io.fairspace.saturn.TestUtils.*;
 import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
+import static io.fairspace.saturn.config.Services.COMMIT_LISTENERS;
 import static io.milton.http.ResponseStatus.SC_FORBIDDEN;
 import static java.lang.String.format;
-import static org.apache.jena.query.DatasetFactory.createTxnMem;
+import static org.apache.jena.query.DatasetFactory.wrap;
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -67,7 +71,8 @@ public class DavFactoryTest {
     private org.eclipse.jetty.server.Request request;
 
     private ResourceFactory factory;
-    private Dataset ds = createTxnMem();
+    private TxnListenerDatasetGraph txnListeners = new TxnListenerDatasetGraph(DatasetGraphFactory.createTxnMem());
+    private Dataset ds = wrap(txnListeners);
     private Transactions tx = new SimpleTransactions(ds);
     private Model model = ds.getDefaultModel();
 
@@ -88,6 +93,7 @@ public class DavFactoryTest {
 
     @Before
     public void before() {
+        context.set(COMMIT_LISTENERS, txnListeners);
         workspaceService = new WorkspaceService(tx, userService);
         factory = new DavFactory(model.createResource(baseUri), store, userService, context);
 
@@ -322,6 +328,58 @@ public class DavFactoryTest {
         assertEquals(FILE_SIZE, ((GetableResource)ver3).getContentLength().longValue());
     }
 
+    @Test
+    public void testRenameFileKeepsVersions() throws NotAuthorizedException, BadRequestException, ConflictException, IOException {
+        var root = (MakeCollectionableResource) factory.getResource(null, BASE_PATH);
+        var coll = (FolderResource) root.createCollection("coll");
+
+        var file = coll.createNew("old", input, FILE_SIZE, "text/abc");
+        when(request.getAttribute("BLOB")).thenReturn(new BlobInfo("id", FILE_SIZE + 1, "md5"));
+        ((ReplaceableResource) file).replaceContent(input, FILE_SIZE + 1);
+
+        ((MoveableResource) file).moveTo(coll, "new");
+
+        when(request.getHeader("Version")).thenReturn("1");
+        assertEquals(FILE_SIZE, ((GetableResource) coll.child("new")).getContentLength().longValue());
+        assertFalse(model.containsResource(createResource(baseUri + "/coll/old?version=1")));
+        assertTrue(model.contains(createResource(baseUri + "/coll/new"), FS.latestVersion, createResource(baseUri + "/coll/new?version=2")));
+    }
+
+    @Test
+    public void testMigrateVersionList() throws NotAuthorizedException, BadRequestException, ConflictException, IOException {
+        var root = (MakeCollectionableResource) factory.getResource(null, BASE_PATH);
+        var coll = (FolderResource) root.createCollection("coll");
+        coll.createNew("file", input, FILE_SIZE, "text/abc");
+
+        var file = model.createResource(baseUri + "/coll/file");
+        var ver1 = model.createResource()
+                .addProperty(FS.blobId, "id1")
+                .addLiteral(FS.fileSize, FILE_SIZE);
+        var ver2 = model.createResource()
+                .addProperty(FS.blobId, "id2")
+                .addLiteral(FS.fileSize, FILE_SIZE + 1);
+        file.removeAll(FS.latestVersion)
+                .removeAll(FS.currentVersion)
+                .addLiteral(FS.currentVersion, 2)
+                .addProperty(FS.versions, model.createList(ver2, ver1));
+        model.removeAll(createResource(baseUri + "/coll/file?version=1"), null, null);
+
+        VersionListMigration.migrate(tx);
+
+        assertFalse(file.hasProperty(FS.versions));
+        assertFalse(model.contains(ver1, null));
+        assertEquals(2, file.getRequiredProperty(FS.currentVersion).getInt());
+
+        var current = coll.child("file");
+        assertEquals(2, ((MultiNamespaceCustomPropertyResource) current).getProperty(VERSION));
+        assertEquals(FILE_SIZE + 1, ((GetableResource) current).getContentLength().longValue());
+
+        when(request.getHeader("Version")).thenReturn("1");
+        assertEquals(FILE_SIZE, ((GetableResource) coll.child("file")).getContentLength().longValue());
+
+        assertEquals(0, VersionListMigration.migrate(model));
+    }
+
     @Test
     public void testDeleteFile() throws NotAuthorizedException, BadRequestException, ConflictException, IOException {
         var root = (MakeCollectionableResource) factory.getResource(null, BASE_PATH);
@@ -499,4 +557,52 @@ public class DavFactoryTest {
         coll2.copyTo(root, "coll1");
     }
 
+    @Test
+    public void testAccessIsCachedPerRequestUntilModelChanges() throws NotAuthorizedException, BadRequestException, ConflictException {
+        var attributes = new HashMap<String, Object>();
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setAttribute(anyString(), any());
+        when(request.getAttribute("ACCESS_CACHE")).thenAnswer(invocation -> attributes.get("ACCESS_CACHE"));
+
+        var root = (MakeCollectionableResource) factory.getResource(null, BASE_PATH);
+        root.createCollection("coll");
+        var davFactory = (DavFactory) factory;
+        var coll = model.createResource(baseUri + "/coll");
+
+        assertEquals(Access.Manage, davFactory.getAccess(coll));
+        var cache = attributes.get("ACCESS_CACHE");
+        assertNotNull(cache);
+        assertEquals(Access.Manage, davFactory.getAccess(model.createResource(baseUri + "/coll/dir")));
+        assertSame(cache, attributes.get("ACCESS_CACHE"));
+
+        model.removeAll(davFactory.currentUserResource(), FS.canManage, coll);
+
+        assertNotEquals(Access.Manage, davFactory.getAccess(coll));
+        assertNotSame(cache, attributes.get("ACCESS_CACHE"));
+    }
+
+    @Test
+    public void testAccessCacheIsInvalidatedByChangesThroughOtherModels() throws NotAuthorizedException, BadRequestException, ConflictException {
+        var attributes = new HashMap<String, Object>();
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setAttribute(anyString(), any());
+        when(request.getAttribute("ACCESS_CACHE")).thenAnswer(invocation -> attributes.get("ACCESS_CACHE"));
+
+        selectAdmin();
+        var root = (MakeCollectionableResource) factory.getResource(null, BASE_PATH);
+        root.createCollection("coll");
+        var davFactory = (DavFactory) factory;
+        var coll = model.createResource(baseUri + "/coll");
+
+        selectWorkspaceManager();
+        assertEquals(Access.Manage, davFactory.getAccess(coll));
+        var cache = attributes.get("ACCESS_CACHE");
+        assertNotNull(cache);
+
+        // Changed through the transactions of the workspace service, not through the model of the factory
+        workspaceService.setUserRole(workspace.getIri(), workspaceManager.getIri(), WorkspaceRole.Member);
+
+        assertNotEquals(Access.Manage, davFactory.getAccess(coll));
+        assertNotSame(cache, attributes.get("ACCESS_CACHE"));
+    }
 }
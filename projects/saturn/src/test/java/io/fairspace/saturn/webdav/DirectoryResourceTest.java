@@ -35,6 +35,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.Map;
 
 import static io.fairspace.saturn.TestUtils.*;
@@ -45,6 +46,7 @@ import static org.apache.jena.query.DatasetFactory.wrap;
 import static org.apache.jena.rdf.model.ResourceFactory.createProperty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
@@ -258,4 +260,43 @@ public class DirectoryResourceTest {
         when(file.getInputStream()).thenReturn(new ByteArrayInputStream(csv.getBytes()));
         dir.processForm(Map.of("action", "upload_metadata"), Map.of("file", file));
     }
+
+    @Test
+    public void testMetadataImportInChunksKeepsValuesOfPreviousChunks() throws Exception {
+        Property sampleProp = createProperty("https://institut-curie.org/ontology#sample");
+        dir = (DirectoryResource) davFactory.getResource(null, BASE_PATH + "/coll1");
+
+        String csv =
+                "Path,Is about biological sample\n" +
+                        ".,\"Sample A for subject 1\"\n" +
+                        ".,\"http://example.com/samples#s2-b\"\n" +
+                        "./coffee.jpg,\"Sample B for subject 2\"\n";
+
+        var rows = new MetadataImport(dir.subject, metadataService, 1).run(new StringReader(csv));
+
+        assertEquals(3, rows);
+        assertTrue(dir.subject.hasProperty(sampleProp, model.createResource("http://example.com/samples#s1-a")));
+        assertTrue(dir.subject.hasProperty(sampleProp, model.createResource("http://example.com/samples#s2-b")));
+        assertTrue(model.createResource(dir.subject + "/coffee.jpg")
+                .hasProperty(sampleProp, model.createResource("http://example.com/samples#s2-b")));
+    }
+
+    @Test
+    public void testMetadataImportReportsErrorsPerRow() throws Exception {
+        dir = (DirectoryResource) davFactory.getResource(null, BASE_PATH + "/coll1");
+
+        String csv =
+                "Path,Is about biological sample\n" +
+                        ".,\"Sample A for subject 1\"\n" +
+                        "./unknown.jpg,\"Sample A for subject 1\"\n" +
+                        "./coffee.jpg,\"Unknown sample\"\n";
+
+        try {
+            new MetadataImport(dir.subject, metadataService, 1).run(new StringReader(csv));
+            fail();
+        } catch (MetadataImport.MetadataImportException e) {
+            assertTrue(e.getMessage().contains("Line 3. File \"unknown.jpg\" not found"));
+            assertTrue(e.getMessage().contains("Line 4. Object \"Unknown sample\""));
+        }
+    }
 }